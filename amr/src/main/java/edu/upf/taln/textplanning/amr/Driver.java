@@ -14,9 +14,11 @@ import edu.upf.taln.textplanning.common.*;
 import edu.upf.taln.textplanning.core.Options;
 import edu.upf.taln.textplanning.core.TextPlanner;
 import edu.upf.taln.textplanning.core.ranking.DifferentMentionsFilter;
+import edu.upf.taln.textplanning.core.similarity.TreeSimilarityMatrix;
 import edu.upf.taln.textplanning.core.similarity.vectors.SentenceVectors.SentenceVectorType;
 import edu.upf.taln.textplanning.core.similarity.vectors.Vectors.VectorType;
 import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import edu.upf.taln.textplanning.core.structures.SemanticGraph;
 import edu.upf.taln.textplanning.core.structures.SemanticSubgraph;
 import main.AmrMain;
@@ -31,6 +33,7 @@ import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
@@ -55,10 +58,12 @@ public class Driver
 	private final static String sorted_suffix = ".sorted.bin";
 	private final static String plan_suffix = ".plan.amr";
 	private final static String summary_suffix = ".summary.txt";
+	private final static String vocabulary_suffix = ".vocabulary.txt";
 	private final static String truncated_summary_suffix = ".trunc_summary.txt";
 	private final static List<String> suffixes = Arrays.asList(process_suffix, graphs_suffix, graphs_ranked_suffix,
 			global_suffix, global_ranked_suffix, subgraphs_suffix, non_redundant_suffix, sorted_suffix, plan_suffix);
 
+	private final static AMRGraphListCodec graphs_codec = new AMRGraphListCodec(); // stage outputs are binary checkpoints
 	private final static Logger log = LogManager.getLogger();
 	private static final String create_graphs_command = "create_graphs";
 	private static final String rank_meanings_command = "rank_meanings";
@@ -72,6 +77,7 @@ public class Driver
 	private static final String summarize_command = "summarize";
 	private static final String process_command = "process";
 	private static final String stats_command = "stats";
+	private static final String vocabulary_command = "vocabulary";
 
 	private void create_graphs(Path amr_bank_file, InitialResourcesFactory resources, boolean no_stanford)
 			throws IOException
@@ -85,14 +91,32 @@ public class Driver
 
 		Path output = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 				FilenameUtils.getExtension(amr_bank_file.toFile().getName()), graphs_suffix);
-		Serializer.serialize(graphs, output);
+		Serializer.serialize(graphs, output, graphs_codec);
 		log.info("Graphs serialized to " + output);
 	}
 
+	// Writes forms and lemmas of an AMR bank with their POS tags, to be used to create a dictionary snapshot
+	private void create_vocabulary(Path amr_bank_file, boolean no_stanford) throws IOException
+	{
+		log.info("Running from " + amr_bank_file);
+		String amr_bank = FileUtils.readTextFile(amr_bank_file);
+
+		AMRReader reader = new AMRReader();
+		AMRGraphListFactory factory = new AMRGraphListFactory(reader, language, null, null, no_stanford);
+		final String vocabulary = factory.getVocabulary(amr_bank).stream()
+				.map(p -> p.getLeft() + "\t" + p.getRight())
+				.collect(joining("\n"));
+
+		Path output = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
+				FilenameUtils.getExtension(amr_bank_file.toFile().getName()), vocabulary_suffix);
+		FileUtils.writeTextToFile(output, vocabulary);
+		log.info("Vocabulary written to " + output);
+	}
+
 	private void rank_meanings(Path graphs_file, InitialResourcesFactory resources) throws Exception
 	{
 		log.info("Running from " + graphs_file);
-		AMRGraphList graphs = (AMRGraphList) Serializer.deserialize(graphs_file);
+		AMRGraphList graphs = Serializer.deserialize(graphs_file, graphs_codec);
 
 		// We'll use the whole text as a context
 		final List<String> tokens = graphs.getGraphs().stream()
@@ -109,60 +133,61 @@ public class Driver
 		final BiFunction<String, String, OptionalDouble> sim = resources.getMeaningsSimilarity();
 		final BiPredicate<String, String> meanings_filter = process.getMeaningsFilter();
 		final Predicate<Candidate> candidates_filter = process.getCandidatesFilter(context_weighter);
-		TextPlanner.rankMeanings(candidates, candidates_filter, meanings_filter, context_weighter, sim, options);
+		TextPlanner.rankMeanings(process.getCandidateTable(), candidates_filter, meanings_filter, context_weighter, sim, options);
+		resources.flushMeaningsSimilarityCache();
 
 		Path output = FileUtils.createOutputPath(graphs_file, graphs_file.getParent(),
 				FilenameUtils.getExtension(graphs_file.toFile().getName()), graphs_ranked_suffix);
-		Serializer.serialize(graphs, output);
+		Serializer.serialize(graphs, output, graphs_codec);
 		log.info("Ranked graphs serialized to " + output);
 	}
 
 	private void create_global(Path graphs_file) throws IOException, ClassNotFoundException
 	{
 		log.info("Running from " + graphs_file);
-		AMRGraphList graphs = (AMRGraphList) Serializer.deserialize(graphs_file);
+		AMRGraphList graphs = Serializer.deserialize(graphs_file, graphs_codec);
 
 		AMRSemanticGraphFactory factory = new AMRSemanticGraphFactory();
 		SemanticGraph graph = factory.create(graphs);
 
 		Path output = FileUtils.createOutputPath(graphs_file, graphs_file.getParent(),
 				FilenameUtils.getExtension(graphs_file.toFile().getName()), global_suffix);
-		Serializer.serialize(graph, output);
+		Serializer.serialize(graph, output, CheckpointCodec.semantic_graph);
 		log.info("Global semantic graph serialized to " + output);
 	}
 
 	private void rank_variables(Path graph_file) throws IOException, ClassNotFoundException
 	{
 		log.info("Running from " + graph_file);
-		SemanticGraph graph = (SemanticGraph) Serializer.deserialize(graph_file);
+		SemanticGraph graph = Serializer.deserialize(graph_file, CheckpointCodec.semantic_graph);
 
 		Options options = new Options();
 		TextPlanner.rankVertices(graph, options);
 
 		Path output = FileUtils.createOutputPath(graph_file, graph_file.getParent(),
 				FilenameUtils.getExtension(graph_file.toFile().getName()), global_ranked_suffix);
-		Serializer.serialize(graph, output);
+		Serializer.serialize(graph, output, CheckpointCodec.semantic_graph);
 		log.info("Ranked global semantic graph serialized to " + output);
 	}
 
 	private void extract_subgraphs(Path graph_file, int num_subgraphs) throws IOException, ClassNotFoundException
 	{
 		log.info("Running from " + graph_file);
-		SemanticGraph graph = (SemanticGraph) Serializer.deserialize(graph_file);
+		SemanticGraph graph = Serializer.deserialize(graph_file, CheckpointCodec.semantic_graph);
 
 		Options options = new Options();
 		final Collection<SemanticSubgraph> subgraphs = TextPlanner.extractSubgraphs(graph, new AMRSemantics(), num_subgraphs, options);
 
 		Path output = FileUtils.createOutputPath(graph_file, graph_file.getParent(),
 				FilenameUtils.getExtension(graph_file.toFile().getName()), subgraphs_suffix);
-		Serializer.serialize(subgraphs, output);
+		Serializer.serialize(new ArrayList<>(subgraphs), output, CheckpointCodec.subgraphs);
 		log.info("Subgraphs serialized to " + output);
 	}
 
 	private void remove_redundancy(Path subgraphs_file, int num_subgraphs, InitialResourcesFactory resources) throws Exception
 	{
 		log.info("Running from " + subgraphs_file);
-		Collection<SemanticSubgraph> subgraphs = (Collection<SemanticSubgraph>) Serializer.deserialize(subgraphs_file);
+		Collection<SemanticSubgraph> subgraphs = Serializer.deserialize(subgraphs_file, CheckpointCodec.subgraphs);
 		BiFunction<String, String, OptionalDouble> sim = resources.getMeaningsSimilarity();
 
 		Options options = new Options();
@@ -170,14 +195,14 @@ public class Driver
 
 		Path output = FileUtils.createOutputPath(subgraphs_file, subgraphs_file.getParent(),
 				FilenameUtils.getExtension(subgraphs_file.toFile().getName()), non_redundant_suffix);
-		Serializer.serialize(subgraphs, output);
+		Serializer.serialize(new ArrayList<>(subgraphs), output, CheckpointCodec.subgraphs);
 		log.info("Non-redundant subgraphs serialized to " + output);
 	}
 
 	private void sort_subgraphs(Path subgraphs_file, InitialResourcesFactory resources) throws Exception
 	{
 		log.info("Running from " + subgraphs_file);
-		Collection<SemanticSubgraph> subgraphs = (Collection<SemanticSubgraph>) Serializer.deserialize(subgraphs_file);
+		Collection<SemanticSubgraph> subgraphs = Serializer.deserialize(subgraphs_file, CheckpointCodec.subgraphs);
 		BiFunction<String, String, OptionalDouble> sim = resources.getMeaningsSimilarity();;
 
 		Options options = new Options();
@@ -185,14 +210,14 @@ public class Driver
 
 		Path output = FileUtils.createOutputPath(subgraphs_file, subgraphs_file.getParent(),
 				FilenameUtils.getExtension(subgraphs_file.toFile().getName()), sorted_suffix);
-		Serializer.serialize(plan, output);
+		Serializer.serialize(plan, output, CheckpointCodec.subgraphs);
 		log.info("Text plan serialized to " + output);
 	}
 
 	private void write_amr(Path subgraphs_file) throws IOException, ClassNotFoundException
 	{
 		log.info("Running from " + subgraphs_file);
-		List<SemanticSubgraph> subgraphs = (List<SemanticSubgraph>) Serializer.deserialize(subgraphs_file);
+		List<SemanticSubgraph> subgraphs = Serializer.deserialize(subgraphs_file, CheckpointCodec.subgraphs);
 
 		AMRWriter writer = new AMRWriter();
 		final String out_amr = writer.write(subgraphs);
@@ -220,7 +245,7 @@ public class Driver
 
 	private void summarize(Path amr_bank, InitialResourcesFactory resources,
 	                       boolean no_stanford, int num_subgraphs_extract, int num_subgraphs,
-	                       Path generation_resources, int max_words) throws Exception
+	                       Path generation_resources, int max_words, int num_threads) throws Exception
 	{
 		log.info("*****Running from " + amr_bank + "*****");
 		Stopwatch timer = Stopwatch.createStarted();
@@ -245,14 +270,40 @@ public class Driver
 			final List<Path> files = Files.list(amr_bank)
 					.filter(Files::isRegularFile)
 					.filter(p -> p.toString().endsWith(".amr"))
+					.sorted()
 					.collect(Collectors.toList());
-			log.info("*****Processing " + files.size() + " files in " + amr_bank + "*****");
+			log.info("*****Processing " + files.size() + " files in " + amr_bank + " with " + num_threads + " threads*****");
+
+			// Documents are planned concurrently, so share the threads for subgraph extraction between them
+			options.extraction_threads = Math.max(1, options.extraction_threads / num_threads);
 
-			final List<Path> failed_files = files.stream()
-					.filter(f -> !summarizeFile(f, reader, factory, globalFactory, e -> 0.0, (e1, e2) -> sim.apply(e1, e2), options, num_subgraphs_extract, num_subgraphs, generator, max_words))
+			// Resources are shared by all workers. Results are collected in the order of the files.
+			final ExecutorService pool = Executors.newFixedThreadPool(num_threads);
+			final List<Future<Boolean>> results = files.stream()
+					.map(f -> pool.submit(() -> summarizeFile(f, reader, factory, globalFactory, e -> 0.0, (e1, e2) -> sim.apply(e1, e2), options, num_subgraphs_extract, num_subgraphs, generator, max_words)))
 					.collect(toList());
+			pool.shutdown();
+
+			final List<Path> failed_files = new ArrayList<>();
+			for (int i = 0; i < files.size(); ++i)
+			{
+				try
+				{
+					if (!results.get(i).get())
+						failed_files.add(files.get(i));
+				}
+				catch (ExecutionException e)
+				{
+					// Errors (e.g. stack overflows on huge graphs) are not caught by summarizeFile
+					log.error("***Planning failed for " + files.get(i).getFileName() + ": " + e.getCause() + "***");
+					failed_files.add(files.get(i));
+				}
+			}
+
 			final int num_success = files.size() - failed_files.size();
+			final double seconds = timer.elapsed(TimeUnit.MILLISECONDS) / 1000.0;
 			log.info("Successfully planned " + num_success + " files out of " + files.size());
+			log.info(String.format("Throughput: %.3f documents/s", seconds > 0.0 ? files.size() / seconds : 0.0));
 			if (!failed_files.isEmpty())
 				log.info("Failed files: " +  failed_files.stream().map(Path::getFileName).map(Path::toString).collect(joining(",")));
 		}
@@ -265,6 +316,7 @@ public class Driver
 		else
 			log.error("*****Cannot open " + amr_bank + ", aborting*****");
 
+		resources.flushMeaningsSimilarityCache();
 		log.info("*****Processing took " + timer.stop() + "******");
 	}
 
@@ -283,7 +335,7 @@ public class Driver
 			AMRGraphList graphs = graphListFactory.create(amr_bank);
 			Path output_path = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 					FilenameUtils.getExtension(amr_bank_file.toFile().getName()), graphs_suffix);
-			Serializer.serialize(graphs, output_path);
+			Serializer.serialize(graphs, output_path, graphs_codec);
 
 			// 2- Rank meanings
 			List<Candidate> candidates = new ArrayList<>(graphs.getCandidates());
@@ -298,42 +350,43 @@ public class Driver
 //					resources.getSentenceVectors(), w -> context, resources.getWordVectorsSimilarityFunction());
 
 //			TopCandidatesFilter candidates_filter = new TopCandidatesFilter(candidates, context_weighter::weight, 5);
-			DifferentMentionsFilter meanings_filter = new DifferentMentionsFilter(candidates);
+			DifferentMentionsFilter meanings_filter = new DifferentMentionsFilter(new CandidateTable(candidates));
 
 //			TextPlanner.rankMeanings(candidates, candidates_filter, meanings_filter, weight, similarity, options);
 			output_path = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 					FilenameUtils.getExtension(amr_bank_file.toFile().getName()), graphs_ranked_suffix);
-			Serializer.serialize(graphs, output_path);
+			Serializer.serialize(graphs, output_path, graphs_codec);
 
 			// 3- Create global graph
 			SemanticGraph graph = globalGraphFactory.create(graphs);
 			output_path = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 					FilenameUtils.getExtension(amr_bank_file.toFile().getName()), global_suffix);
-			Serializer.serialize(graph, output_path);
+			Serializer.serialize(graph, output_path, CheckpointCodec.semantic_graph);
 
 			// 4- Rank variables
 			TextPlanner.rankVertices(graph, options);
 			output_path = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 					FilenameUtils.getExtension(amr_bank_file.toFile().getName()), global_ranked_suffix);
-			Serializer.serialize(graph, output_path);
+			Serializer.serialize(graph, output_path, CheckpointCodec.semantic_graph);
 
 			// 5- Extract subgraphs
 			Collection<SemanticSubgraph> subgraphs = TextPlanner.extractSubgraphs(graph, new AMRSemantics(), num_subgraphs_extract, options);
 			output_path = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 					FilenameUtils.getExtension(amr_bank_file.toFile().getName()), subgraphs_suffix);
-			Serializer.serialize(subgraphs, output_path);
+			Serializer.serialize(new ArrayList<>(subgraphs), output_path, CheckpointCodec.subgraphs);
 
 			// 6- Remove redundancy
-			subgraphs = TextPlanner.removeRedundantSubgraphs(subgraphs, num_subgraphs, similarity, options);
+			final TreeSimilarityMatrix similarities = TextPlanner.calculateSimilarities(subgraphs, similarity, options);
+			subgraphs = TextPlanner.removeRedundantSubgraphs(similarities, num_subgraphs);
 			output_path = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 					FilenameUtils.getExtension(amr_bank_file.toFile().getName()), non_redundant_suffix);
-			Serializer.serialize(subgraphs, output_path);
+			Serializer.serialize(new ArrayList<>(subgraphs), output_path, CheckpointCodec.subgraphs);
 
 			// 6- sort subgraphs
-			List<SemanticSubgraph> sorted_subgraphs = TextPlanner.sortSubgraphs(subgraphs, similarity, options);
+			List<SemanticSubgraph> sorted_subgraphs = TextPlanner.sortSubgraphs(subgraphs, similarities);
 			output_path = FileUtils.createOutputPath(amr_bank_file, amr_bank_file.getParent().resolve(output_folder),
 					FilenameUtils.getExtension(amr_bank_file.toFile().getName()), sorted_suffix);
-			Serializer.serialize(sorted_subgraphs, output_path);
+			Serializer.serialize(sorted_subgraphs, output_path, CheckpointCodec.subgraphs);
 
 			// 7- create AMR plan
 			log.info("*Writing AMR*");
@@ -347,7 +400,11 @@ public class Driver
 			// 8- generate text
 			log.info("*Generating text*");
 			Stopwatch gen_timer = Stopwatch.createStarted();
-			String text = generator.generate(out_amr);
+			String text;
+			synchronized (generator) // generator is shared between documents and isn't known to be thread-safe
+			{
+				text = generator.generate(out_amr);
+			}
 			String truncated_text = Arrays.stream(text.split(" "))
 					.limit(max_words)
 					.collect(joining(" "));
@@ -377,8 +434,8 @@ public class Driver
 		@Parameter(names = {"-i", "-input"}, description = "Input text-based AMR file", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
 		private Path inputFile;
-		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder", arity = 1, required = true,
-				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
+		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder or snapshot file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path dictionary;
 		@Parameter(names = {"-ns", "-nostanford"}, description = "Do not load Stanford CoreNLP pipeline")
 		private boolean no_stanford = false;
@@ -408,12 +465,29 @@ public class Driver
 		@Parameter(names = {"-ct", "-context_vectors_type"}, description = "Type of sense context vectors", arity = 1,
 				converter = CMLCheckers.VectorTypeConverter.class, validateWith = CMLCheckers.VectorTypeValidator.class)
 		private VectorType context_vector_type = VectorType.Random;
+		@Parameter(names = {"-gs", "-glosses_store"}, description = "File where vectors calculated from glosses are kept between runs, used with SenseGlosses context vectors", arity = 1,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFile.class)
+		private Path glosses_store = null;
 		@Parameter(names = {"-sv", "-sense_vectors"}, description = "Path to sense vectors", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path sense_vectors_path;
 		@Parameter(names = {"-st", "-sense_vectors_type"}, description = "Type of sense vectors", arity = 1,
 				converter = CMLCheckers.VectorTypeConverter.class, validateWith = CMLCheckers.VectorTypeValidator.class)
 		private VectorType sense_vector_type = VectorType.Random;
+		@Parameter(names = {"-cs", "-cache_size"}, description = "Size in MB of the cache of similarity values between meanings, 0 to disable it", arity = 1,
+				converter = CMLCheckers.IntegerConverter.class, validateWith = CMLCheckers.IntegerGreaterOrEqualThanZero.class)
+		private int cache_size = 0;
+		@Parameter(names = {"-cf", "-cache_file"}, description = "File where the similarity cache is kept between runs", arity = 1,
+				converter = CMLCheckers.PathConverter.class)
+		private Path cache_file = null;
+		@Parameter(names = {"-lt", "-lsh_tables"}, description = "Number of LSH tables used to find similar meanings, 0 to compare all pairs", arity = 1,
+				converter = CMLCheckers.IntegerConverter.class, validateWith = CMLCheckers.IntegerGreaterOrEqualThanZero.class)
+		private int lsh_tables = 0;
+		@Parameter(names = {"-lb", "-lsh_bits"}, description = "Number of hyperplanes per LSH table", arity = 1,
+				converter = CMLCheckers.IntegerConverter.class, validateWith = CMLCheckers.IntegerGreaterThanZero.class)
+		private int lsh_bits = 6;
+		@Parameter(names = {"-lr", "-lsh_recall"}, description = "Report recall of LSH tables against comparing all pairs")
+		private boolean lsh_recall = false;
 	}
 
 	@Parameters(commandDescription = "Create global semantic graph from a list of semantic graphs")
@@ -499,8 +573,8 @@ public class Driver
 		@Parameter(names = {"-i", "-input"}, description = "Path to input file or folder containing text-based AMRs", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path input;
-		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder", arity = 1, required = true,
-				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
+		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder or snapshot file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path dictionary;
 		@Parameter(names = {"-f", "-frequencies"}, description = "Path to frequencies file", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
@@ -525,6 +599,23 @@ public class Driver
 		@Parameter(names = {"-g", "-generation"}, description = "Path to generation resources folder", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
 		private Path generation_resources;
+		@Parameter(names = {"-t", "-threads"}, description = "Number of documents summarized concurrently", arity = 1,
+				converter = CMLCheckers.IntegerConverter.class, validateWith = CMLCheckers.IntegerGreaterThanZero.class)
+		private int num_threads = Runtime.getRuntime().availableProcessors();
+		@Parameter(names = {"-cs", "-cache_size"}, description = "Size in MB of the cache of similarity values between meanings, 0 to disable it", arity = 1,
+				converter = CMLCheckers.IntegerConverter.class, validateWith = CMLCheckers.IntegerGreaterOrEqualThanZero.class)
+		private int cache_size = 0;
+		@Parameter(names = {"-cf", "-cache_file"}, description = "File where the similarity cache is kept between runs", arity = 1,
+				converter = CMLCheckers.PathConverter.class)
+		private Path cache_file = null;
+		@Parameter(names = {"-lt", "-lsh_tables"}, description = "Number of LSH tables used to find similar meanings, 0 to compare all pairs", arity = 1,
+				converter = CMLCheckers.IntegerConverter.class, validateWith = CMLCheckers.IntegerGreaterOrEqualThanZero.class)
+		private int lsh_tables = 0;
+		@Parameter(names = {"-lb", "-lsh_bits"}, description = "Number of hyperplanes per LSH table", arity = 1,
+				converter = CMLCheckers.IntegerConverter.class, validateWith = CMLCheckers.IntegerGreaterThanZero.class)
+		private int lsh_bits = 6;
+		@Parameter(names = {"-lr", "-lsh_recall"}, description = "Report recall of LSH tables against comparing all pairs")
+		private boolean lsh_recall = false;
 	}
 
 	@SuppressWarnings("unused")
@@ -534,11 +625,22 @@ public class Driver
 		@Parameter(names = {"-i", "-input"}, description = "Input text file", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
 		private Path inputFile;
-		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder", arity = 1, required = true,
-				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
+		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder or snapshot file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path dictionary;
 	}
 
+	@SuppressWarnings("unused")
+	@Parameters(commandDescription = "Create vocabulary file of an AMR bank, used to create a dictionary snapshot")
+	private static class CreateVocabularyCommand
+	{
+		@Parameter(names = {"-i", "-input"}, description = "Input text-based AMR file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
+		private Path inputFile;
+		@Parameter(names = {"-ns", "-nostanford"}, description = "Do not load Stanford CoreNLP pipeline")
+		private boolean no_stanford = false;
+	}
+
 	@SuppressWarnings("unused")
 	@Parameters(commandDescription = "Run empirical study from serialized file")
 	private static class GetStatsCommand
@@ -574,6 +676,7 @@ public class Driver
 		SummarizeCommand summarize = new SummarizeCommand();
 		ProcessFileCommand process = new ProcessFileCommand();
 		GetStatsCommand stats = new GetStatsCommand();
+		CreateVocabularyCommand vocabulary = new CreateVocabularyCommand();
 
 		JCommander jc = new JCommander();
 		jc.addCommand(create_graphs_command, create_graphs);
@@ -589,6 +692,7 @@ public class Driver
 		jc.addCommand(summarize_command, summarize);
 		jc.addCommand(process_command, process);
 		jc.addCommand(stats_command, stats);
+		jc.addCommand(vocabulary_command, vocabulary);
 
 		jc.parse(args);
 
@@ -615,8 +719,15 @@ public class Driver
 					rank_meanings.word_vectors_path,  rank_meanings.word_vector_type,
 					null, rank_meanings.sentence_vector_type,
 					rank_meanings.context_vectors_path,  rank_meanings.context_vector_type);
+			if (rank_meanings.glosses_store != null)
+				resources.storeGlossesVectors(rank_meanings.glosses_store);
+			if (rank_meanings.cache_size > 0)
+				resources.cacheMeaningsSimilarity(rank_meanings.cache_size * (1L << 20), rank_meanings.cache_file);
+			if (rank_meanings.lsh_tables > 0)
+				resources.indexMeaningsSimilarity(rank_meanings.lsh_tables, rank_meanings.lsh_bits, rank_meanings.lsh_recall);
 
 			driver.rank_meanings(rank_meanings.inputFile, resources);
+			resources.close();
 		}
 			else if (jc.getParsedCommand().equals(create_global_command))
 			driver.create_global(create_global.inputFile);
@@ -654,8 +765,12 @@ public class Driver
 					null, null,
 					null, null,
 					null, null);
+			if (summarize.cache_size > 0)
+				resources.cacheMeaningsSimilarity(summarize.cache_size * (1L << 20), summarize.cache_file);
+			if (summarize.lsh_tables > 0)
+				resources.indexMeaningsSimilarity(summarize.lsh_tables, summarize.lsh_bits, summarize.lsh_recall);
 			driver.summarize(summarize.input, resources, summarize.no_stanford,summarize.num_extract,
-					summarize.num_subgraphs, summarize.generation_resources, summarize.max_words);
+					summarize.num_subgraphs, summarize.generation_resources, summarize.max_words, summarize.num_threads);
 		}
 		else if (jc.getParsedCommand().equals(process_command))
 		{
@@ -668,6 +783,8 @@ public class Driver
 		{
 			EmpiricalStudy.calculateStats(stats.inputFile, stats.freqsFile, stats.vectorsPath, stats.vectorType, stats.do_pairwise_similarity);
 		}
+		else if (jc.getParsedCommand().equals(vocabulary_command))
+			driver.create_vocabulary(vocabulary.inputFile, vocabulary.no_stanford);
 		else
 			jc.usage();
 
@@ -0,0 +1,190 @@
+package edu.upf.taln.textplanning.amr.io;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import edu.upf.taln.textplanning.amr.structures.AMRAlignments;
+import edu.upf.taln.textplanning.amr.structures.AMRGraph;
+import edu.upf.taln.textplanning.amr.structures.AMRGraphList;
+import edu.upf.taln.textplanning.amr.structures.CoreferenceChain;
+import edu.upf.taln.textplanning.common.CheckpointCodec;
+import edu.upf.taln.textplanning.common.CheckpointReader;
+import edu.upf.taln.textplanning.common.CheckpointWriter;
+import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.Candidate.Type;
+import edu.upf.taln.textplanning.core.structures.Mention;
+import edu.upf.taln.textplanning.core.structures.Role;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Writes and reads lists of AMR graphs, with their alignments, mentions, candidates and coreference chains, to and
+ * from binary checkpoint files.
+ */
+public class AMRGraphListCodec extends CheckpointCodec<AMRGraphList>
+{
+	public AMRGraphListCodec()
+	{
+		super("AMRGraphList");
+	}
+
+	@Override
+	public void write(AMRGraphList list, CheckpointWriter out) throws IOException
+	{
+		out.writeInt(list.getGraphs().size());
+		for (AMRGraph g : list.getGraphs())
+			writeGraph(g, out);
+
+		final Set<String> vertices = new LinkedHashSet<>();
+		list.getGraphs().forEach(g -> vertices.addAll(g.vertexSet()));
+
+		final List<String> mention_vertices = new ArrayList<>();
+		final List<String> candidate_vertices = new ArrayList<>();
+		for (String v : vertices)
+		{
+			if (!list.getMentions(v).isEmpty())
+				mention_vertices.add(v);
+			if (!list.getCandidates(v).isEmpty())
+				candidate_vertices.add(v);
+		}
+
+		out.writeInt(mention_vertices.size());
+		for (String v : mention_vertices)
+		{
+			out.writeString(v);
+			out.writeMentions(list.getMentions(v));
+		}
+		out.writeInt(candidate_vertices.size());
+		for (String v : candidate_vertices)
+		{
+			out.writeString(v);
+			out.writeCandidates(list.getCandidates(v));
+		}
+
+		out.writeInt(list.getChains().size());
+		for (CoreferenceChain chain : list.getChains())
+		{
+			out.writeInt(chain.getVertices().size());
+			for (String v : chain.getVertices())
+			{
+				out.writeString(v);
+				out.writeMentions(chain.getMentionsForVertex(v));
+			}
+		}
+	}
+
+	@Override
+	public AMRGraphList read(CheckpointReader in) throws IOException
+	{
+		final int num_graphs = in.readInt();
+		final List<AMRGraph> graphs = new ArrayList<>(num_graphs);
+		for (int i = 0; i < num_graphs; ++i)
+			graphs.add(readGraph(in));
+
+		final Multimap<String, Mention> mentions = HashMultimap.create();
+		final int num_mention_vertices = in.readInt();
+		for (int i = 0; i < num_mention_vertices; ++i)
+		{
+			final String v = in.readString();
+			mentions.putAll(v, in.readMentions());
+		}
+		final Multimap<String, Candidate> candidates = HashMultimap.create();
+		final int num_candidate_vertices = in.readInt();
+		for (int i = 0; i < num_candidate_vertices; ++i)
+		{
+			final String v = in.readString();
+			candidates.putAll(v, in.readCandidates());
+		}
+
+		final int num_chains = in.readInt();
+		final List<CoreferenceChain> chains = new ArrayList<>(num_chains);
+		for (int i = 0; i < num_chains; ++i)
+		{
+			final CoreferenceChain chain = new CoreferenceChain();
+			final int num_vertices = in.readInt();
+			for (int j = 0; j < num_vertices; ++j)
+			{
+				final String v = in.readString();
+				for (Mention m : in.readMentions())
+					chain.put(v, m);
+			}
+			chains.add(chain);
+		}
+
+		return new AMRGraphList(graphs, mentions, candidates, chains);
+	}
+
+	private static void writeGraph(AMRGraph g, CheckpointWriter out) throws IOException
+	{
+		out.writeString(g.getContextId());
+		out.writeString(g.getRoot());
+		out.writeStrings(g.vertexSet());
+		out.writeInt(g.edgeSet().size());
+		for (Role e : g.edgeSet())
+		{
+			out.writeString(g.getEdgeSource(e));
+			out.writeString(g.getEdgeTarget(e));
+			out.writeString(e.getLabel());
+		}
+
+		final AMRAlignments a = g.getAlignments();
+		out.writeBoolean(a != null);
+		if (a == null)
+			return;
+
+		final List<String> tokens = a.getTokens();
+		out.writeStrings(tokens);
+		for (int i = 0; i < tokens.size(); ++i)
+		{
+			out.writeString(a.getLemma(i));
+			out.writeString(a.getPOS(i));
+			out.writeString(a.getNEType(i).name());
+		}
+		for (String v : g.vertexSet())
+		{
+			final Collection<Integer> offsets = a.getAlignments(v);
+			out.writeInt(offsets.size());
+			for (int offset : offsets)
+				out.writeInt(offset);
+		}
+	}
+
+	private static AMRGraph readGraph(CheckpointReader in) throws IOException
+	{
+		final String context_id = in.readString();
+		final AMRGraph g = new AMRGraph(context_id, in.readString());
+		final List<String> vertices = in.readStrings();
+		vertices.forEach(g::addVertex);
+		final int num_edges = in.readInt();
+		for (int i = 0; i < num_edges; ++i)
+		{
+			final String source = in.readString();
+			final String target = in.readString();
+			g.addEdge(source, target, Role.create(in.readString()));
+		}
+
+		if (!in.readBoolean())
+			return g;
+
+		final List<String> tokens = in.readStrings();
+		final List<String> lemma = new ArrayList<>(tokens.size());
+		final List<String> pos = new ArrayList<>(tokens.size());
+		final List<Type> ner = new ArrayList<>(tokens.size());
+		for (int i = 0; i < tokens.size(); ++i)
+		{
+			lemma.add(in.readString());
+			pos.add(in.readString());
+			ner.add(Type.valueOf(in.readString()));
+		}
+		final Multimap<String, Integer> alignments = HashMultimap.create();
+		for (String v : vertices)
+		{
+			final int num_offsets = in.readInt();
+			for (int i = 0; i < num_offsets; ++i)
+				alignments.put(v, in.readInt());
+		}
+		g.setAlignments(new AMRAlignments(g, tokens, lemma, pos, ner, alignments));
+
+		return g;
+	}
+}
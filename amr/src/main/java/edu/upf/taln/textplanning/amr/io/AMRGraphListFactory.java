@@ -10,6 +10,7 @@ import edu.upf.taln.textplanning.amr.structures.CoreferenceChain;
 import edu.upf.taln.textplanning.core.structures.MeaningDictionary;
 import edu.upf.taln.textplanning.core.structures.Candidate;
 import edu.upf.taln.textplanning.core.structures.Mention;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -47,6 +48,40 @@ public class AMRGraphListFactory
 		log.info("*Creating semantic graphs*");
 
 		// Read graphs from file
+		List<AMRGraph> graphs = readGraphs(graph_bank);
+
+		// Process with Stanford
+		List<CoreferenceChain> chains = stanford.process(graphs);
+
+		// Collect and classify mentions
+		final Multimap<String, Mention> mentions = AMRMentionsCollector.collectMentions(graphs, language);
+
+		// Collect candidates for mentions
+		List<Candidate> candidate_meanings = candidate_collector.getCandidateMeanings(getMentionsToLookup(mentions));
+
+		// Assign types to candidates
+		if (types_collector != null)
+			types_collector.getMeaningTypes(candidate_meanings);
+
+		final AMRGraphList graph_list = new AMRGraphList(graphs, mentions, candidate_meanings, chains);
+		log.info("Semantic graphs created in " + timer.stop());
+		return graph_list;
+	}
+
+	/**
+	 * @return pairs of forms and POS tags looked up in the dictionary when creating graphs from an AMR bank, e.g. to
+	 * create a dictionary snapshot with the meanings of the bank
+	 */
+	public List<Pair<String, String>> getVocabulary(String graph_bank)
+	{
+		List<AMRGraph> graphs = readGraphs(graph_bank);
+		stanford.process(graphs);
+		final Multimap<String, Mention> mentions = AMRMentionsCollector.collectMentions(graphs, language);
+		return CandidatesCollector.getVocabulary(getMentionsToLookup(mentions));
+	}
+
+	private List<AMRGraph> readGraphs(String graph_bank)
+	{
 		List<AMRGraph> graphs = reader.read(graph_bank);
 
 		// Make variable ids unique across graphs
@@ -59,11 +94,12 @@ public class AMRGraphListFactory
 			nodes_to_rename.forEach(v -> g.renameVertex(v, prefix + v));
 		}
 
-		// Process with Stanford
-		List<CoreferenceChain> chains = stanford.process(graphs);
+		return graphs;
+	}
 
-		// Collect and classify mentions
-		final Multimap<String, Mention> mentions = AMRMentionsCollector.collectMentions(graphs, language);
+	// Current behaviour is to lookup nouns and multiwords only
+	private static Set<Mention> getMentionsToLookup(Multimap<String, Mention> mentions)
+	{
 		final Multimap<String, Mention> singlewords = HashMultimap.create();
 		mentions.entries().stream().filter(e -> !e.getValue().isMultiWord()).forEach(e -> singlewords.put(e.getKey(), e.getValue()));
 		final Multimap<String, Mention> multiwords = HashMultimap.create();
@@ -71,17 +107,8 @@ public class AMRGraphListFactory
 		final Multimap<String, Mention> nominal_words = HashMultimap.create();
 		singlewords.entries().stream().filter(e -> e.getValue().isNominal()).forEach(e -> nominal_words.put(e.getKey(), e.getValue()));
 
-		// Collect candidates for mentions. Current behaviour is to lookup nouns and multiwords only
 		final Set<Mention> mentions_to_lookup = new HashSet<>(multiwords.values());
 		mentions_to_lookup.addAll(nominal_words.values());
-		List<Candidate> candidate_meanings = candidate_collector.getCandidateMeanings(mentions_to_lookup);
-
-		// Assign types to candidates
-		if (types_collector != null)
-			types_collector.getMeaningTypes(candidate_meanings);
-
-		final AMRGraphList graph_list = new AMRGraphList(graphs, mentions, candidate_meanings, chains);
-		log.info("Semantic graphs created in " + timer.stop());
-		return graph_list;
+		return mentions_to_lookup;
 	}
 }
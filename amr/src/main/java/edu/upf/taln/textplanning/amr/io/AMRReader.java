@@ -3,7 +3,7 @@ package edu.upf.taln.textplanning.amr.io;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import edu.upf.taln.textplanning.amr.io.parse.AMR;
+import edu.upf.taln.textplanning.amr.io.parse.PenmanParser;
 import edu.upf.taln.textplanning.amr.structures.AMRAlignments;
 import edu.upf.taln.textplanning.amr.structures.AMRGraph;
 import edu.upf.taln.textplanning.core.structures.Role;
@@ -83,7 +83,7 @@ public class AMRReader
 
 			        // Parse the graph and populate graph object
 			        AMRActions actions = new AMRActions(graph, this.keep_inverse_relations, this.keep_relation_alignments);
-			        final List<String> vertex_order = ((AMRActions.LabelNode) AMR.parse(amr_text, actions)).vertex_order;
+			        final List<String> vertex_order = ((AMRActions.LabelNode) PenmanParser.parse(amr_text, actions)).vertex_order;
 			        final Multimap<String, Integer> alignments = actions.getAlignments();
 			        // There's at least three ways in which alignments can be encoded in AMR files :-/
 			        if (actions.getAlignments().isEmpty())
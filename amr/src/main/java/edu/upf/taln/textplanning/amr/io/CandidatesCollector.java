@@ -7,16 +7,15 @@ import edu.upf.taln.textplanning.core.structures.MeaningDictionary;
 import edu.upf.taln.textplanning.core.structures.Candidate;
 import edu.upf.taln.textplanning.core.structures.Meaning;
 import edu.upf.taln.textplanning.core.structures.Mention;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.*;
 
@@ -79,6 +78,20 @@ public class CandidatesCollector
 		return candidates;
 	}
 
+	/**
+	 * @return pairs of forms and POS tags looked up by {@link #getCandidateMeanings(Set)} for a set of mentions: surface
+	 * forms and, if different, lemmas
+	 */
+	public static List<Pair<String, String>> getVocabulary(Collection<Mention> mentions)
+	{
+		return mentions.stream()
+				.flatMap(m -> m.getLemma().equalsIgnoreCase(m.getSurface_form()) ?
+						Stream.of(Pair.of(m.getSurface_form(), m.getPOS())) :
+						Stream.of(Pair.of(m.getSurface_form(), m.getPOS()), Pair.of(m.getLemma(), m.getPOS())))
+				.distinct()
+				.collect(toList());
+	}
+
 	private Set<String> getSynsets(Triple<String, String, String> mention)
 	{
 		// Use surface form of mention as label
@@ -3,7 +3,7 @@ package edu.upf.taln.textplanning.amr.io;
 import com.google.common.base.Stopwatch;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import edu.upf.taln.textplanning.common.BabelNetDictionary;
+import edu.upf.taln.textplanning.common.DBPediaDictionary;
 import edu.upf.taln.textplanning.core.structures.MeaningDictionary;
 import edu.upf.taln.textplanning.core.structures.Candidate;
 import edu.upf.taln.textplanning.core.structures.Meaning;
@@ -67,7 +67,8 @@ class TypesCollector
 		refs2query.forEach(r -> {
 			try
 			{
-				List<String> dbPediaURIs  = ((BabelNetDictionary) dictionary).getdbPediaURIs(r);
+				List<String> dbPediaURIs  = dictionary instanceof DBPediaDictionary ?
+						((DBPediaDictionary) dictionary).getdbPediaURIs(r) : Collections.emptyList();
 				Candidate.Type t = Candidate.Type.Other;
 				if (!dbPediaURIs.isEmpty())
 				{
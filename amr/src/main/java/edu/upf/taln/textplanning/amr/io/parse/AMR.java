@@ -24,7 +24,7 @@ public class AMR extends Grammar {
         return parse(input, null);
     }
 
-    private static String formatError(String input, int offset, List<String> expected) {
+    static String formatError(String input, int offset, List<String> expected) {
         String[] lines = input.split("\n");
         int lineNo = 0, position = 0;
         while (position <= offset) {
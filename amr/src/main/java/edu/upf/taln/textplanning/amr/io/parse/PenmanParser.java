@@ -0,0 +1,458 @@
+package edu.upf.taln.textplanning.amr.io.parse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hand-written recursive descent parser for AMRs in PENMAN notation, following the grammar in amr.peg.
+ * Returns the same nodes and calls the same actions, in the same order and with the same arguments, as the generated
+ * {@link AMR} parser. Unlike it, characters are read directly from the input in a single pass, with no memoization,
+ * regular expressions or per-character substrings. Terminal rules (rel, var, namedconst, str, num, concept, s and os)
+ * produce leaf nodes holding their text, without the per-character children created by the generated parser.
+ *
+ * If no actions are given, rules with actions produce the labelled nodes of the grammar instead.
+ */
+public final class PenmanParser
+{
+	// Character classes in the grammar, with the descriptions used in error messages
+	private static final int not_space = 0, lower = 1, digit = 2, space = 3, sign = 4, str_edge = 5, str_body = 6,
+			concept_char = 7, alignment_char = 8, blank = 9, newline = 10;
+	private static final String[] class_names = {"[^ \\t\\n\\r]", "[a-z]", "[0-9]", "[ \\t\\n\\r]", "[+-]",
+			"[^\\\"\\s]", "[^\\\"\\n\\r]", "[^) \\t\\n\\r]", "[A-Za-z0-9.,]", "[ \\t]", "[\\n\\r]"};
+	private static final List<TreeNode> no_elements = Collections.emptyList();
+
+	private final String input;
+	private final int size;
+	private final Actions actions;
+	private int offset = 0;
+	private int failure = 0;
+	private final List<String> expected = new ArrayList<>();
+
+	private PenmanParser(CharSequence input, Actions actions)
+	{
+		this.input = input.toString();
+		this.size = this.input.length();
+		this.actions = actions;
+	}
+
+	public static TreeNode parse(CharSequence input, Actions actions) throws ParseError
+	{
+		PenmanParser parser = new PenmanParser(input, actions);
+		TreeNode tree = parser.x();
+		if (tree != null && parser.offset == parser.size)
+			return tree;
+
+		if (parser.expected.isEmpty())
+		{
+			parser.failure = parser.offset;
+			parser.expected.add("<EOF>");
+		}
+		throw new ParseError(AMR.formatError(parser.input, parser.failure, parser.expected));
+	}
+
+	public static TreeNode parse(CharSequence input) throws ParseError
+	{
+		return parse(input, null);
+	}
+
+	// x <- "(" os var s "/" s aconcept (s desc)* os ")" %make_ancestor
+	private TreeNode x()
+	{
+		final int start = offset;
+		final List<TreeNode> elements = new ArrayList<>(10);
+		if (!literal('(', elements, "\"(\""))
+			return null;
+		elements.add(os());
+		if (!add(var(), elements))
+			return reset(start);
+		if (!add(s(), elements))
+			return reset(start);
+		if (!literal('/', elements, "\"/\""))
+			return reset(start);
+		if (!add(s(), elements))
+			return reset(start);
+		if (!add(aconcept(), elements))
+			return reset(start);
+
+		final int relations_start = offset;
+		final List<TreeNode> relations = new ArrayList<>();
+		while (true)
+		{
+			final int relation_start = offset;
+			final TreeNode s = s();
+			final TreeNode desc = s != null ? desc() : null;
+			if (desc == null)
+			{
+				offset = relation_start;
+				break;
+			}
+			relations.add(labelled(relation_start, Arrays.asList(s, desc), Label.s, Label.desc));
+		}
+		elements.add(new TreeNode(input.substring(relations_start, offset), relations_start, relations));
+
+		elements.add(os());
+		if (!literal(')', elements, "\")\""))
+			return reset(start);
+
+		return actions != null ? actions.make_ancestor(input, start, offset, elements) :
+				labelled(start, elements, null, null, Label.var, null, null, Label.s, Label.aconcept, null, Label.os);
+	}
+
+	// desc <- rel alignment? s y %make_descendent
+	private TreeNode desc()
+	{
+		final int start = offset;
+		final List<TreeNode> elements = new ArrayList<>(4);
+		if (!add(rel(), elements))
+			return reset(start);
+		elements.add(optionalAlignment());
+		if (!add(s(), elements))
+			return reset(start);
+		if (!add(y(), elements))
+			return reset(start);
+
+		return actions != null ? actions.make_descendent(input, start, offset, elements) :
+				labelled(start, elements, Label.rel, null, Label.s, Label.y);
+	}
+
+	// rel <- ":" [^ \t\n\r]+
+	private TreeNode rel()
+	{
+		final int start = offset;
+		if (!literal(':', "\":\"") || repeat(not_space) == 0)
+			return reset(start);
+		return leaf(start);
+	}
+
+	// y <- x / anamedconst / avar / astr / anum
+	private TreeNode y()
+	{
+		final int start = offset;
+		TreeNode node = x();
+		if (node == null)
+		{
+			offset = start;
+			node = anamedconst();
+		}
+		if (node == null)
+		{
+			offset = start;
+			node = avar();
+		}
+		if (node == null)
+		{
+			offset = start;
+			node = astr();
+		}
+		if (node == null)
+		{
+			offset = start;
+			node = anum();
+		}
+		if (node == null)
+			offset = start;
+		return node;
+	}
+
+	// avar <- var alignment? %make_var
+	private TreeNode avar()
+	{
+		final int start = offset;
+		final TreeNode var = var();
+		if (var == null)
+			return reset(start);
+		final List<TreeNode> elements = Arrays.asList(var, optionalAlignment());
+
+		return actions != null ? actions.make_var(input, start, offset, elements) :
+				labelled(start, elements, Label.var);
+	}
+
+	// var <- [a-z]+ [0-9]*
+	private TreeNode var()
+	{
+		final int start = offset;
+		if (repeat(lower) == 0)
+			return reset(start);
+		repeat(digit);
+		return leaf(start);
+	}
+
+	// anamedconst <- namedconst alignment? %make_constant
+	private TreeNode anamedconst()
+	{
+		final int start = offset;
+		final TreeNode namedconst = namedconst();
+		if (namedconst == null)
+			return reset(start);
+		final List<TreeNode> elements = Arrays.asList(namedconst, optionalAlignment());
+
+		return actions != null ? actions.make_constant(input, start, offset, elements) :
+				labelled(start, elements, Label.namedconst);
+	}
+
+	// namedconst <- [a-z] [a-z]+ [ \t\n\r] / [+-] ![0-9]
+	private TreeNode namedconst()
+	{
+		final int start = offset;
+		if (single(lower) && repeat(lower) > 0 && single(space))
+			return leaf(start);
+
+		offset = start;
+		if (single(sign))
+		{
+			final int lookahead = offset;
+			final boolean is_digit = single(digit);
+			offset = lookahead;
+			if (!is_digit)
+				return leaf(start);
+		}
+		return reset(start);
+	}
+
+	// astr <- str alignment? %make_str
+	private TreeNode astr()
+	{
+		final int start = offset;
+		final TreeNode str = str();
+		if (str == null)
+			return reset(start);
+		final List<TreeNode> elements = Arrays.asList(str, optionalAlignment());
+
+		return actions != null ? actions.make_str(input, start, offset, elements) :
+				labelled(start, elements, Label.str);
+	}
+
+	// str <- "\"" ([^\"\s] [^\"\n\r]* [^\"\s]?)? "\""
+	private TreeNode str()
+	{
+		final int start = offset;
+		if (!literal('"', "\"\\\"\""))
+			return reset(start);
+		if (single(str_edge))
+		{
+			repeat(str_body);
+			single(str_edge);
+		}
+		if (!literal('"', "\"\\\"\""))
+			return reset(start);
+		return leaf(start);
+	}
+
+	// anum <- num alignment? %make_num
+	private TreeNode anum()
+	{
+		final int start = offset;
+		final TreeNode num = num();
+		if (num == null)
+			return reset(start);
+		final List<TreeNode> elements = Arrays.asList(num, optionalAlignment());
+
+		return actions != null ? actions.make_num(input, start, offset, elements) :
+				labelled(start, elements, Label.num);
+	}
+
+	// num <- [+-]? [0-9]+ ("\." [0-9]+)?
+	private TreeNode num()
+	{
+		final int start = offset;
+		single(sign);
+		if (repeat(digit) == 0)
+			return reset(start);
+		final int decimals = offset;
+		if (!literal('.', "\"\\.\"") || repeat(digit) == 0)
+			offset = decimals;
+		return leaf(start);
+	}
+
+	// aconcept <- concept alignment? %make_concept
+	private TreeNode aconcept()
+	{
+		final int start = offset;
+		final TreeNode concept = concept();
+		if (concept == null)
+			return reset(start);
+		final List<TreeNode> elements = Arrays.asList(concept, optionalAlignment());
+
+		return actions != null ? actions.make_concept(input, start, offset, elements) :
+				labelled(start, elements, Label.concept);
+	}
+
+	// concept <- [^) \t\n\r]+
+	private TreeNode concept()
+	{
+		final int start = offset;
+		if (repeat(concept_char) == 0)
+			return reset(start);
+		return leaf(start);
+	}
+
+	// alignment <- "~" [A-Za-z0-9.,]+ %make_alignment
+	private TreeNode alignment()
+	{
+		final int start = offset;
+		final List<TreeNode> elements = new ArrayList<>(2);
+		if (!literal('~', elements, "\"~\""))
+			return reset(start);
+		final int chars_start = offset;
+		if (repeat(alignment_char) == 0)
+			return reset(start);
+		elements.add(leaf(chars_start));
+
+		return actions != null ? actions.make_alignment(input, start, offset, elements) :
+				new TreeNode(input.substring(start, offset), start, elements);
+	}
+
+	// alignment?
+	private TreeNode optionalAlignment()
+	{
+		final int start = offset;
+		final TreeNode alignment = alignment();
+		if (alignment != null)
+			return alignment;
+		offset = start;
+		return new TreeNode("", start, no_elements);
+	}
+
+	// s <- [ \t]* [\n\r] [ \t]* / [ \t]+
+	private TreeNode s()
+	{
+		final int start = offset;
+		repeat(blank);
+		if (single(newline))
+		{
+			repeat(blank);
+			return leaf(start);
+		}
+
+		offset = start;
+		if (repeat(blank) > 0)
+			return leaf(start);
+		return reset(start);
+	}
+
+	// os <- [ \t]* [\n\r]? [ \t]*
+	private TreeNode os()
+	{
+		final int start = offset;
+		repeat(blank);
+		single(newline);
+		repeat(blank);
+		return leaf(start);
+	}
+
+	private TreeNode leaf(int start)
+	{
+		return new TreeNode(input.substring(start, offset), start, no_elements);
+	}
+
+	// Node of a rule without actions, with the labels that the generated parser gives to its elements (null if none)
+	private TreeNode labelled(int start, List<TreeNode> elements, Label... labels)
+	{
+		final TreeNode node = new TreeNode(input.substring(start, offset), start, elements);
+		for (int i = 0; i < labels.length; ++i)
+		{
+			if (labels[i] != null)
+				node.label(labels[i], elements.get(i));
+		}
+		return node;
+	}
+
+	private TreeNode reset(int start)
+	{
+		offset = start;
+		return null;
+	}
+
+	private static boolean add(TreeNode node, List<TreeNode> elements)
+	{
+		if (node == null)
+			return false;
+		elements.add(node);
+		return true;
+	}
+
+	private boolean literal(char c, List<TreeNode> elements, String description)
+	{
+		if (!literal(c, description))
+			return false;
+		elements.add(new TreeNode(String.valueOf(c), offset - 1, no_elements));
+		return true;
+	}
+
+	private boolean literal(char c, String description)
+	{
+		if (offset < size && input.charAt(offset) == c)
+		{
+			++offset;
+			return true;
+		}
+		fail(description);
+		return false;
+	}
+
+	private boolean single(int char_class)
+	{
+		if (offset < size && matches(char_class, input.charAt(offset)))
+		{
+			++offset;
+			return true;
+		}
+		fail(class_names[char_class]);
+		return false;
+	}
+
+	// Consumes as many characters of the class as possible, returns their number
+	private int repeat(int char_class)
+	{
+		final int start = offset;
+		while (offset < size && matches(char_class, input.charAt(offset)))
+			++offset;
+		fail(class_names[char_class]);
+		return offset - start;
+	}
+
+	// Keeps track of the furthest position where the input failed to match, as the generated parser does
+	private void fail(String description)
+	{
+		if (offset > failure)
+		{
+			failure = offset;
+			expected.clear();
+		}
+		if (offset == failure)
+			expected.add(description);
+	}
+
+	private static boolean matches(int char_class, char c)
+	{
+		switch (char_class)
+		{
+			case not_space:
+				return c != ' ' && c != '\t' && c != '\n' && c != '\r';
+			case lower:
+				return c >= 'a' && c <= 'z';
+			case digit:
+				return c >= '0' && c <= '9';
+			case space:
+				return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+			case sign:
+				return c == '+' || c == '-';
+			case str_edge: // \s in Java regular expressions is [ \t\n\x0B\f\r]
+				return c != '"' && c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r';
+			case str_body:
+				return c != '"' && c != '\n' && c != '\r';
+			case concept_char:
+				return c != ')' && c != ' ' && c != '\t' && c != '\n' && c != '\r';
+			case alignment_char:
+				return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == ',';
+			case blank:
+				return c == ' ' || c == '\t';
+			case newline:
+				return c == '\n' || c == '\r';
+			default:
+				return false;
+		}
+	}
+}
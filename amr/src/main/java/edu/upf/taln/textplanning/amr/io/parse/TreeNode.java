@@ -1,16 +1,12 @@
 package edu.upf.taln.textplanning.amr.io.parse;
 
-import java.util.ArrayList;
-import java.util.EnumMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class TreeNode implements Iterable<TreeNode> {
     public String text;
 	public List<TreeNode> elements;
 
-    Map<Label, TreeNode> labelled;
+    Map<Label, TreeNode> labelled = Collections.emptyMap(); // allocated on first use, most nodes have no labels
 
     protected TreeNode() {
         this("", -1, new ArrayList<>(0));
@@ -23,13 +19,18 @@ public class TreeNode implements Iterable<TreeNode> {
     TreeNode(String text, int offset, List<TreeNode> elements) {
         this.text = text;
 	    this.elements = elements;
-        this.labelled = new EnumMap<>(Label.class);
     }
 
     public TreeNode get(Label key) {
         return labelled.get(key);
     }
 
+    void label(Label key, TreeNode node) {
+        if (labelled.isEmpty())
+            labelled = new EnumMap<>(Label.class);
+        labelled.put(key, node);
+    }
+
     public Iterator<TreeNode> iterator() {
         return elements.iterator();
     }
@@ -38,61 +39,61 @@ public class TreeNode implements Iterable<TreeNode> {
 class TreeNode1 extends TreeNode {
     TreeNode1(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.os, elements.get(8));
-        labelled.put(Label.var, elements.get(2));
-        labelled.put(Label.s, elements.get(5));
-        labelled.put(Label.aconcept, elements.get(6));
+        label(Label.os, elements.get(8));
+        label(Label.var, elements.get(2));
+        label(Label.s, elements.get(5));
+        label(Label.aconcept, elements.get(6));
     }
 }
 
 class TreeNode2 extends TreeNode {
     TreeNode2(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.s, elements.get(0));
-        labelled.put(Label.desc, elements.get(1));
+        label(Label.s, elements.get(0));
+        label(Label.desc, elements.get(1));
     }
 }
 
 class TreeNode3 extends TreeNode {
     TreeNode3(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.rel, elements.get(0));
-        labelled.put(Label.s, elements.get(2));
-        labelled.put(Label.y, elements.get(3));
+        label(Label.rel, elements.get(0));
+        label(Label.s, elements.get(2));
+        label(Label.y, elements.get(3));
     }
 }
 
 class TreeNode4 extends TreeNode {
     TreeNode4(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.var, elements.get(0));
+        label(Label.var, elements.get(0));
     }
 }
 
 class TreeNode5 extends TreeNode {
     TreeNode5(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.namedconst, elements.get(0));
+        label(Label.namedconst, elements.get(0));
     }
 }
 
 class TreeNode6 extends TreeNode {
     TreeNode6(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.str, elements.get(0));
+        label(Label.str, elements.get(0));
     }
 }
 
 class TreeNode7 extends TreeNode {
     TreeNode7(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.num, elements.get(0));
+        label(Label.num, elements.get(0));
     }
 }
 
 class TreeNode8 extends TreeNode {
     TreeNode8(String text, int offset, List<TreeNode> elements) {
         super(text, offset, elements);
-        labelled.put(Label.concept, elements.get(0));
+        label(Label.concept, elements.get(0));
     }
 }
@@ -70,6 +70,18 @@ public class AMRAlignments implements Serializable
 				});
 	}
 
+	// Restores alignments from their parts, e.g. when reading a checkpoint file
+	public AMRAlignments(AMRGraph graph, List<String> tokens, List<String> lemma, List<String> pos, List<Type> ner,
+	                     Multimap<String, Integer> alignments)
+	{
+		this.graph = graph;
+		this.tokens.addAll(tokens);
+		this.lemma.addAll(lemma);
+		this.pos.addAll(pos);
+		this.ner.addAll(ner);
+		this.alignments.putAll(alignments);
+	}
+
 	public List<String> getTokens() { return new ArrayList<>(tokens); }
 	private String getToken(int token_index)	{ return tokens.get(token_index); }
 	public String getLemma(int token_index)	{ return lemma.get(token_index); }
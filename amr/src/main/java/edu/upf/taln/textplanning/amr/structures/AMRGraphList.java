@@ -61,6 +61,19 @@ public class AMRGraphList implements Serializable
 			throw new RuntimeException("Invalid coreference vertex");
 	}
 
+	// Restores a list from its parts, e.g. when reading a checkpoint file
+	public AMRGraphList(List<AMRGraph> graphs,
+	                    Multimap<String, Mention> mentions,
+	                    Multimap<String, Candidate> candidates,
+	                    List<CoreferenceChain> chains)
+	{
+		this.graphs.addAll(graphs);
+		vertices = graphs.stream().map(AMRGraph::vertexSet).flatMap(Set::stream).collect(toSet());
+		vertices2mentions.putAll(mentions);
+		candidate_meanings.putAll(candidates);
+		this.chains.addAll(chains);
+	}
+
 	public List<AMRGraph> getGraphs() { return graphs; }
 	public Collection<Mention> getMentions() { return vertices2mentions.values(); }
 	public Collection<Mention> getMentions(String v)
@@ -23,7 +23,7 @@ import edu.upf.taln.textplanning.core.similarity.CosineSimilarity;
 import edu.upf.taln.textplanning.core.similarity.VectorsSimilarity;
 import edu.upf.taln.textplanning.core.similarity.vectors.Vectors;
 import edu.upf.taln.textplanning.core.structures.Candidate;
-import edu.upf.taln.textplanning.core.structures.Meaning;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import edu.upf.taln.textplanning.core.structures.Mention;
 import edu.upf.taln.textplanning.core.utils.DebugUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -662,13 +662,10 @@ public class EmpiricalStudy
 			return new SimilarityStats();
 		}
 
-		DifferentMentionsFilter filter = new DifferentMentionsFilter(candidates);
+		final CandidateTable table = new CandidateTable(candidates);
+		DifferentMentionsFilter filter = new DifferentMentionsFilter(table);
 
-		final List<String> meanings = candidates.stream()
-				.map(Candidate::getMeaning)
-				.map(Meaning::getReference)
-				.distinct()
-				.collect(Collectors.toList());
+		final List<String> meanings = table.getReferences();
 
 		final int num_meanings = meanings.size();
 		final long num_meanings_defined = 0;
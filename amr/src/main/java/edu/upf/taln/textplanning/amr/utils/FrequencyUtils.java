@@ -11,8 +11,9 @@ import edu.upf.taln.textplanning.amr.structures.AMRAlignments;
 import edu.upf.taln.textplanning.amr.io.AMRGraphListFactory;
 import edu.upf.taln.textplanning.amr.io.AMRReader;
 import edu.upf.taln.textplanning.common.CMLCheckers;
-import edu.upf.taln.textplanning.core.weighting.corpora.CompactFrequencies;
+import edu.upf.taln.textplanning.core.weighting.corpora.Corpus;
 import edu.upf.taln.textplanning.core.weighting.corpora.FreqsFile;
+import edu.upf.taln.textplanning.core.weighting.corpora.MappedFrequencies;
 import edu.upf.taln.textplanning.core.structures.Meaning;
 import edu.upf.taln.textplanning.core.structures.Candidate;
 import edu.upf.taln.textplanning.common.Serializer;
@@ -109,26 +110,24 @@ public class FrequencyUtils
 
 		log.info("Files pocessed in "  + timer + ". Failed files: " + failed_files.toString());
 
-		log.info("Compacting frequencies");
-		CompactFrequencies freqs = new CompactFrequencies(files.size(), total_meaning_counts, doc_meaning_counts, total_form_counts);
-		log.info("Frequencies compacted in " + timer);
-
 		log.info("Storing frequencies into file");
 		try
 		{
-			Serializer.serialize(freqs, freqs_file);
+			new MappedFrequencies.Builder(files.size())
+					.addCounts(total_meaning_counts, doc_meaning_counts, total_form_counts)
+					.write(freqs_file);
 
 			log.info("All completed in " + timer.stop());
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
-			log.error("Serialization failed");
+			log.error("Writing frequencies failed: " + e);
 		}
 
 		// Do some checks
 		try
 		{
-			final CompactFrequencies freqs2 = (CompactFrequencies)Serializer.deserialize(freqs_file);
+			final MappedFrequencies freqs2 = new MappedFrequencies(freqs_file);
 			total_meaning_counts.forEach((m,c) ->
 			{
 				int c2 = freqs2.getMeaningCount(m).orElse(-1);
@@ -149,9 +148,9 @@ public class FrequencyUtils
 							log.error("Bad form-meaning count for form " +  f + " and meaning " + m);
 					}));
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
-			log.error("Deserialization failed: " + e);
+			log.error("Cannot open frequencies file: " + e);
 		}
 	}
 
@@ -174,7 +173,8 @@ public class FrequencyUtils
 				.collect(toSet());
 
 		log.info("Reading frequencies file");
-		FreqsFile freqsFile = new FreqsFile(inputFile);
+		final Corpus freqsFile = MappedFrequencies.isMappedFrequencies(inputFile) ?
+				new MappedFrequencies(inputFile) : new FreqsFile(inputFile);
 
 		long num_pairs_in_corpus = forms.keySet().stream()
 				.mapToLong(f -> forms.get(f).stream()
@@ -323,12 +323,12 @@ public class FrequencyUtils
 		@Parameter(names = {"-s", "-sew"}, description = "Folder containing SEW files", arity = 1, required = true, converter = CMLCheckers.PathConverter.class,
 				validateWith = CMLCheckers.PathToExistingFolder.class)
 		private Path sewFolder;
-		@Parameter(names = {"-o", "-outputFile"}, description = "Output binary file", arity = 1, required = true, converter = CMLCheckers.PathConverter.class,
+		@Parameter(names = {"-o", "-outputFile"}, description = "Output mapped frequencies file", arity = 1, required = true, converter = CMLCheckers.PathConverter.class,
 				validateWith = CMLCheckers.ValidPathToFile.class)
 		private Path outputFile;
 	}
 
-	@Parameters(commandDescription = "Create a subset of a JSON frequencies file based on a file containing graphs")
+	@Parameters(commandDescription = "Create a subset of a JSON or mapped frequencies file based on a file containing graphs")
 	private static class SubsetCommand
 	{
 		@Parameter(names = {"-g", "-graphsFile"}, description = "Graphs file", arity = 1, required = true, converter = CMLCheckers.PathConverter.class,
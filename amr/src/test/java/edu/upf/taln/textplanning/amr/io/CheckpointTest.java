@@ -0,0 +1,226 @@
+package edu.upf.taln.textplanning.amr.io;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import edu.upf.taln.textplanning.amr.structures.AMRAlignments;
+import edu.upf.taln.textplanning.amr.structures.AMRGraph;
+import edu.upf.taln.textplanning.amr.structures.AMRGraphList;
+import edu.upf.taln.textplanning.amr.structures.CoreferenceChain;
+import edu.upf.taln.textplanning.common.CheckpointCodec;
+import edu.upf.taln.textplanning.common.Serializer;
+import edu.upf.taln.textplanning.core.structures.*;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that objects written to binary checkpoint files are read back equal to the originals
+ */
+public class CheckpointTest
+{
+	private static <T> T roundTrip(T o, CheckpointCodec<T> codec) throws Exception
+	{
+		final Path file = Files.createTempFile("checkpoint", ".bin");
+		try
+		{
+			Serializer.serialize(o, file, codec);
+			return Serializer.deserialize(file, codec);
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	private static Mention createMention(String context_id, int start, String form, String pos)
+	{
+		return Mention.get(context_id, Pair.of(start, start + 1), form, form.toLowerCase(), pos, false, "");
+	}
+
+	private static SemanticGraph createGraph()
+	{
+		final SemanticGraph g = new SemanticGraph();
+		g.addVertex("v1");
+		g.addVertex("v2");
+		g.addVertex("v3");
+		g.addNewEdge("v1", "v2", "ARG0");
+		g.addNewEdge("v1", "v3", "ARG1");
+		g.setMeaning("v1", Meaning.get("bn:checkpoint_test_v", "eat", false));
+		g.setMeaning("v2", Meaning.get("bn:checkpoint_test_n", "John", true));
+		g.setWeight("v1", 0.25);
+		g.setWeight("v3", 1e-9);
+		g.addMention("v1", createMention("s1", 1, "eats", "VBZ"));
+		g.addMention("v2", createMention("s1", 0, "John", "NNP"));
+		g.addMention("v2", createMention("s2", 0, "He", "PRP"));
+		g.addSource("v1", "s1");
+		g.addSource("v2", "s1");
+		g.addSource("v2", "s2");
+		g.addType("v2", "person");
+		return g;
+	}
+
+	// Description of a semantic graph which does not depend on the identity of its edges
+	private static List<String> describe(SemanticGraph g)
+	{
+		final List<String> d = new ArrayList<>();
+		for (String v : g.vertexSet())
+		{
+			d.add(v + " " + g.getMeaning(v).map(m -> m.getReference() + "|" + m.getLabel() + "|" + m.isNE()).orElse("-") +
+					" " + g.getWeights().get(v) + " " + describeMentions(g.getMentions(v)) +
+					" " + new TreeSet<>(g.getSources(v)) + " " + new TreeSet<>(g.getTypes(v)));
+		}
+		g.edgeSet().forEach(e -> d.add(g.getEdgeSource(e) + " -" + e.getLabel() + "-> " + g.getEdgeTarget(e)));
+		return d;
+	}
+
+	private static String describe(AMRGraph g)
+	{
+		final StringBuilder d = new StringBuilder(g.getContextId() + " " + g.getRoot() + " " + g.vertexSet());
+		g.edgeSet().forEach(e -> d.append(" ").append(g.getEdgeSource(e)).append(" -").append(e.getLabel()).append("-> ")
+				.append(g.getEdgeTarget(e)));
+		final AMRAlignments a = g.getAlignments();
+		d.append(" ").append(a.getTokens());
+		for (int i = 0; i < a.getTokens().size(); ++i)
+			d.append(" ").append(a.getLemma(i)).append("/").append(a.getPOS(i)).append("/").append(a.getNEType(i));
+		g.vertexSet().forEach(v -> d.append(" ").append(v).append(":").append(new TreeSet<>(a.getAlignments(v))));
+		return d.toString();
+	}
+
+	private static String describeMentions(Collection<Mention> mentions)
+	{
+		return mentions.stream()
+				.map(m -> m.getId() + "|" + m.getSurface_form() + "|" + m.getLemma() + "|" + m.getPOS() + "|" +
+						m.isNE() + "|" + m.getType())
+				.sorted()
+				.collect(Collectors.joining(",", "[", "]"));
+	}
+
+	private static String describeCandidates(Collection<Candidate> candidates)
+	{
+		return candidates.stream()
+				.map(c -> c.getMention().getId() + "|" + c.getMeaning().getReference() + "|" + c.getWeight())
+				.sorted()
+				.collect(Collectors.joining(",", "[", "]"));
+	}
+
+	@Test
+	public void testSemanticGraph() throws Exception
+	{
+		final SemanticGraph g = createGraph();
+		final SemanticGraph g2 = roundTrip(g, CheckpointCodec.semantic_graph);
+
+		assertEquals(describe(g), describe(g2));
+		assertSame(g.getMeaning("v1").get(), g2.getMeaning("v1").get());
+	}
+
+	@Test
+	public void testSubgraphs() throws Exception
+	{
+		final SemanticGraph g = createGraph();
+		final List<SemanticSubgraph> subgraphs = Arrays.asList(
+				new SemanticSubgraph(g, "v1", new LinkedHashSet<>(Arrays.asList("v1", "v2")), 0.5),
+				new SemanticSubgraph(g, "v1", new LinkedHashSet<>(Arrays.asList("v1", "v3")), 0.75));
+		final List<SemanticSubgraph> subgraphs2 = roundTrip(subgraphs, CheckpointCodec.subgraphs);
+
+		assertEquals(subgraphs.size(), subgraphs2.size());
+		for (int i = 0; i < subgraphs.size(); ++i)
+		{
+			final SemanticSubgraph s = subgraphs.get(i);
+			final SemanticSubgraph s2 = subgraphs2.get(i);
+			assertEquals(s.getRoot(), s2.getRoot());
+			assertEquals(s.getValue(), s2.getValue(), 0.0);
+			assertEquals(s.vertexSet(), s2.vertexSet());
+			assertEquals(s.edgeSet().size(), s2.edgeSet().size());
+			assertEquals(describe(s.getBase()), describe(s2.getBase()));
+		}
+		// the shared base graph is read once
+		assertSame(subgraphs2.get(0).getBase(), subgraphs2.get(1).getBase());
+	}
+
+	@Test
+	public void testAMRGraphList() throws Exception
+	{
+		final AMRGraph g = new AMRGraph("s1", "e");
+		g.addVertex("e");
+		g.addVertex("j");
+		g.addVertex("a");
+		g.addEdge("e", "j", Role.create(":ARG0"));
+		g.addEdge("e", "a", Role.create(":ARG1"));
+		final Multimap<String, Integer> alignments = HashMultimap.create();
+		alignments.put("j", 0);
+		alignments.put("e", 1);
+		alignments.put("a", 2);
+		alignments.put("a", 3);
+		g.setAlignments(new AMRAlignments(g, Arrays.asList("John", "eats", "an", "apple"),
+				Arrays.asList("john", "eat", "an", "apple"), Arrays.asList("NNP", "VBZ", "DT", "NN"),
+				Arrays.asList(Candidate.Type.Person, Candidate.Type.Other, Candidate.Type.Other, Candidate.Type.Other),
+				alignments));
+
+		final Mention john = createMention("s1", 0, "John", "NNP");
+		final Mention eats = createMention("s1", 1, "eats", "VBZ");
+		final Mention apple = createMention("s1", 3, "apple", "NN");
+		final Multimap<String, Mention> mentions = HashMultimap.create();
+		mentions.put("j", john);
+		mentions.put("e", eats);
+		mentions.put("a", apple);
+
+		final Multimap<String, Candidate> candidates = HashMultimap.create();
+		final Candidate c1 = new Candidate(john, Meaning.get("bn:checkpoint_test_john", "John", true));
+		c1.setWeight(0.5);
+		final Candidate c2 = new Candidate(apple, Meaning.get("bn:checkpoint_test_apple", "apple", false));
+		c2.setWeight(0.125);
+		candidates.put("j", c1);
+		candidates.put("a", c2);
+
+		final CoreferenceChain chain = new CoreferenceChain();
+		chain.put("j", john);
+		chain.put("a", apple);
+
+		final AMRGraphList list = new AMRGraphList(Collections.singletonList(g), mentions, candidates,
+				Collections.singletonList(chain));
+		final AMRGraphList list2 = roundTrip(list, new AMRGraphListCodec());
+
+		assertEquals(list.getGraphs().size(), list2.getGraphs().size());
+		assertEquals(describe(list.getGraphs().get(0)), describe(list2.getGraphs().get(0)));
+		for (String v : g.vertexSet())
+		{
+			assertEquals(describeMentions(list.getMentions(v)), describeMentions(list2.getMentions(v)));
+			assertEquals(describeCandidates(list.getCandidates(v)), describeCandidates(list2.getCandidates(v)));
+		}
+		assertEquals(1, list2.getChains().size());
+		final CoreferenceChain chain2 = list2.getChains().get(0);
+		assertEquals(new TreeSet<>(chain.getVertices()), new TreeSet<>(chain2.getVertices()));
+		for (String v : chain.getVertices())
+			assertEquals(describeMentions(chain.getMentionsForVertex(v)), describeMentions(chain2.getMentionsForVertex(v)));
+	}
+
+	@Test
+	public void testMeaningTypeIsNotOverwritten() throws Exception
+	{
+		final SemanticGraph g = new SemanticGraph();
+		g.addVertex("v");
+		final Meaning m = Meaning.get("bn:checkpoint_test_typed", "typed", true);
+		m.setType("person");
+		g.setMeaning("v", m);
+
+		final Path file = Files.createTempFile("checkpoint", ".bin");
+		try
+		{
+			Serializer.serialize(g, file, CheckpointCodec.semantic_graph);
+			m.setType("organization");
+			final SemanticGraph g2 = Serializer.deserialize(file, CheckpointCodec.semantic_graph);
+			assertSame(m, g2.getMeaning("v").get());
+			assertEquals("organization", m.getType());
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package edu.upf.taln.textplanning.amr.io.parse;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Scanner;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the hand-written parser calls the same actions with the same arguments as the generated one
+ */
+public class PenmanParserTest
+{
+	// Records calls to actions, including the text of the elements passed to each action
+	private static class RecordingActions implements Actions
+	{
+		final List<String> calls = new ArrayList<>();
+
+		private TreeNode record(String action, String input, int start, int end, List<TreeNode> elements)
+		{
+			// Terminals are compared by text only, relations also by the text of their labelled descendents
+			String texts = elements.stream()
+					.map(e -> "'" + e.text + "'" + e.elements.stream()
+							.map(c -> c.get(Label.desc))
+							.filter(Objects::nonNull)
+							.map(d -> d.text)
+							.collect(Collectors.joining("|", "{", "}")))
+					.collect(Collectors.joining(", "));
+			calls.add(action + "(" + start + ", " + end + ") " + texts);
+			return new TreeNode(input.substring(start, end), start, new ArrayList<>(0));
+		}
+
+		public TreeNode make_alignment(String input, int start, int end, List<TreeNode> elements) { return record("alignment", input, start, end, elements.subList(0, 1)); }
+		public TreeNode make_ancestor(String input, int start, int end, List<TreeNode> elements) { return record("ancestor", input, start, end, elements); }
+		public TreeNode make_concept(String input, int start, int end, List<TreeNode> elements) { return record("concept", input, start, end, elements); }
+		public TreeNode make_constant(String input, int start, int end, List<TreeNode> elements) { return record("constant", input, start, end, elements); }
+		public TreeNode make_descendent(String input, int start, int end, List<TreeNode> elements) { return record("descendent", input, start, end, elements); }
+		public TreeNode make_num(String input, int start, int end, List<TreeNode> elements) { return record("num", input, start, end, elements); }
+		public TreeNode make_str(String input, int start, int end, List<TreeNode> elements) { return record("str", input, start, end, elements); }
+		public TreeNode make_var(String input, int start, int end, List<TreeNode> elements) { return record("var", input, start, end, elements); }
+	}
+
+	private static List<String> readSamples() throws Exception
+	{
+		try (InputStream in = PenmanParserTest.class.getResourceAsStream("/samples.amr"))
+		{
+			String text = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A").next();
+			return Arrays.stream(text.split("\n\n"))
+					.map(s -> Arrays.stream(s.split("\n"))
+							.filter(l -> !l.startsWith("#"))
+							.collect(Collectors.joining("\n")))
+					.filter(s -> !s.trim().isEmpty())
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void sameActionsAsGrammar() throws Exception
+	{
+		final List<String> samples = readSamples();
+		assertFalse(samples.isEmpty());
+		for (String amr : samples)
+		{
+			RecordingActions expected = new RecordingActions();
+			TreeNode expected_root = AMR.parse(amr, expected);
+			RecordingActions actual = new RecordingActions();
+			TreeNode actual_root = PenmanParser.parse(amr, actual);
+
+			assertEquals(amr, expected.calls, actual.calls);
+			assertEquals(amr, expected_root.text, actual_root.text);
+		}
+	}
+
+	@Test
+	public void labelledNodesWithoutActions() throws Exception
+	{
+		for (String amr : readSamples())
+		{
+			TreeNode root = PenmanParser.parse(amr);
+			assertEquals(amr, root.text);
+			assertEquals("(", root.elements.get(0).text);
+			assertNotNull(root.get(Label.var));
+			assertNotNull(root.get(Label.aconcept));
+		}
+	}
+
+	@Test
+	public void sameErrorsAsGrammar()
+	{
+		for (String amr : Arrays.asList("(w / want-01", "(w want-01)", "(w / want-01 :ARG0 (b / boy) x)", "w / want-01)"))
+		{
+			String expected = null, actual = null;
+			try { AMR.parse(amr, new RecordingActions()); }
+			catch (ParseError e) { expected = e.getMessage(); }
+			try { PenmanParser.parse(amr, new RecordingActions()); }
+			catch (ParseError e) { actual = e.getMessage(); }
+
+			assertNotNull(amr, expected);
+			assertNotNull(amr, actual);
+			assertEquals(amr, expected.split("\n")[0].replaceAll(", ", ",").split("expected")[0],
+					actual.split("\n")[0].replaceAll(", ", ",").split("expected")[0]);
+		}
+	}
+}
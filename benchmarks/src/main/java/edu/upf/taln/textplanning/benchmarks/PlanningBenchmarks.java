@@ -0,0 +1,121 @@
+package edu.upf.taln.textplanning.benchmarks;
+
+import edu.upf.taln.textplanning.core.Options;
+import edu.upf.taln.textplanning.core.discourse.DiscoursePlanner;
+import edu.upf.taln.textplanning.core.extraction.Explorer;
+import edu.upf.taln.textplanning.core.extraction.RequirementsExplorer;
+import edu.upf.taln.textplanning.core.extraction.SoftMaxPolicy;
+import edu.upf.taln.textplanning.core.extraction.SubgraphExtraction;
+import edu.upf.taln.textplanning.core.redundancy.RedundancyRemover;
+import edu.upf.taln.textplanning.core.similarity.SemanticTreeSimilarity;
+import edu.upf.taln.textplanning.core.similarity.TreeSimilarityMatrix;
+import edu.upf.taln.textplanning.core.structures.SemanticGraph;
+import edu.upf.taln.textplanning.core.structures.SemanticSubgraph;
+import edu.upf.taln.textplanning.core.structures.SemanticTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Benchmarks for the extraction of subgraphs and the stages working on them: similarity between trees, redundancy
+ * removal and discourse planning. Size is the number of vertices of the graph, and one subgraph is extracted for
+ * every 10 vertices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanningBenchmarks
+{
+	@Param({"100", "500", "2000"})
+	public int size;
+	@Param({"50", "300"})
+	public int dimension;
+
+	private final Options options = new Options();
+	private SemanticGraph graph;
+	private int num_subgraphs;
+	private List<SemanticSubgraph> subgraphs;
+	private List<SemanticTree> trees;
+	private SemanticTreeSimilarity tree_similarity;
+	private TreeSimilarityMatrix similarities;
+	private int pair = 0;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		final List<String> meanings = SyntheticFixtures.createMeanings(size);
+		graph = SyntheticFixtures.createGraph(size, meanings);
+		num_subgraphs = Math.max(10, size / 10);
+		subgraphs = createExtraction().multipleExtraction(graph, num_subgraphs);
+		trees = subgraphs.stream()
+				.map(SemanticTree::new)
+				.collect(toList());
+		tree_similarity = new SemanticTreeSimilarity(
+				SyntheticFixtures.createSimilarity(SyntheticFixtures.createVectors(meanings, dimension)),
+				options.tree_edit_lambda);
+		similarities = new TreeSimilarityMatrix(subgraphs, tree_similarity);
+	}
+
+	private SubgraphExtraction createExtraction()
+	{
+		final Explorer explorer = new RequirementsExplorer(new SyntheticFixtures.Semantics(), true,
+				Explorer.ExpansionPolicy.Non_core_only);
+		return new SubgraphExtraction(explorer, new SoftMaxPolicy(), options.extraction_lambda,
+				ForkJoinPool.commonPool(), SyntheticFixtures.seed);
+	}
+
+	@Benchmark
+	public List<SemanticSubgraph> multipleExtraction()
+	{
+		return createExtraction().multipleExtraction(graph, num_subgraphs);
+	}
+
+	// Each invocation compares a different pair of trees
+	@Benchmark
+	public double treeSimilarity()
+	{
+		final int n = trees.size();
+		final int i = pair % n;
+		final int j = (pair / n) % n;
+		pair = (pair + 1) % (n * n);
+		return tree_similarity.getSimilarity(trees.get(i), trees.get(j));
+	}
+
+	@Benchmark
+	public TreeSimilarityMatrix treeSimilarityMatrix()
+	{
+		return new TreeSimilarityMatrix(subgraphs, tree_similarity);
+	}
+
+	@Benchmark
+	public Collection<SemanticSubgraph> redundancyFilter()
+	{
+		return new RedundancyRemover(tree_similarity).filter(subgraphs, num_subgraphs / 2);
+	}
+
+	@Benchmark
+	public Collection<SemanticSubgraph> redundancyFilterPrecalculated()
+	{
+		return RedundancyRemover.filter(similarities, num_subgraphs / 2);
+	}
+
+	@Benchmark
+	public List<SemanticSubgraph> structureSubgraphs()
+	{
+		return new DiscoursePlanner(tree_similarity).structureSubgraphs(subgraphs);
+	}
+
+	@Benchmark
+	public List<SemanticSubgraph> structureSubgraphsPrecalculated()
+	{
+		return DiscoursePlanner.structureSubgraphs(subgraphs, similarities);
+	}
+}
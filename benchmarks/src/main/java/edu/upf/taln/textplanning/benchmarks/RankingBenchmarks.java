@@ -0,0 +1,95 @@
+package edu.upf.taln.textplanning.benchmarks;
+
+import Jama.Matrix;
+import edu.upf.taln.textplanning.core.Options;
+import edu.upf.taln.textplanning.core.ranking.GraphRanking;
+import edu.upf.taln.textplanning.core.ranking.JamaPowerIteration;
+import edu.upf.taln.textplanning.core.ranking.MatrixFactory;
+import edu.upf.taln.textplanning.core.similarity.NormalizedVectorsSimilarity;
+import edu.upf.taln.textplanning.core.similarity.vectors.Vectors;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
+import edu.upf.taln.textplanning.core.structures.SemanticGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Benchmarks for the creation of similarity and ranking matrices and for the ranking of meanings and variables.
+ * Size is the number of meanings, and also the number of vertices of the graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmarks
+{
+	@Param({"100", "500", "2000"})
+	public int size;
+	@Param({"50", "300"})
+	public int dimension;
+
+	private final Options options = new Options();
+	private final Function<String, Double> weighting = m -> 0.5;
+	private final BiPredicate<String, String> filter = (m1, m2) -> true;
+	private List<String> meanings;
+	private BiFunction<String, String, OptionalDouble> similarity;
+	private NormalizedVectorsSimilarity normalized_similarity;
+	private Matrix ranking_matrix;
+	private CandidateTable candidates;
+	private SemanticGraph graph;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		meanings = SyntheticFixtures.createMeanings(size);
+		final Vectors vectors = SyntheticFixtures.createVectors(meanings, dimension);
+		similarity = SyntheticFixtures.createSimilarity(vectors);
+		normalized_similarity = new NormalizedVectorsSimilarity(vectors);
+		ranking_matrix = new Matrix(MatrixFactory.createMeaningRankingMatrix(meanings, weighting, similarity, filter,
+				options.sim_threshold, options.damping_meanings));
+		graph = SyntheticFixtures.createGraph(size, meanings);
+		candidates = new CandidateTable(SyntheticFixtures.createCandidates(graph, meanings));
+	}
+
+	@Benchmark
+	public double[][] meaningsSimilarityMatrix()
+	{
+		return MatrixFactory.createMeaningsSimilarityMatrix(meanings, similarity, filter, options.sim_threshold,
+				false, true, false);
+	}
+
+	@Benchmark
+	public double[][] normalizedSimilarityMatrix()
+	{
+		return MatrixFactory.createMeaningsSimilarityMatrix(meanings, normalized_similarity, filter,
+				options.sim_threshold, false, true, false);
+	}
+
+	@Benchmark
+	public Matrix jamaPowerIteration()
+	{
+		return new JamaPowerIteration().run(ranking_matrix, meanings);
+	}
+
+	@Benchmark
+	public double rankMeanings()
+	{
+		GraphRanking.rankMeanings(candidates, c -> true, filter, weighting, similarity, options.sim_threshold,
+				options.damping_meanings);
+		return candidates.getWeight(0);
+	}
+
+	@Benchmark
+	public double rankVariables()
+	{
+		GraphRanking.rankVariables(graph, options.damping_variables);
+		return graph.getWeight(graph.vertexSet().iterator().next());
+	}
+}
@@ -0,0 +1,162 @@
+package edu.upf.taln.textplanning.benchmarks;
+
+import edu.upf.taln.textplanning.core.io.GraphSemantics;
+import edu.upf.taln.textplanning.core.similarity.CosineSimilarity;
+import edu.upf.taln.textplanning.core.similarity.VectorsSimilarity;
+import edu.upf.taln.textplanning.core.similarity.vectors.Vectors;
+import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.Meaning;
+import edu.upf.taln.textplanning.core.structures.Mention;
+import edu.upf.taln.textplanning.core.structures.SemanticGraph;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Synthetic inputs for the benchmarks, generated from a fixed seed so that all runs, on any machine, measure the same
+ * data. Nothing is read from disk or from the network.
+ *
+ * Graphs are made of sentences of {@link #sentence_size} vertices, each a random tree rooted at a verb whose
+ * vertices are linked with core (ARGn) and non-core roles. A few vertices per sentence are shared with the previous
+ * sentence, as coreferent vertices would be in a graph built from a real document.
+ */
+public final class SyntheticFixtures
+{
+	public static final long seed = 42L;
+	public static final int sentence_size = 12;
+	private static final int candidates_per_mention = 3;
+	private static final String[] core_roles = {"ARG0", "ARG1", "ARG2"};
+	private static final String[] non_core_roles = {"mod", "time", "location", "manner"};
+
+	private SyntheticFixtures() {}
+
+	public static List<String> createMeanings(int num_meanings)
+	{
+		return IntStream.range(0, num_meanings)
+				.mapToObj(i -> String.format("bn:%08dn", i))
+				.collect(toList());
+	}
+
+	// Random vectors, normally distributed so that cosine similarities spread around 0
+	public static Vectors createVectors(List<String> meanings, int num_dimensions)
+	{
+		final Random random = new Random(seed);
+		final Map<String, double[]> vectors = new HashMap<>();
+		meanings.forEach(m -> vectors.put(m, IntStream.range(0, num_dimensions)
+				.mapToDouble(i -> random.nextGaussian())
+				.toArray()));
+
+		return new Vectors()
+		{
+			@Override
+			public boolean isDefinedFor(String item) { return vectors.containsKey(item); }
+			@Override
+			public int getNumDimensions() { return num_dimensions; }
+			@Override
+			public Optional<double[]> getVector(String item) { return Optional.ofNullable(vectors.get(item)); }
+		};
+	}
+
+	public static BiFunction<String, String, OptionalDouble> createSimilarity(Vectors vectors)
+	{
+		return new VectorsSimilarity(vectors, new CosineSimilarity());
+	}
+
+	/**
+	 * @param num_vertices number of vertices of the graph
+	 * @param meanings meanings assigned at random to vertices
+	 */
+	public static SemanticGraph createGraph(int num_vertices, List<String> meanings)
+	{
+		final Random random = new Random(seed);
+		final SemanticGraph g = new SemanticGraph();
+		final int num_sentences = (num_vertices + sentence_size - 1) / sentence_size;
+		List<String> previous = Collections.emptyList();
+
+		for (int s = 0; s < num_sentences; ++s)
+		{
+			final String source = "s" + s;
+			final int size = Math.min(sentence_size, num_vertices - s * sentence_size);
+			final List<String> vertices = new ArrayList<>();
+			for (int i = 0; i < size; ++i)
+			{
+				final String v = source + "_v" + i;
+				final boolean is_verb = i == 0 || random.nextDouble() < 0.2;
+				final String reference = meanings.get(random.nextInt(meanings.size()));
+				g.addVertex(v);
+				g.setMeaning(v, Meaning.get(reference, reference, false));
+				g.setWeight(v, random.nextDouble());
+				g.addMention(v, Mention.get(source, Pair.of(i, i + 1), "w" + i, "w" + i, is_verb ? "VBZ" : "NN",
+						false, ""));
+				g.addSource(v, source);
+
+				// Attach to a random vertex of the sentence
+				if (i > 0)
+				{
+					final String parent = vertices.get(random.nextInt(vertices.size()));
+					final boolean core = random.nextDouble() < 0.6;
+					final String[] roles = core ? core_roles : non_core_roles;
+					g.addNewEdge(parent, v, roles[random.nextInt(roles.length)]);
+				}
+				vertices.add(v);
+			}
+
+			// Link to vertices of the previous sentence
+			for (int i = 0; i < Math.min(2, previous.size()); ++i)
+			{
+				final String target = previous.get(random.nextInt(previous.size()));
+				final String v = vertices.get(random.nextInt(vertices.size()));
+				if (!v.equals(target) && !g.containsEdge(v, target) && !g.containsEdge(target, v))
+					g.addNewEdge(v, target, non_core_roles[random.nextInt(non_core_roles.length)]);
+			}
+			previous = vertices;
+		}
+
+		// Weights add up to 1, as those produced by ranking variables
+		final double total = g.vertexSet().stream().mapToDouble(g::getWeight).sum();
+		g.vertexSet().forEach(v -> g.setWeight(v, g.getWeight(v) / total));
+
+		return g;
+	}
+
+	// Each mention in the graph gets a few candidate meanings, including the one assigned to its vertex
+	public static List<Candidate> createCandidates(SemanticGraph g, List<String> meanings)
+	{
+		final Random random = new Random(seed);
+		final List<Candidate> candidates = new ArrayList<>();
+		g.vertexSet().stream()
+				.sorted()
+				.forEach(v -> g.getMentions(v).forEach(mention ->
+				{
+					g.getMeaning(v).ifPresent(m -> candidates.add(new Candidate(mention, m)));
+					for (int i = 1; i < candidates_per_mention; ++i)
+					{
+						final String reference = meanings.get(random.nextInt(meanings.size()));
+						candidates.add(new Candidate(mention, Meaning.get(reference, reference, false)));
+					}
+				}));
+		return candidates;
+	}
+
+	/**
+	 * Core roles of verbs are required, so extraction grows subgraphs in steps similar to those on AMR graphs.
+	 */
+	public static class Semantics implements GraphSemantics
+	{
+		@Override
+		public boolean isCore(String role)
+		{
+			return role.startsWith("ARG");
+		}
+
+		@Override
+		public boolean isRequired(String v, String source, String target, String role, SemanticGraph g)
+		{
+			return source.equals(v) && isCore(role);
+		}
+	}
+}
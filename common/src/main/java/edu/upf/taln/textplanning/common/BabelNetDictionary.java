@@ -22,7 +22,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import static edu.upf.taln.textplanning.common.POSConverter.BN_POS_EN;
 import static java.util.stream.Collectors.toList;
 
-public class BabelNetDictionary implements MeaningDictionary
+public class BabelNetDictionary implements MeaningDictionary, DBPediaDictionary
 {
 	private final it.uniroma1.lcl.babelnet.BabelNet bn;
 	public static final AtomicLong num_queries = new AtomicLong();
@@ -225,6 +225,7 @@ public class BabelNetDictionary implements MeaningDictionary
 		}
 	}
 
+	@Override
 	public List<String> getdbPediaURIs(String id)
 	{
 		if (bn == null)
@@ -0,0 +1,52 @@
+package edu.upf.taln.textplanning.common;
+
+import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.SemanticGraph;
+import edu.upf.taln.textplanning.core.structures.SemanticSubgraph;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes and reads objects of a given class to and from binary checkpoint files. The name of the codec is stored in
+ * the header of the files, so that a file cannot be read with a different codec.
+ * Codecs for intermediate structures of the planner are provided as static members.
+ */
+public abstract class CheckpointCodec<T>
+{
+	private final String name;
+
+	public static final CheckpointCodec<SemanticGraph> semantic_graph = new CheckpointCodec<SemanticGraph>("SemanticGraph")
+	{
+		@Override
+		public void write(SemanticGraph g, CheckpointWriter out) throws IOException { out.writeGraph(g); }
+		@Override
+		public SemanticGraph read(CheckpointReader in) throws IOException { return in.readGraph(); }
+	};
+
+	public static final CheckpointCodec<List<SemanticSubgraph>> subgraphs = new CheckpointCodec<List<SemanticSubgraph>>("SemanticSubgraphs")
+	{
+		@Override
+		public void write(List<SemanticSubgraph> s, CheckpointWriter out) throws IOException { out.writeSubgraphs(s); }
+		@Override
+		public List<SemanticSubgraph> read(CheckpointReader in) throws IOException { return in.readSubgraphs(); }
+	};
+
+	public static final CheckpointCodec<List<Candidate>> candidates = new CheckpointCodec<List<Candidate>>("Candidates")
+	{
+		@Override
+		public void write(List<Candidate> c, CheckpointWriter out) throws IOException { out.writeCandidates(c); }
+		@Override
+		public List<Candidate> read(CheckpointReader in) throws IOException { return in.readCandidates(); }
+	};
+
+	protected CheckpointCodec(String name)
+	{
+		this.name = name;
+	}
+
+	public String getName() { return name; }
+
+	public abstract void write(T obj, CheckpointWriter out) throws IOException;
+	public abstract T read(CheckpointReader in) throws IOException;
+}
@@ -0,0 +1,243 @@
+package edu.upf.taln.textplanning.common;
+
+import edu.upf.taln.textplanning.core.structures.*;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Reads objects from a binary checkpoint file written with {@link CheckpointWriter}.
+ * Methods must be called in the same order as the methods used to write the file.
+ */
+public final class CheckpointReader implements Closeable
+{
+	@FunctionalInterface
+	public interface ObjectReader<T>
+	{
+		T read() throws IOException;
+	}
+
+	private final DataInputStream in;
+	private final List<String> strings = new ArrayList<>();
+	private final List<Object> objects = new ArrayList<>();
+
+	public CheckpointReader(Path file, String codec) throws IOException
+	{
+		in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(FileChannel.open(file,
+				StandardOpenOption.READ)), 1 << 20));
+		if (in.readInt() != CheckpointWriter.magic)
+		{
+			in.close();
+			throw new IOException("Not a checkpoint file: " + file);
+		}
+		final int version = in.readInt();
+		if (version != CheckpointWriter.version)
+		{
+			in.close();
+			throw new IOException("Unsupported checkpoint version " + version + " in " + file);
+		}
+		final String file_codec = readString();
+		if (!codec.equals(file_codec))
+		{
+			in.close();
+			throw new IOException("Checkpoint " + file + " contains " + file_codec + ", expected " + codec);
+		}
+	}
+
+	/**
+	 * @return true if the file starts with the magic number of checkpoint files
+	 */
+	public static boolean isCheckpoint(Path file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file.toFile())))
+		{
+			return in.readInt() == CheckpointWriter.magic;
+		}
+		catch (EOFException e)
+		{
+			return false;
+		}
+	}
+
+	public int readInt() throws IOException
+	{
+		int i = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = in.readUnsignedByte();
+			i |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return i;
+	}
+
+	public double readDouble() throws IOException { return in.readDouble(); }
+	public boolean readBoolean() throws IOException { return in.readBoolean(); }
+
+	public String readString() throws IOException
+	{
+		final int id = readInt();
+		if (id == 0)
+			return null;
+		if (id <= strings.size())
+			return strings.get(id - 1);
+
+		final byte[] bytes = new byte[readInt()];
+		in.readFully(bytes);
+		final String s = new String(bytes, StandardCharsets.UTF_8);
+		strings.add(s);
+		return s;
+	}
+
+	public List<String> readStrings() throws IOException
+	{
+		final int size = readInt();
+		final List<String> strings = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i)
+			strings.add(readString());
+		return strings;
+	}
+
+	/**
+	 * Reads a reference to an object written with {@link CheckpointWriter#writeReference(Object)}. If the object
+	 * hasn't been read before, its fields are read with the given reader.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T readReference(ObjectReader<T> reader) throws IOException
+	{
+		final int id = readInt();
+		if (id == 0)
+			return null;
+		if (id <= objects.size())
+			return (T) objects.get(id - 1);
+
+		// Reserve position before reading fields, which may contain references themselves
+		objects.add(null);
+		final T o = reader.read();
+		objects.set(id - 1, o);
+		return o;
+	}
+
+	public Meaning readMeaning() throws IOException
+	{
+		return readReference(() ->
+		{
+			final String reference = readString();
+			final String label = readString();
+			final boolean is_NE = readBoolean();
+			final String type = readString();
+			final Meaning m = Meaning.get(reference, label, is_NE);
+			if (m.getType().isEmpty()) // interned meanings are shared, keep the type they already have
+				m.setType(type);
+			return m;
+		});
+	}
+
+	public Mention readMention() throws IOException
+	{
+		return readReference(() ->
+		{
+			final String context_id = readString();
+			final int start = readInt();
+			final int end = readInt();
+			final String surface_form = readString();
+			final String lemma = readString();
+			final String pos = readString();
+			final boolean is_NE = readBoolean();
+			final String type = readString();
+			return Mention.get(context_id, Pair.of(start, end), surface_form, lemma, pos, is_NE, type);
+		});
+	}
+
+	public List<Mention> readMentions() throws IOException
+	{
+		final int size = readInt();
+		final List<Mention> mentions = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i)
+			mentions.add(readMention());
+		return mentions;
+	}
+
+	public Candidate readCandidate() throws IOException
+	{
+		return readReference(() ->
+		{
+			final Mention mention = readMention();
+			final Meaning meaning = readMeaning();
+			final Candidate c = new Candidate(mention, meaning);
+			c.setWeight(readDouble());
+			return c;
+		});
+	}
+
+	public List<Candidate> readCandidates() throws IOException
+	{
+		final int size = readInt();
+		final List<Candidate> candidates = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i)
+			candidates.add(readCandidate());
+		return candidates;
+	}
+
+	public SemanticGraph readGraph() throws IOException
+	{
+		return readReference(() ->
+		{
+			final SemanticGraph g = new SemanticGraph();
+			final List<String> vertices = readStrings();
+			vertices.forEach(g::addVertex);
+			final int num_edges = readInt();
+			for (int i = 0; i < num_edges; ++i)
+			{
+				final String source = readString();
+				final String target = readString();
+				g.addNewEdge(source, target, readString());
+			}
+
+			for (String v : vertices)
+			{
+				final Meaning m = readMeaning();
+				if (m != null)
+					g.setMeaning(v, m);
+				if (readBoolean())
+					g.setWeight(v, readDouble());
+				for (Mention mention : readMentions())
+					g.addMention(v, mention);
+				for (String source : readStrings())
+					g.addSource(v, source);
+				for (String type : readStrings())
+					g.addType(v, type);
+			}
+			return g;
+		});
+	}
+
+	public List<SemanticSubgraph> readSubgraphs() throws IOException
+	{
+		final int size = readInt();
+		final List<SemanticSubgraph> subgraphs = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i)
+		{
+			final SemanticGraph base = readGraph();
+			final String root = readString();
+			final double value = readDouble();
+			subgraphs.add(new SemanticSubgraph(base, root, new LinkedHashSet<>(readStrings()), value));
+		}
+		return subgraphs;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+}
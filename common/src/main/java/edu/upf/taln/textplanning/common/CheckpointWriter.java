@@ -0,0 +1,207 @@
+package edu.upf.taln.textplanning.common;
+
+import edu.upf.taln.textplanning.core.structures.*;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Writes objects to a binary checkpoint file, to be read back with {@link CheckpointReader}.
+ *
+ * Files start with a header made of a magic number, a format version and the name of the codec used to write the
+ * contents. Integers are written as variable-length quantities. Strings and shared objects (meanings, mentions,
+ * candidates, graphs) are written inline the first time they occur and as references to a table afterwards, so
+ * repeated labels and meanings take a few bytes each.
+ */
+public final class CheckpointWriter implements Closeable
+{
+	static final int magic = 0x54504350;
+	static final int version = 1;
+
+	private final DataOutputStream out;
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final Map<Object, Integer> objects = new IdentityHashMap<>();
+
+	public CheckpointWriter(Path file, String codec) throws IOException
+	{
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20));
+		out.writeInt(magic);
+		out.writeInt(version);
+		writeString(codec);
+	}
+
+	public void writeInt(int i) throws IOException
+	{
+		// unsigned LEB128
+		while ((i & ~0x7F) != 0)
+		{
+			out.writeByte((i & 0x7F) | 0x80);
+			i >>>= 7;
+		}
+		out.writeByte(i);
+	}
+
+	public void writeDouble(double d) throws IOException { out.writeDouble(d); }
+	public void writeBoolean(boolean b) throws IOException { out.writeBoolean(b); }
+
+	// Null strings are written as 0, known strings as their position in the table + 1
+	public void writeString(String s) throws IOException
+	{
+		if (s == null)
+		{
+			writeInt(0);
+			return;
+		}
+
+		final Integer id = strings.get(s);
+		if (id != null)
+			writeInt(id + 1);
+		else
+		{
+			writeInt(strings.size() + 1);
+			strings.put(s, strings.size());
+			final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	public void writeStrings(Collection<String> c) throws IOException
+	{
+		writeInt(c.size());
+		for (String s : c)
+			writeString(s);
+	}
+
+	/**
+	 * Writes a reference to an object, or 0 if null.
+	 * @return true if the object hasn't been written before and its fields must follow
+	 */
+	public boolean writeReference(Object o) throws IOException
+	{
+		if (o == null)
+		{
+			writeInt(0);
+			return false;
+		}
+
+		final Integer id = objects.get(o);
+		if (id != null)
+		{
+			writeInt(id + 1);
+			return false;
+		}
+
+		writeInt(objects.size() + 1);
+		objects.put(o, objects.size());
+		return true;
+	}
+
+	public void writeMeaning(Meaning m) throws IOException
+	{
+		if (writeReference(m))
+		{
+			writeString(m.getReference());
+			writeString(m.getLabel());
+			writeBoolean(m.isNE());
+			writeString(m.getType());
+		}
+	}
+
+	public void writeMention(Mention m) throws IOException
+	{
+		if (writeReference(m))
+		{
+			writeString(m.getContextId());
+			writeInt(m.getSpan().getLeft());
+			writeInt(m.getSpan().getRight());
+			writeString(m.getSurface_form());
+			writeString(m.getLemma());
+			writeString(m.getPOS());
+			writeBoolean(m.isNE());
+			writeString(m.getType());
+		}
+	}
+
+	public void writeMentions(Collection<Mention> mentions) throws IOException
+	{
+		writeInt(mentions.size());
+		for (Mention m : mentions)
+			writeMention(m);
+	}
+
+	public void writeCandidate(Candidate c) throws IOException
+	{
+		if (writeReference(c))
+		{
+			writeMention(c.getMention());
+			writeMeaning(c.getMeaning());
+			writeDouble(c.getWeight());
+		}
+	}
+
+	public void writeCandidates(Collection<Candidate> candidates) throws IOException
+	{
+		writeInt(candidates.size());
+		for (Candidate c : candidates)
+			writeCandidate(c);
+	}
+
+	// Vertices and edges are written in iteration order, so that it is preserved when the graph is read
+	public void writeGraph(SemanticGraph g) throws IOException
+	{
+		if (!writeReference(g))
+			return;
+
+		writeStrings(g.vertexSet());
+		writeInt(g.edgeSet().size());
+		for (Role e : g.edgeSet())
+		{
+			writeString(g.getEdgeSource(e));
+			writeString(g.getEdgeTarget(e));
+			writeString(e.getLabel());
+		}
+
+		final Map<String, Double> weights = g.getWeights();
+		for (String v : g.vertexSet())
+		{
+			writeMeaning(g.getMeaning(v).orElse(null));
+			final Double w = weights.get(v);
+			writeBoolean(w != null);
+			if (w != null)
+				writeDouble(w);
+			writeMentions(g.getMentions(v));
+			writeStrings(g.getSources(v));
+			writeStrings(g.getTypes(v));
+		}
+	}
+
+	// Subgraphs sharing the same base graph are written with a single copy of it
+	public void writeSubgraphs(Collection<SemanticSubgraph> subgraphs) throws IOException
+	{
+		writeInt(subgraphs.size());
+		for (SemanticSubgraph s : subgraphs)
+		{
+			writeGraph(s.getBase());
+			writeString(s.getRoot());
+			writeDouble(s.getValue());
+			writeStrings(s.vertexSet());
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+}
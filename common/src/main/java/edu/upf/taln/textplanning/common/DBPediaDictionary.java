@@ -0,0 +1,14 @@
+package edu.upf.taln.textplanning.common;
+
+import java.util.List;
+
+/**
+ * Dictionary which links meanings to DBPedia resources.
+ */
+public interface DBPediaDictionary
+{
+	/**
+	 * @return DBPedia URIs of the meaning, empty if none are known
+	 */
+	List<String> getdbPediaURIs(String id);
+}
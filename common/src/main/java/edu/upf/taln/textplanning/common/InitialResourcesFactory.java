@@ -3,7 +3,10 @@ package edu.upf.taln.textplanning.common;
 import com.google.common.base.Stopwatch;
 import com.ibm.icu.util.ULocale;
 import edu.upf.taln.textplanning.core.similarity.CosineSimilarity;
-import edu.upf.taln.textplanning.core.similarity.VectorsSimilarity;
+import edu.upf.taln.textplanning.core.similarity.LSHSimilarity;
+import edu.upf.taln.textplanning.core.similarity.MappedVectorsSimilarity;
+import edu.upf.taln.textplanning.core.similarity.NormalizedVectorsSimilarity;
+import edu.upf.taln.textplanning.core.similarity.SimilarityCache;
 import edu.upf.taln.textplanning.core.similarity.vectors.*;
 import edu.upf.taln.textplanning.core.similarity.vectors.SentenceVectors.SentenceVectorType;
 import edu.upf.taln.textplanning.core.similarity.vectors.Vectors.VectorType;
@@ -12,6 +15,9 @@ import edu.upf.taln.textplanning.core.utils.DebugUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -20,15 +26,20 @@ import java.util.function.BiFunction;
 import static edu.upf.taln.textplanning.core.utils.DebugUtils.LOGGING_STEP_SIZE;
 import static java.util.stream.Collectors.*;
 
-public class InitialResourcesFactory
+public class InitialResourcesFactory implements Closeable
 {
 	private final ULocale language;
 	private final MeaningDictionary dictionary;
 	private final SentenceVectors sentence_vectors;
 	private final BiFunction<double[], double[], Double> sentence_similarity_function;
-	private final BiFunction<String, String, OptionalDouble> meanings_similarity_function;
+	private final Vectors meaning_vectors;
+	private final int meaning_vectors_fingerprint;
+	private BiFunction<String, String, OptionalDouble> meanings_similarity_function;
+	private SimilarityCache meanings_similarity_cache = null;
 	private final Path meaning_context_vectors_path;
 	private final VectorType meaning_context_vectors_type;
+	private final int sentence_vectors_fingerprint;
+	private VectorsStore glosses_vectors_store = null;
 	private final static Logger log = LogManager.getLogger();
 
 	public InitialResourcesFactory(ULocale language, Path dictionary_config) throws Exception
@@ -47,18 +58,34 @@ public class InitialResourcesFactory
 		log.info("Loading initial resources");
 
 		this.language = language;
-		if (dictionary_config != null)
+		if (dictionary_config != null && Files.isRegularFile(dictionary_config))
+			dictionary = new SnapshotDictionary(dictionary_config);
+		else if (dictionary_config != null)
 			dictionary = new BabelNetDictionary(dictionary_config);
 		else
 			dictionary = null;
 
 		if (meaning_vectors_type != null)
 		{
-			final Vectors meaning_vectors = getVectors(meaning_vectors_path, meaning_vectors_type, 300);
-			meanings_similarity_function = new VectorsSimilarity(meaning_vectors, new CosineSimilarity());
+			meaning_vectors = getVectors(meaning_vectors_path, meaning_vectors_type, 300);
+
+			// Quantized vectors are compared without decoding them
+			if (meaning_vectors instanceof MappedVectors &&
+					((MappedVectors) meaning_vectors).getEncoding() != MappedVectors.Encoding.Float32)
+				meanings_similarity_function = new MappedVectorsSimilarity((MappedVectors) meaning_vectors);
+			else
+				meanings_similarity_function = new NormalizedVectorsSimilarity(meaning_vectors);
 		}
 		else
+		{
+			meaning_vectors = null;
 			meanings_similarity_function = null;
+		}
+
+		// Identifies the meaning vectors compared by the similarity function, so that caches of other vectors are discarded
+		meaning_vectors_fingerprint = meaning_vectors_type == null ? 0 : Objects.hash(meaning_vectors_type.name(),
+				getFingerprint(meaning_vectors_path), meaning_vectors.getNumDimensions(),
+				meaning_vectors instanceof MappedVectors ? ((MappedVectors) meaning_vectors).getEncoding().name() : null);
 
 		Vectors word_vectors = null;
 		if (word_vectors_type != null)
@@ -106,10 +133,22 @@ public class InitialResourcesFactory
 			sentence_similarity_function = null;
 		}
 
+		// Identifies the files sentence vectors are calculated from, so that stores of vectors calculated from other files are rejected
+		sentence_vectors_fingerprint = sentence_vectors_type == null ? 0 : Objects.hash(sentence_vectors_type.name(),
+				word_vectors_type, getFingerprint(word_vectors_path),
+				sentence_vectors_type == SentenceVectorType.SIF ? getFingerprint(idf_file) : 0);
+
 		this.meaning_context_vectors_path = meaning_context_vectors_path;
 		this.meaning_context_vectors_type = meaning_context_vectors_type;
 	}
 
+	private static int getFingerprint(Path file) throws IOException
+	{
+		if (file == null)
+			return 0;
+		return Objects.hash(file.toAbsolutePath().normalize().toString(), Files.size(file));
+	}
+
 	public ULocale getLanguage() { return language; }
 
 	public BiFunction<double[], double[], Double> getSentenceSimilarityFunction()
@@ -129,6 +168,58 @@ public class InitialResourcesFactory
 		return meanings_similarity_function;
 	}
 
+	/**
+	 * Wraps the meanings similarity function with a {@link SimilarityCache}
+	 * @param cache_file file where similarity values are kept between runs, or null to keep them in memory only
+	 */
+	public void cacheMeaningsSimilarity(long max_bytes, Path cache_file) throws IOException
+	{
+		if (meanings_similarity_function == null || meanings_similarity_cache != null)
+			return;
+
+		final int fingerprint = Objects.hash(meanings_similarity_function.getClass().getName(),
+				meaning_vectors_fingerprint);
+		meanings_similarity_cache = cache_file != null ?
+				new SimilarityCache(meanings_similarity_function, max_bytes, cache_file, fingerprint) :
+				new SimilarityCache(meanings_similarity_function, max_bytes);
+		meanings_similarity_function = meanings_similarity_cache;
+	}
+
+	public void flushMeaningsSimilarityCache()
+	{
+		if (meanings_similarity_cache != null)
+			meanings_similarity_cache.flush();
+	}
+
+	/**
+	 * Opens a {@link VectorsStore} where vectors calculated from the glosses of meanings with the sentence vectors are kept
+	 * for all documents, and looked up by SenseGlosses meaning context vectors.
+	 * @param store_file new file, or file of a store filled with the same sentence vectors
+	 */
+	public void storeGlossesVectors(Path store_file) throws Exception
+	{
+		if (sentence_vectors == null || glosses_vectors_store != null)
+			return;
+		if (sentence_vectors instanceof RandomVectors)
+			throw new Exception("Random sentence vectors change from one run to another and cannot be stored");
+
+		glosses_vectors_store = new VectorsStore(store_file, sentence_vectors.getNumDimensions(),
+				sentence_vectors_fingerprint);
+	}
+
+	/**
+	 * Wraps the meanings similarity function with an {@link LSHSimilarity}, so that only meanings with similar vectors
+	 * are compared when ranking
+	 */
+	public void indexMeaningsSimilarity(int num_tables, int num_bits, boolean report_recall)
+	{
+		if (meanings_similarity_function == null || meanings_similarity_function instanceof LSHSimilarity)
+			return;
+
+		meanings_similarity_function = new LSHSimilarity(meanings_similarity_function, meaning_vectors, num_tables,
+				num_bits, 0L, report_recall);
+	}
+
 	// Reads text-based IDF file
 	private static Map<String, Double> getFrequencies(Path freqs_file)
 	{
@@ -168,6 +259,8 @@ public class InitialResourcesFactory
 				return new Word2VecVectors(location);
 			case Binary_RandomAccess:
 				return new RandomAccessFileVectors(location, num_dimensions);
+			case Binary_Mapped:
+				return new MappedVectors(location);
 			case Random:
 			default:
 				return new RandomVectors();
@@ -175,5 +268,13 @@ public class InitialResourcesFactory
 	}
 
 	public Path getMeaningContextVectorsPath() { return meaning_context_vectors_path; }
+	public VectorsStore getGlossesVectorsStore() { return glosses_vectors_store; }
 	public VectorType getMeaningContextVectorsType() { return meaning_context_vectors_type; }
+
+	@Override
+	public void close() throws IOException
+	{
+		if (glosses_vectors_store != null)
+			glosses_vectors_store.close();
+	}
 }
@@ -7,20 +7,21 @@ import edu.upf.taln.textplanning.core.ranking.StopWordsFilter;
 import edu.upf.taln.textplanning.core.ranking.TopCandidatesFilter;
 import edu.upf.taln.textplanning.core.similarity.vectors.*;
 import edu.upf.taln.textplanning.core.structures.Candidate;
-import edu.upf.taln.textplanning.core.structures.Mention;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import edu.upf.taln.textplanning.core.weighting.ContextWeighter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
+import static java.util.stream.Collectors.counting;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 
@@ -30,6 +31,7 @@ public class ProcessResourcesFactory
 	private final Options options;
 	private final Vectors meaning_context_vectors;
 	private final List<Candidate> candidates;
+	private final CandidateTable table; // shared by filters and ranking
 	private final List<String> tokens;
 	private final Function<String, List<String>> glosses;
 	private final static Logger log = LogManager.getLogger();
@@ -42,6 +44,7 @@ public class ProcessResourcesFactory
 		this.factory = factory;
 		this.options = options;
 		this.candidates = candidates;
+		this.table = new CandidateTable(candidates);
 		this.tokens = tokens;
 		if (glosses == null)
 			this.glosses = s -> factory.getDictionary().getGlosses(s, factory.getLanguage());
@@ -63,8 +66,15 @@ public class ProcessResourcesFactory
 					return new Word2VecVectors(location);
 				case Binary_RandomAccess:
 					return new RandomAccessFileVectors(location, num_dimensions);
+				case Binary_Mapped:
+					return new MappedVectors(location);
 				case SenseGlosses:
-					return new SenseGlossesVectors(factory.getLanguage(), this.glosses, factory.getSentenceVectors());
+				{
+					final Vectors glosses_vectors = new SenseGlossesVectors(factory.getLanguage(), this.glosses,
+							factory.getSentenceVectors());
+					final VectorsStore store = factory.getGlossesVectorsStore();
+					return store != null ? new StoredVectors(store, glosses_vectors) : glosses_vectors;
+				}
 				case Random:
 				default:
 					return new RandomVectors();
@@ -79,11 +89,12 @@ public class ProcessResourcesFactory
 	public Function<String, Double> getMeaningsWeighter()
 	{
 		Predicate<String> function_words_filter = (str) -> StopWordsFilter.test(str, factory.getLanguage()); // filter function and frequent words
-		final List<String> context_tokens = tokens.stream()
-				.distinct()
+		final Map<String, Long> frequencies = tokens.stream()
+				.collect(groupingBy(Function.identity(), LinkedHashMap::new, counting()));
+		final List<String> context_tokens = frequencies.keySet().stream()
 				.filter(function_words_filter)
+				.filter(t -> frequencies.get(t) >= options.min_context_freq)
 				.collect(toList());
-		context_tokens.removeIf(t -> Collections.frequency(tokens, t) < options.min_context_freq);
 		log.info("Context set to: " + context_tokens);
 
 		return new ContextWeighter(candidates, meaning_context_vectors, factory.getSentenceVectors(), w -> context_tokens,
@@ -92,18 +103,17 @@ public class ProcessResourcesFactory
 
 	public BiPredicate<String, String> getMeaningsFilter()
 	{
-		return new DifferentMentionsFilter(candidates);
+		return new DifferentMentionsFilter(table);
 	}
 
+	public CandidateTable getCandidateTable() { return table; }
+
 	public Predicate<Candidate> getCandidatesFilter(Function<String, Double> weighter)
 	{
-		final Map<Mention, List<Candidate>> mentions2candidates = candidates.stream()
-				.collect(groupingBy(Candidate::getMention));
-
 		// exclude function words for ranking, but be careful not to remove words just because they're frequent -e.g. stop words
 		Predicate<Candidate> function_words_filter = (c) -> FunctionWordsFilter.test(c.getMention().getSurface_form(), factory.getLanguage());
 		final TopCandidatesFilter top_filter =
-				new TopCandidatesFilter(mentions2candidates, weighter, options.num_first_meanings, options.context_threshold);
+				new TopCandidatesFilter(table, weighter, options.num_first_meanings, options.context_threshold);
 		final Predicate<Candidate> pos_filter =	c ->  !options.excluded_POS_Tags.contains(c.getMention().getPOS());
 
 		return top_filter.and(pos_filter).and(function_words_filter);
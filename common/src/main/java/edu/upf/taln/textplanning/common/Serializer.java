@@ -39,22 +39,43 @@ public class Serializer
 	public static Object deserialize(Path input) throws IOException,
 			ClassNotFoundException
 	{
-		FileInputStream fis = new FileInputStream(input.toString());
-		// RecoverStream ois = new RecoverStream(fis);
-		ObjectInputStream ois = new ObjectInputStream(fis);
-		Object obj = ois.readObject();
-		ois.close();
-		return obj;
+		try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(input.toString()), 1 << 20)))
+		{
+			return ois.readObject();
+		}
 	}
 
 	// serialize the given object and save it to file
 	public static void serialize(Object obj, Path output)
 			throws IOException
 	{
-		FileOutputStream fos = new FileOutputStream(output.toString());
-		ObjectOutputStream oos = new ObjectOutputStream(fos);
-		oos.writeObject(obj);
+		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(output.toString()), 1 << 20)))
+		{
+			oos.writeObject(obj);
+		}
+	}
+
+	// read object from a binary checkpoint file, or from a file with a serialized Java object
+	@SuppressWarnings("unchecked")
+	public static <T> T deserialize(Path input, CheckpointCodec<T> codec) throws IOException,
+			ClassNotFoundException
+	{
+		if (!CheckpointReader.isCheckpoint(input))
+			return (T) deserialize(input);
 
-		fos.close();
+		try (CheckpointReader in = new CheckpointReader(input, codec.getName()))
+		{
+			return codec.read(in);
+		}
+	}
+
+	// write the given object to a binary checkpoint file
+	public static <T> void serialize(T obj, Path output, CheckpointCodec<T> codec)
+			throws IOException
+	{
+		try (CheckpointWriter out = new CheckpointWriter(output, codec.getName()))
+		{
+			codec.write(obj, out);
+		}
 	}
-}
\ No newline at end of file
+}
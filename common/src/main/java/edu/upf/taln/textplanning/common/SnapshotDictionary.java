@@ -0,0 +1,389 @@
+package edu.upf.taln.textplanning.common;
+
+import com.google.common.base.Stopwatch;
+import com.ibm.icu.util.ULocale;
+import edu.upf.taln.textplanning.core.structures.MeaningDictionary;
+import edu.upf.taln.textplanning.core.utils.MappedStringIndex;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static edu.upf.taln.textplanning.core.utils.DebugUtils.LOGGING_STEP_SIZE;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Read-only dictionary for a single language, stored in a memory-mapped snapshot file exported from another
+ * dictionary with {@link #create(MeaningDictionary, List, ULocale, Path)}.
+ * Only the meanings of the forms in the vocabulary used for the export are available. Vocabularies of AMR banks can
+ * be created with the vocabulary command of the AMR driver.
+ *
+ * File layout (big-endian):
+ *  - header: magic, version, number of meanings, number of forms, offsets of sections and the language tag
+ *  - meanings index, as a {@link MappedStringIndex}
+ *  - meaning records: int offsets into a blob with, for each meaning, NE flag, label, DBPedia URIs, glosses and lemmas
+ *  - forms index, as a {@link MappedStringIndex} of forms, or forms and POS tags separated by a tab
+ *  - form meanings: int offsets into a list of meaning positions, in the order returned by the original dictionary
+ */
+public class SnapshotDictionary implements MeaningDictionary, DBPediaDictionary
+{
+	private static final int magic = 0x54504453;
+	private static final int version = 1;
+	private static final int header_size = 128;
+	private static final int max_language_bytes = 64;
+	private static final byte NE_unknown = -1;
+
+	private final ULocale language;
+	private final MappedStringIndex meanings;
+	private final ByteBuffer records;
+	private final int records_blob_start;
+	private final MappedStringIndex forms;
+	private final ByteBuffer form_meanings;
+	private final int form_meanings_start;
+	private final static Logger log = LogManager.getLogger();
+
+	public SnapshotDictionary(Path snapshot_file) throws IOException
+	{
+		log.info("Mapping dictionary snapshot " + snapshot_file);
+		Stopwatch timer = Stopwatch.createStarted();
+
+		try (FileChannel channel = FileChannel.open(snapshot_file, StandardOpenOption.READ))
+		{
+			final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, header_size);
+			if (header.getInt(0) != magic || header.getInt(4) != version)
+				throw new IOException("Not a dictionary snapshot file: " + snapshot_file);
+
+			final int num_meanings = header.getInt(8);
+			final int num_forms = header.getInt(12);
+			final long[] offsets = new long[5];
+			for (int i = 0; i < offsets.length - 1; ++i)
+				offsets[i] = header.getLong(16 + i * Long.BYTES);
+			offsets[offsets.length - 1] = channel.size();
+
+			final byte[] language_bytes = new byte[header.getInt(48)];
+			for (int i = 0; i < language_bytes.length; ++i)
+				language_bytes[i] = header.get(52 + i);
+			language = ULocale.forLanguageTag(new String(language_bytes, StandardCharsets.UTF_8));
+
+			meanings = new MappedStringIndex(map(channel, offsets, 0));
+			records = map(channel, offsets, 1);
+			records_blob_start = (num_meanings + 1) * Integer.BYTES;
+			forms = new MappedStringIndex(map(channel, offsets, 2));
+			form_meanings = map(channel, offsets, 3);
+			form_meanings_start = (num_forms + 1) * Integer.BYTES;
+		}
+
+		log.info("Mapped " + meanings.size() + " meanings and " + forms.size() + " forms for language " + language +
+				" in " + timer.stop());
+	}
+
+	private static ByteBuffer map(FileChannel channel, long[] offsets, int section) throws IOException
+	{
+		return channel.map(FileChannel.MapMode.READ_ONLY, offsets[section], offsets[section + 1] - offsets[section]);
+	}
+
+	@Override
+	public Iterator<String> iterator()
+	{
+		return IntStream.range(0, meanings.size())
+				.mapToObj(meanings::get)
+				.iterator();
+	}
+
+	@Override
+	public Iterator<Info> infoIterator(ULocale language)
+	{
+		if (!this.language.equals(language))
+			return Collections.emptyIterator();
+
+		return IntStream.range(0, meanings.size())
+				.mapToObj(i -> new Record(i).toInfo())
+				.iterator();
+	}
+
+	@Override
+	public List<String> getMeanings(String form, ULocale language)
+	{
+		if (!this.language.equals(language))
+			return Collections.emptyList();
+		return getMeanings(form, forms.find(form));
+	}
+
+	/**
+	 * Falls back to the meanings of the form alone if the snapshot has no meanings for the form and POS tag
+	 */
+	@Override
+	public List<String> getMeanings(String form, String pos, ULocale language)
+	{
+		if (!this.language.equals(language))
+			return Collections.emptyList();
+
+		int form_pos = forms.find(getKey(form, pos));
+		if (form_pos < 0)
+			form_pos = forms.find(form);
+		return getMeanings(form, form_pos);
+	}
+
+	private List<String> getMeanings(String form, int form_pos)
+	{
+		if (form_pos < 0)
+		{
+			log.debug("Form " + form + " not in dictionary snapshot");
+			return Collections.emptyList();
+		}
+
+		final int start = form_meanings.getInt(form_pos * Integer.BYTES);
+		final int end = form_meanings.getInt((form_pos + 1) * Integer.BYTES);
+		final List<String> ids = new ArrayList<>(end - start);
+		for (int i = start; i < end; ++i)
+			ids.add(meanings.get(form_meanings.getInt(form_meanings_start + i * Integer.BYTES)));
+		return ids;
+	}
+
+	@Override
+	public boolean contains(String id)
+	{
+		return meanings.find(id) >= 0;
+	}
+
+	@Override
+	public Optional<String> getLabel(String id, ULocale language)
+	{
+		return getRecord(id, language).map(r -> r.label).filter(l -> !l.isEmpty());
+	}
+
+	@Override
+	public Optional<Boolean> isNE(String id)
+	{
+		return getRecord(id, language).filter(r -> r.is_NE != NE_unknown).map(r -> r.is_NE == 1);
+	}
+
+	/**
+	 * @return DBPedia URIs of the meaning, available if the snapshot was created from a {@link DBPediaDictionary}
+	 */
+	@Override
+	public List<String> getdbPediaURIs(String id)
+	{
+		return getRecord(id, language).map(r -> r.dbpedia_uris).orElse(Collections.emptyList());
+	}
+
+	@Override
+	public List<String> getGlosses(String id, ULocale language)
+	{
+		return getRecord(id, language).map(r -> r.glosses).orElse(Collections.emptyList());
+	}
+
+	@Override
+	public List<String> getLemmas(String id, ULocale language)
+	{
+		return getRecord(id, language).map(r -> r.lemmas).orElse(Collections.emptyList());
+	}
+
+	private Optional<Record> getRecord(String id, ULocale language)
+	{
+		if (!this.language.equals(language))
+			return Optional.empty();
+		final int i = meanings.find(id);
+		return i < 0 ? Optional.empty() : Optional.of(new Record(i));
+	}
+
+	private static String getKey(String form, String pos)
+	{
+		return form + "\t" + pos;
+	}
+
+	/**
+	 * Decodes the record of a meaning with absolute reads from the mapped records blob
+	 */
+	private class Record
+	{
+		private final String id;
+		private final byte is_NE;
+		private final String label;
+		private final List<String> dbpedia_uris;
+		private final List<String> glosses;
+		private final List<String> lemmas;
+		private int offset;
+
+		Record(int i)
+		{
+			id = meanings.get(i);
+			offset = records_blob_start + records.getInt(i * Integer.BYTES);
+			is_NE = records.get(offset++);
+			label = readString();
+			dbpedia_uris = readStrings();
+			glosses = readStrings();
+			lemmas = readStrings();
+		}
+
+		private String readString()
+		{
+			final byte[] bytes = new byte[records.getInt(offset)];
+			offset += Integer.BYTES;
+			for (int j = 0; j < bytes.length; ++j)
+				bytes[j] = records.get(offset++);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private List<String> readStrings()
+		{
+			final int size = records.getInt(offset);
+			offset += Integer.BYTES;
+			final List<String> strings = new ArrayList<>(size);
+			for (int j = 0; j < size; ++j)
+				strings.add(readString());
+			return strings;
+		}
+
+		Info toInfo()
+		{
+			return new Info(id, glosses, lemmas);
+		}
+	}
+
+	/**
+	 * Exports the meanings of a vocabulary from a dictionary into a snapshot file.
+	 *
+	 * @param dictionary source dictionary
+	 * @param vocabulary pairs of forms and POS tags to query. If the POS tag is null, meanings are queried for the
+	 *                   form alone
+	 * @param language   language of the snapshot
+	 * @param output     snapshot file to be created
+	 */
+	public static void create(MeaningDictionary dictionary, List<Pair<String, String>> vocabulary, ULocale language,
+	                          Path output) throws IOException
+	{
+		log.info("Creating dictionary snapshot for " + vocabulary.size() + " forms");
+		Stopwatch timer = Stopwatch.createStarted();
+		AtomicLong counter = new AtomicLong(0);
+
+		// Query meanings of each form
+		final List<Pair<String, String>> distinct_vocabulary = vocabulary.stream().distinct().collect(toList());
+		final Map<String, List<String>> form_meanings = distinct_vocabulary.parallelStream()
+				.peek(f ->
+				{
+					long i = counter.incrementAndGet();
+					if (i % LOGGING_STEP_SIZE == 0) log.info(i + " forms queried");
+				})
+				.collect(toMap(f -> f.getRight() == null ? f.getLeft() : getKey(f.getLeft(), f.getRight()),
+						f -> f.getRight() == null ? dictionary.getMeanings(f.getLeft(), language) :
+								dictionary.getMeanings(f.getLeft(), f.getRight(), language)));
+
+		// Query info of each meaning
+		final List<String> meaning_list = form_meanings.values().stream()
+				.flatMap(List::stream)
+				.distinct()
+				.sorted()
+				.collect(toList());
+		log.info("Querying " + meaning_list.size() + " meanings");
+		final List<byte[]> records = meaning_list.parallelStream()
+				.map(id -> encodeRecord(dictionary, id, language))
+				.collect(toList());
+		final Map<String, Integer> meaning_positions = IntStream.range(0, meaning_list.size()).boxed()
+				.collect(toMap(meaning_list::get, i -> i));
+		final List<String> form_list = form_meanings.keySet().stream().sorted().collect(toList());
+
+		final long[] offsets = new long[4];
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output.toFile()), 1 << 20)))
+		{
+			out.write(new byte[header_size]); // placeholder, header is written at the end
+			long position = header_size;
+
+			offsets[0] = position;
+			position += MappedStringIndex.write(out, meaning_list);
+
+			offsets[1] = position;
+			long record_offset = 0;
+			out.writeInt(0);
+			for (byte[] record : records)
+			{
+				record_offset += record.length;
+				if (record_offset > Integer.MAX_VALUE)
+					throw new IOException("Snapshot too large, reduce vocabulary");
+				out.writeInt((int) record_offset);
+			}
+			for (byte[] record : records)
+				out.write(record);
+			position += (records.size() + 1L) * Integer.BYTES + record_offset;
+
+			offsets[2] = position;
+			position += MappedStringIndex.write(out, form_list);
+
+			offsets[3] = position;
+			int num_meanings = 0;
+			out.writeInt(num_meanings);
+			for (String form : form_list)
+			{
+				num_meanings += form_meanings.get(form).size();
+				out.writeInt(num_meanings);
+			}
+			for (String form : form_list)
+				for (String meaning : form_meanings.get(form))
+					out.writeInt(meaning_positions.get(meaning));
+		}
+
+		final byte[] language_bytes = language.toLanguageTag().getBytes(StandardCharsets.UTF_8);
+		if (language_bytes.length > max_language_bytes)
+			throw new IOException("Invalid language " + language);
+		try (RandomAccessFile out = new RandomAccessFile(output.toFile(), "rw"))
+		{
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(meaning_list.size());
+			out.writeInt(form_list.size());
+			for (long offset : offsets)
+				out.writeLong(offset);
+			out.writeInt(language_bytes.length);
+			out.write(language_bytes);
+		}
+
+		log.info("Snapshot with " + meaning_list.size() + " meanings and " + form_list.size() + " forms created in " +
+				timer.stop());
+	}
+
+	private static byte[] encodeRecord(MeaningDictionary dictionary, String id, ULocale language)
+	{
+		try
+		{
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(dictionary.isNE(id).map(ne -> ne ? 1 : 0).orElse((int) NE_unknown));
+			writeString(out, dictionary.getLabel(id, language).orElse(""));
+			writeStrings(out, dictionary instanceof DBPediaDictionary ?
+					((DBPediaDictionary) dictionary).getdbPediaURIs(id) : Collections.emptyList());
+			writeStrings(out, dictionary.getGlosses(id, language));
+			writeStrings(out, dictionary.getLemmas(id, language));
+			out.flush();
+			return bytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException
+	{
+		out.writeInt(strings.size());
+		for (String s : strings)
+			writeString(out, s);
+	}
+}
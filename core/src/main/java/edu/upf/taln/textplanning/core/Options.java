@@ -1,5 +1,6 @@
 package edu.upf.taln.textplanning.core;
 
+import edu.upf.taln.textplanning.core.extraction.SoftMaxPolicy;
 import edu.upf.taln.textplanning.core.utils.DebugUtils;
 
 import java.math.RoundingMode;
@@ -18,6 +19,9 @@ public class Options
 	public double damping_variables = 0.2; // controls bias towards meanings rank when ranking variables
 	public int num_subgraphs = 1000; // Number of subgraphs to extract
 	public double extraction_lambda = 1.0; // Controls balance between weight of nodes and cost of edges during subgraph extraction
+	public long extraction_seed = 0L; // Seed for random choices during subgraph extraction, same seed gives same subgraphs
+	public double extraction_temperature = SoftMaxPolicy.default_temperature; // Softmax temperature for random choices during subgraph extraction, lower is greedier
+	public int extraction_threads = Runtime.getRuntime().availableProcessors(); // Number of threads extracting subgraphs
 	public double tree_edit_lambda = 0.1; // Controls impact of roles when calculating similarity between semantic trees
 
 	@Override
@@ -37,6 +41,9 @@ public class Options
 				"\n\tdamping_variables = " + f.format(damping_variables) +
 				"\n\tnum_subgraphs = " + num_subgraphs +
 				"\n\textraction_lambda = " + f.format(extraction_lambda) +
+				"\n\textraction_seed = " + extraction_seed +
+				"\n\textraction_temperature = " + extraction_temperature +
+				"\n\textraction_threads = " + extraction_threads +
 				"\n\tredundancy lambda = " + f.format(tree_edit_lambda);
 	}
 
@@ -7,7 +7,9 @@ import edu.upf.taln.textplanning.core.io.GraphSemantics;
 import edu.upf.taln.textplanning.core.ranking.GraphRanking;
 import edu.upf.taln.textplanning.core.redundancy.RedundancyRemover;
 import edu.upf.taln.textplanning.core.similarity.SemanticTreeSimilarity;
+import edu.upf.taln.textplanning.core.similarity.TreeSimilarityMatrix;
 import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import edu.upf.taln.textplanning.core.structures.SemanticGraph;
 import edu.upf.taln.textplanning.core.structures.SemanticSubgraph;
 import org.apache.logging.log4j.LogManager;
@@ -16,6 +18,7 @@ import org.apache.logging.log4j.Logger;
 import java.util.Collection;
 import java.util.List;
 import java.util.OptionalDouble;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
@@ -48,11 +51,14 @@ public final class TextPlanner
 			// 2- Extract subgraphs from graph
 			Collection<SemanticSubgraph> subgraphs = extractSubgraphs(graph, semantics, num_graphs, o);
 
-			// 3- Remove redundant subgraphs
-			subgraphs = removeRedundantSubgraphs(subgraphs, num_graphs, similarity, o);
+			// 3- Calculate similarity between subgraphs, shared by the next two steps
+			final TreeSimilarityMatrix similarities = calculateSimilarities(subgraphs, similarity, o);
 
-			// 4- Sort the trees into a discourse-optimized list
-			final List<SemanticSubgraph> text_plan = sortSubgraphs(subgraphs, similarity, o);
+			// 4- Remove redundant subgraphs
+			subgraphs = removeRedundantSubgraphs(similarities, num_graphs);
+
+			// 5- Sort the trees into a discourse-optimized list
+			final List<SemanticSubgraph> text_plan = sortSubgraphs(subgraphs, similarities);
 
 			log.info("Planning took " + timer.stop());
 			return text_plan;
@@ -68,7 +74,7 @@ public final class TextPlanner
 	 * Ranks set of candidate meanings associated with a collection of semantic graphs, and stores the resulting ranks as
 	 * candidate weights.
 	 */
-	public static void rankMeanings(Collection<Candidate> candidates, Predicate<Candidate> candidates_filter,
+	public static void rankMeanings(CandidateTable candidates, Predicate<Candidate> candidates_filter,
 	                                BiPredicate<String, String> meanings_filter, Function<String, Double> weighting,
 	                                BiFunction<String, String, OptionalDouble> similarity, Options o)
 	{
@@ -102,14 +108,40 @@ public final class TextPlanner
 		Stopwatch timer = Stopwatch.createStarted();
 
 		Explorer e = new RequirementsExplorer(semantics, true, Explorer.ExpansionPolicy.Non_core_only);
-		Policy p = new SoftMaxPolicy();
-		SubgraphExtraction extractor = new SubgraphExtraction(e, p, Math.min(num_graphs, o.extraction_lambda));
-		Collection<SemanticSubgraph> subgraphs = extractor.multipleExtraction(graph, o.num_subgraphs);
+		Policy p = new SoftMaxPolicy(o.extraction_temperature);
+		ForkJoinPool pool = new ForkJoinPool(o.extraction_threads);
+		Collection<SemanticSubgraph> subgraphs;
+		try
+		{
+			SubgraphExtraction extractor = new SubgraphExtraction(e, p, Math.min(num_graphs, o.extraction_lambda),
+					pool, o.extraction_seed);
+			subgraphs = extractor.multipleExtraction(graph, o.num_subgraphs);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
 		log.info("Extraction done in " + timer.stop());
 
 		return subgraphs;
 	}
 
+	/**
+	 * 	Calculate similarity between pairs of subgraphs
+	 */
+	public static TreeSimilarityMatrix calculateSimilarities(Collection<SemanticSubgraph> subgraphs,
+	                                                         BiFunction<String, String, OptionalDouble> similarity,
+	                                                         Options o)
+	{
+		log.info("*Calculating subgraph similarities*");
+		Stopwatch timer = Stopwatch.createStarted();
+		SemanticTreeSimilarity tsim = new SemanticTreeSimilarity(similarity, o.tree_edit_lambda);
+		TreeSimilarityMatrix similarities = new TreeSimilarityMatrix(subgraphs, tsim);
+		log.info("Similarities calculated in " + timer.stop());
+
+		return similarities;
+	}
+
 	/**
 	 * 	Remove redundant subgraphs
 	 */
@@ -127,6 +159,19 @@ public final class TextPlanner
 		return out_subgraphs;
 	}
 
+	/**
+	 * 	Remove redundant subgraphs, using precalculated similarities
+	 */
+	public static Collection<SemanticSubgraph> removeRedundantSubgraphs(TreeSimilarityMatrix similarities, int num_graphs)
+	{
+		log.info("*Removing redundant subgraphs*");
+		Stopwatch timer = Stopwatch.createStarted();
+		Collection<SemanticSubgraph> out_subgraphs = RedundancyRemover.filter(similarities, num_graphs);
+		log.info("Redundancy removal done in " + timer.stop());
+
+		return out_subgraphs;
+	}
+
 	/**
 	 * 	Sort subgraphs
 	 */
@@ -143,4 +188,18 @@ public final class TextPlanner
 
 		return text_plan;
 	}
+
+	/**
+	 * 	Sort subgraphs, using precalculated similarities
+	 */
+	public static List<SemanticSubgraph> sortSubgraphs(Collection<SemanticSubgraph> subgraphs,
+	                                                   TreeSimilarityMatrix similarities)
+	{
+		log.info("*Sorting subgraphs*");
+		Stopwatch timer = Stopwatch.createStarted();
+		List<SemanticSubgraph> text_plan = DiscoursePlanner.structureSubgraphs(subgraphs, similarities);
+		log.info("Sorting done in " + timer.stop());
+
+		return text_plan;
+	}
 }
@@ -1,7 +1,7 @@
 package edu.upf.taln.textplanning.core.discourse;
 
-import com.google.common.base.Stopwatch;
 import edu.upf.taln.textplanning.core.similarity.SemanticTreeSimilarity;
+import edu.upf.taln.textplanning.core.similarity.TreeSimilarityMatrix;
 import edu.upf.taln.textplanning.core.structures.SemanticSubgraph;
 import edu.upf.taln.textplanning.core.structures.SemanticTree;
 import edu.upf.taln.textplanning.core.utils.DebugUtils;
@@ -19,7 +19,7 @@ import java.util.stream.IntStream;
  */
 public class DiscoursePlanner
 {
-	private class DiscourseGraph extends SimpleWeightedGraph<Integer, DefaultWeightedEdge>
+	private static class DiscourseGraph extends SimpleWeightedGraph<Integer, DefaultWeightedEdge>
 	{
 		DiscourseGraph() { super(DefaultWeightedEdge.class); }
 	}
@@ -39,12 +39,23 @@ public class DiscoursePlanner
 	 */
 	public List<SemanticSubgraph> structureSubgraphs(Collection<SemanticSubgraph> graphs)
 	{
-		Stopwatch timer = Stopwatch.createStarted();
+		return structureSubgraphs(graphs, new TreeSimilarityMatrix(graphs, sim));
+	}
 
-		// Convert graphs to lists
-		SemanticTree[] trees = graphs.stream()
-				.map(SemanticTree::new)
-				.toArray(t -> new SemanticTree[graphs.size()]);
+	/**
+	 * @param similarities similarities between pairs of subgraphs, including at least those in 'graphs'
+	 */
+	public static List<SemanticSubgraph> structureSubgraphs(Collection<SemanticSubgraph> graphs, TreeSimilarityMatrix similarities)
+	{
+		// Look up trees and their positions in the similarity matrix
+		int[] positions = graphs.stream()
+				.mapToInt(similarities::indexOf)
+				.toArray();
+		if (Arrays.stream(positions).anyMatch(i -> i < 0))
+			throw new IllegalArgumentException("Similarity matrix does not contain all subgraphs");
+		SemanticTree[] trees = Arrays.stream(positions)
+				.mapToObj(similarities::getTree)
+				.toArray(SemanticTree[]::new);
 
 		// Weight graphs by averaging their node weights
 		double[] rank = Arrays.stream(trees)
@@ -67,7 +78,7 @@ public class DiscoursePlanner
 					if (g.containsEdge(i, j))
 						return;
 					DefaultWeightedEdge e = g.addEdge(i, j);
-					double s = sim.getSimilarity(trees[i], trees[j]);
+					double s = similarities.getSimilarity(positions[i], positions[j]);
 					g.setEdgeWeight(e, s);
 				}));
 
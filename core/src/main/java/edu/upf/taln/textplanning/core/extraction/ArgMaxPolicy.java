@@ -1,17 +1,29 @@
 package edu.upf.taln.textplanning.core.extraction;
 
-import java.util.Comparator;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
 
 public class ArgMaxPolicy implements Policy
 {
 	@Override
-	public int select(double[] weights)
+	public int select(double[] weights, SplittableRandom random)
 	{
-		return IntStream.range(0, weights.length)
-				.boxed()
-				.max(Comparator.comparing(i -> weights[i]))
-				.orElse(-1);
+		return argMax(weights);
+	}
+
+	/**
+	 * @return position of the first largest weight ignoring NaN values, 0 if all are NaN, -1 only if weights is empty
+	 */
+	static int argMax(double[] weights)
+	{
+		if (weights.length == 0)
+			return -1;
 
+		int max = 0;
+		for (int i = 1; i < weights.length; ++i)
+		{
+			if (!Double.isNaN(weights[i]) && (weights[i] > weights[max] || Double.isNaN(weights[max])))
+				max = i;
+		}
+		return max;
 	}
 }
@@ -0,0 +1,106 @@
+package edu.upf.taln.textplanning.core.extraction;
+
+import edu.upf.taln.textplanning.core.extraction.Explorer.State;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the exploration of a graph by an explorer, so that it is shared by all extractions from the graph.
+ * Start states and their weights are calculated once. Neighbours allowed by the expansion policy and vertices required
+ * by each neighbour are calculated the first time a vertex is expanded from a state with a given source, and reused
+ * afterwards.
+ *
+ * Reusing required vertices relies on states produced by explorers being closed under the requirements relation:
+ * the vertices required by a neighbour and not in a state are those of its closure minus the state.
+ *
+ * Thread-safe.
+ */
+public class ExplorationFrontier
+{
+	private final Explorer explorer;
+	private final ExplorationGraph g;
+	private final List<State> start_states;
+	private final double[] start_weights;
+	private final Map<Long, int[]> allowed = new ConcurrentHashMap<>(); // (source, vertex) -> positions of neighbours
+	private final Map<Long, BitSet> required = new ConcurrentHashMap<>(); // (source, vertex) -> required vertices
+
+	public ExplorationFrontier(Explorer explorer, ExplorationGraph g)
+	{
+		this.explorer = explorer;
+		this.g = g;
+		start_states = Collections.unmodifiableList(explorer.getStartStates(g));
+		start_weights = start_states.stream()
+				.mapToDouble(s -> g.getWeight(s.vertices))
+				.toArray();
+	}
+
+	public ExplorationGraph getGraph() { return g; }
+	public List<State> getStartStates() { return start_states; }
+
+	/**
+	 * @return sum of weights of the vertices of each start state
+	 */
+	public double[] getStartWeights() { return start_weights; }
+
+	/**
+	 * Same states as {@link Explorer#getNextStates(State, ExplorationGraph)}, for states produced by the explorer
+	 */
+	public List<State> getNextStates(State s)
+	{
+		final Set<BitSet> expansions = new HashSet<>();
+		final BitSet tried = new BitSet(g.getNumVertices());
+		final List<State> states = new ArrayList<>();
+		for (int v = s.vertices.nextSetBit(0); v >= 0; v = s.vertices.nextSetBit(v + 1))
+		{
+			final int[] neighbours = g.getNeighbours(v);
+			for (int i : getAllowed(v, s.source))
+			{
+				final int n = neighbours[i];
+				if (s.vertices.get(n) || tried.get(n))
+					continue;
+				tried.set(n);
+
+				// each candidate extends 'vertices'
+				final BitSet expansion = (BitSet) getRequired(n, s.source).clone();
+				expansion.andNot(s.vertices);
+				if (expansions.add(expansion))
+					states.add(new State(s, expansion, g));
+			}
+		}
+
+		return states;
+	}
+
+	private int[] getAllowed(int v, int source)
+	{
+		return allowed.computeIfAbsent(getKey(v, source), k ->
+		{
+			final TIntArrayList positions = new TIntArrayList();
+			for (int i = 0; i < g.getNeighbours(v).length; ++i)
+			{
+				if (explorer.isAllowed(v, i, source, g))
+					positions.add(i);
+			}
+			return positions.toArray();
+		});
+	}
+
+	private BitSet getRequired(int v, int source)
+	{
+		return required.computeIfAbsent(getKey(v, source), k ->
+		{
+			final BitSet root = new BitSet(g.getNumVertices());
+			root.set(v);
+			return explorer.getRequiredVertices(v, new State(v, source, root, g), g);
+		});
+	}
+
+	private static long getKey(int v, int source)
+	{
+		return ((long) source << 32) | v;
+	}
+
+	public int getNumMemoized() { return required.size(); }
+}
@@ -0,0 +1,134 @@
+package edu.upf.taln.textplanning.core.extraction;
+
+import edu.upf.taln.textplanning.core.structures.Mention;
+import edu.upf.taln.textplanning.core.structures.Role;
+import edu.upf.taln.textplanning.core.structures.SemanticGraph;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.*;
+
+/**
+ * View of a semantic graph where vertices and sources are dense ints, so that sets of vertices can be kept as bitsets.
+ * Vertices are numbered in their natural order, so that explorations visit them in the same order in every run.
+ * Each vertex gets a random 64-bit key, and sets of vertices are identified by the xor of the keys of their vertices
+ * (Zobrist hashing), which can be updated incrementally as vertices are added.
+ */
+public class ExplorationGraph
+{
+	private final SemanticGraph graph;
+	private final String[] vertices; // [vertex] -> label in graph
+	private final TObjectIntHashMap<String> ids;
+	private final double[] weights; // [vertex] -> weight
+	private final long[] keys; // [vertex] -> random key
+	private final int[][] sources; // [vertex] -> sorted source ids
+	private final int[][] neighbours; // [vertex] -> neighbour vertices
+	private final Role[][] edges; // [vertex] -> edges to/from neighbours
+	private final boolean[][] outgoing; // [vertex] -> true if edge goes from vertex to neighbour
+	private final BitSet finite_verbs;
+	private final static long seed = 0x5EEDL;
+
+	public ExplorationGraph(SemanticGraph graph)
+	{
+		this.graph = graph;
+		vertices = graph.vertexSet().stream()
+				.sorted()
+				.toArray(String[]::new);
+		final int num_vertices = vertices.length;
+		ids = new TObjectIntHashMap<>(num_vertices, 0.5f, -1);
+		for (int v = 0; v < num_vertices; ++v)
+			ids.put(vertices[v], v);
+
+		weights = new double[num_vertices];
+		keys = new long[num_vertices];
+		sources = new int[num_vertices][];
+		neighbours = new int[num_vertices][];
+		edges = new Role[num_vertices][];
+		outgoing = new boolean[num_vertices][];
+		finite_verbs = new BitSet(num_vertices);
+
+		final SplittableRandom random = new SplittableRandom(seed);
+		final TObjectIntHashMap<String> source_ids = new TObjectIntHashMap<>(16, 0.5f, -1);
+		for (int i = 0; i < num_vertices; ++i)
+		{
+			final int v = i;
+			final String vertex = vertices[v];
+			weights[v] = graph.getWeight(vertex);
+			keys[v] = random.nextLong();
+
+			sources[v] = graph.getSources(vertex).stream()
+					.mapToInt(s ->
+					{
+						source_ids.putIfAbsent(s, source_ids.size());
+						return source_ids.get(s);
+					})
+					.distinct()
+					.sorted()
+					.toArray();
+
+			// Sort edges so that neighbours are visited in the same order in every run. This cannot rely on hashing edges:
+			// Role equality and hash codes depend on a global counter, so they change with the order graphs are created.
+			// Ties between parallel edges with the same label keep the graph's insertion order.
+			final List<Role> vertex_edges = new ArrayList<>(graph.edgesOf(vertex));
+			vertex_edges.sort(Comparator.comparingInt((Role e) -> getNeighbour(v, e))
+					.thenComparing(Role::getLabel));
+			neighbours[v] = vertex_edges.stream()
+					.mapToInt(e -> getNeighbour(v, e))
+					.toArray();
+			edges[v] = vertex_edges.toArray(new Role[0]);
+			outgoing[v] = new boolean[edges[v].length];
+			for (int k = 0; k < edges[v].length; ++k)
+				outgoing[v][k] = graph.getEdgeSource(edges[v][k]).equals(vertex);
+
+			if (graph.getMentions(vertex).stream().anyMatch(Mention::isFiniteVerb))
+				finite_verbs.set(v);
+		}
+	}
+
+	private int getNeighbour(int v, Role e)
+	{
+		final String source = graph.getEdgeSource(e);
+		return ids.get(source.equals(vertices[v]) ? graph.getEdgeTarget(e) : source);
+	}
+
+	public SemanticGraph getGraph() { return graph; }
+	public int getNumVertices() { return vertices.length; }
+	public String getVertex(int v) { return vertices[v]; }
+
+	/**
+	 * @return id of vertex, -1 if not in graph
+	 */
+	public int getId(String vertex) { return ids.get(vertex); }
+
+	public double getWeight(int v) { return weights[v]; }
+	public long getKey(int v) { return keys[v]; }
+	public int[] getSources(int v) { return sources[v]; }
+	public boolean hasSource(int v, int source) { return Arrays.binarySearch(sources[v], source) >= 0; }
+	public int[] getNeighbours(int v) { return neighbours[v]; }
+	public Role[] getEdges(int v) { return edges[v]; }
+	public boolean isOutgoing(int v, int i) { return outgoing[v][i]; }
+	public boolean isFiniteVerb(int v) { return finite_verbs.get(v); }
+
+	public double getWeight(BitSet vertices)
+	{
+		double sum = 0.0;
+		for (int v = vertices.nextSetBit(0); v >= 0; v = vertices.nextSetBit(v + 1))
+			sum += weights[v];
+		return sum;
+	}
+
+	public long getKey(BitSet vertices)
+	{
+		long key = 0L;
+		for (int v = vertices.nextSetBit(0); v >= 0; v = vertices.nextSetBit(v + 1))
+			key ^= keys[v];
+		return key;
+	}
+
+	public Set<String> getVertices(BitSet vertices)
+	{
+		final Set<String> labels = new HashSet<>();
+		for (int v = vertices.nextSetBit(0); v >= 0; v = vertices.nextSetBit(v + 1))
+			labels.add(this.vertices[v]);
+		return labels;
+	}
+}
@@ -1,38 +1,63 @@
 package edu.upf.taln.textplanning.core.extraction;
 
-import com.google.common.collect.Sets;
-import edu.upf.taln.textplanning.core.structures.SemanticGraph;
 import edu.upf.taln.textplanning.core.io.GraphSemantics;
-import edu.upf.taln.textplanning.core.structures.Mention;
-import edu.upf.taln.textplanning.core.structures.Role;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
 
+/**
+ * Explores sets of vertices of a graph by expanding them with neighbouring vertices. Vertices are the dense ints of an
+ * {@link ExplorationGraph} and sets of vertices are bitsets, so expansions are word-wise unions.
+ */
 public abstract class Explorer
 {
 	public static class State
 	{
-		public final String root; // root vertex
-		public final String source; // source/sentence of the root (vertices can have multiple sources)
-		public final Set<String> vertices = new HashSet<>(); // selected vertices, including the root
-		public State(String root, String source, Set<String> vertices)
+		public final int root; // root vertex
+		public final int source; // source/sentence of the root (vertices can have multiple sources)
+		public final BitSet vertices; // selected vertices, including the root
+		public final BitSet added; // vertices added by the expansion that led to this state, all if a start state
+		public final int size; // number of selected vertices
+		public final long key; // xor of keys of selected vertices
+
+		public State(int root, int source, BitSet vertices, ExplorationGraph g)
 		{
 			this.root = root;
 			this.source = source;
-			this.vertices.addAll(vertices);
-			this.vertices.add(this.root);
+			this.vertices = (BitSet) vertices.clone();
+			this.vertices.set(root);
+			this.added = this.vertices;
+			this.size = this.vertices.cardinality();
+			this.key = g.getKey(this.vertices);
 		}
-	}
 
-	protected static class Neighbour
-	{
-		public final String vertex;
-		public final Role edge;
-		public Neighbour(String vertex, Role edge) { this.vertex = vertex; this.edge = edge; }
+		// Expands a state with a set of vertices not in it
+		public State(State s, BitSet added, ExplorationGraph g)
+		{
+			this.root = s.root;
+			this.source = s.source;
+			this.vertices = (BitSet) s.vertices.clone();
+			this.vertices.or(added);
+			this.added = added;
+			this.size = s.size + added.cardinality();
+			this.key = s.key ^ g.getKey(added);
+		}
+
+		// States are identified by their root, source and vertices
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			State state = (State) o;
+			return key == state.key && root == state.root && source == state.source && vertices.equals(state.vertices);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Long.hashCode(key);
+		}
 	}
 
 	public enum ExpansionPolicy
@@ -49,70 +74,79 @@ public abstract class Explorer
 		this.policy = policy;
 	}
 
-	public List<State> getStartStates(SemanticGraph g)
+	public List<State> getStartStates(ExplorationGraph g)
 	{
-		Set<String> start_vertices = start_from_verbs ? getFiniteVerbalVertices(g) : g.vertexSet();
-
-		return start_vertices.stream()
-				.flatMap(v -> g.getSources(v).stream()
-						.map(source -> new State(v, source, Collections.singleton(v))) // Create initial state
-						.map(state -> new State(state.root, state.source, getRequiredVertices(v, state, g)))
-						)
-				.distinct()
-				.collect(Collectors.toList());
+		final List<State> states = new ArrayList<>();
+		for (int v = 0; v < g.getNumVertices(); ++v)
+		{
+			if (start_from_verbs && !g.isFiniteVerb(v))
+				continue;
+
+			final BitSet root = new BitSet(g.getNumVertices());
+			root.set(v);
+			for (int source : g.getSources(v))
+			{
+				final State state = new State(v, source, root, g); // Create initial state
+				states.add(new State(v, source, getRequiredVertices(v, state, g), g));
+			}
+		}
+
+		return states;
 	}
 
-	public List<State> getNextStates(State s, SemanticGraph g)
+	public List<State> getNextStates(State s, ExplorationGraph g)
 	{
-		return s.vertices.stream()
-				.map(v -> getNeighboursAndRoles(v, g))
-				.flatMap(Set::stream)
-				.filter(n -> isAllowed(n, s, g))
-				.map(n -> getRequiredVertices(n.vertex, s, g))
-				.map(r -> Sets.union(r, s.vertices)) // each candidate extends 'vertices'
-				.distinct()
-				.map(r -> new State(s.root, s.source, r))
-				.collect(Collectors.toList());
+		final Set<BitSet> expansions = new HashSet<>();
+		final List<State> states = new ArrayList<>();
+		for (int v = s.vertices.nextSetBit(0); v >= 0; v = s.vertices.nextSetBit(v + 1))
+		{
+			final int[] neighbours = g.getNeighbours(v);
+			for (int i = 0; i < neighbours.length; ++i)
+			{
+				if (!isAllowed(v, i, s, g))
+					continue;
+
+				// each candidate extends 'vertices'
+				final BitSet expansion = getRequiredVertices(neighbours[i], s, g);
+				expansion.andNot(s.vertices);
+				if (expansions.add(expansion))
+					states.add(new State(s, expansion, g));
+			}
+		}
+
+		return states;
 	}
 
-	protected Set<Neighbour> getNeighboursAndRoles(String v, SemanticGraph g)
+	/**
+	 * @param i position of neighbour in list of neighbours of v
+	 */
+	protected boolean isAllowed(int v, int i, State s, ExplorationGraph g)
 	{
-		return g.edgesOf(v).stream()
-				.map(e ->
-				{
-					String source_v = g.getEdgeSource(e);
-					String target_v = g.getEdgeTarget(e);
-					return source_v.equals(v)   ? new Neighbour(target_v, e)
-												: new Neighbour(source_v, e);
-				})
-				.collect(Collectors.toSet());
+		return !s.vertices.get(g.getNeighbours(v)[i]) && isAllowed(v, i, s.source, g);
 	}
 
-	protected boolean isAllowed(Neighbour n, State s, SemanticGraph g)
+	/**
+	 * @return true if the expansion policy allows adding the i-th neighbour of v to a state with the given source
+	 */
+	protected boolean isAllowed(int v, int i, int source, ExplorationGraph g)
 	{
-		boolean allow = !s.vertices.contains(n.vertex);
+		final int n = g.getNeighbours(v)[i];
 		switch (policy)
 		{
 			case Same_source:
-				return allow && g.getSources(n.vertex).contains(s.source);
+				return g.hasSource(n, source);
 			case Non_core_only:
-				return allow && (g.getSources(n.vertex).contains(s.source) ||
+				return g.hasSource(n, source) ||
 						// Allow neighbours pointed by non-core relations
-						(!semantics.isCore(n.edge.getLabel()) && g.getEdgeTarget(n.edge).equals(n.vertex)));
+						(!semantics.isCore(g.getEdges(v)[i].getLabel()) && g.isOutgoing(v, i));
 			case All:
 			default:
-				return allow;
+				return true;
 		}
 	}
 
-	protected abstract Set<String> getRequiredVertices(String v, State s, SemanticGraph g);
-
-	// returns list of finite verbal vertices sorted by weight
-	private static Set<String> getFiniteVerbalVertices(SemanticGraph g)
-	{
-		return g.vertexSet().stream()
-				.filter(v -> g.getMentions(v).stream()
-						.anyMatch(Mention::isFiniteVerb))
-				.collect(Collectors.toSet());
-	}
+	/**
+	 * @return new bitset with v and the vertices it requires
+	 */
+	protected abstract BitSet getRequiredVertices(int v, State s, ExplorationGraph g);
 }
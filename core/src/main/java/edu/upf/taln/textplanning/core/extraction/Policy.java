@@ -1,7 +1,11 @@
 package edu.upf.taln.textplanning.core.extraction;
 
+import java.util.SplittableRandom;
+
 public interface Policy
 {
-
-	int select(double[] weights);
+	/**
+	 * @param random generator used for random choices, owned by the calling thread
+	 */
+	int select(double[] weights, SplittableRandom random);
 }
@@ -1,12 +1,10 @@
 package edu.upf.taln.textplanning.core.extraction;
 
-import edu.upf.taln.textplanning.core.structures.SemanticGraph;
 import edu.upf.taln.textplanning.core.io.GraphSemantics;
+import edu.upf.taln.textplanning.core.structures.Role;
+import gnu.trove.list.array.TIntArrayList;
 
-import java.util.HashSet;
-import java.util.Set;
-
-import static java.util.stream.Collectors.toSet;
+import java.util.BitSet;
 
 public class RequirementsExplorer extends Explorer
 {
@@ -16,25 +14,37 @@ public class RequirementsExplorer extends Explorer
 	}
 
 	@Override
-	protected Set<String> getRequiredVertices(String v, State s, SemanticGraph g)
+	protected BitSet getRequiredVertices(int v, State s, ExplorationGraph g)
 	{
-		Set<String> S = new HashSet<>(); // set of semantically required nodes
-		S.add(v); // include v!
-		Set<String> nodes = new HashSet<>();
-		nodes.add(v);
-		do
+		final BitSet S = new BitSet(g.getNumVertices()); // set of semantically required nodes
+		S.set(v); // include v!
+		final TIntArrayList queue = new TIntArrayList();
+		queue.add(v);
+		for (int k = 0; k < queue.size(); ++k)
 		{
-			nodes = nodes.stream()
-					.flatMap(vi -> getNeighboursAndRoles(vi, g).stream()
-						.filter(n ->  !S.contains(n.vertex))
-						.filter(n -> semantics.isRequired(vi, g.getEdgeSource(n.edge), g.getEdgeTarget(n.edge), n.edge.getLabel(), g))
-						.filter(n -> isAllowed(n, s, g))
-						.map(n -> n.vertex))
-					.peek(S::add)
-					.collect(toSet());
+			final int vi = queue.getQuick(k);
+			final int[] neighbours = g.getNeighbours(vi);
+			for (int i = 0; i < neighbours.length; ++i)
+			{
+				final int n = neighbours[i];
+				if (S.get(n) || !isRequired(vi, i, g) || !isAllowed(vi, i, s, g))
+					continue;
+				S.set(n);
+				queue.add(n);
+			}
 		}
-		while (!nodes.isEmpty());
 
 		return S;
 	}
+
+	// Whether the i-th neighbour of v is semantically required by v
+	private boolean isRequired(int v, int i, ExplorationGraph g)
+	{
+		final Role e = g.getEdges(v)[i];
+		final String vertex = g.getVertex(v);
+		final String neighbour = g.getVertex(g.getNeighbours(v)[i]);
+		final String source = g.isOutgoing(v, i) ? vertex : neighbour;
+		final String target = g.isOutgoing(v, i) ? neighbour : vertex;
+		return semantics.isRequired(vertex, source, target, e.getLabel(), g.getGraph());
+	}
 }
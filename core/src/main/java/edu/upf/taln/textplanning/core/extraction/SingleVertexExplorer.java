@@ -1,10 +1,8 @@
 package edu.upf.taln.textplanning.core.extraction;
 
-import edu.upf.taln.textplanning.core.structures.SemanticGraph;
 import edu.upf.taln.textplanning.core.io.GraphSemantics;
 
-import java.util.Collections;
-import java.util.Set;
+import java.util.BitSet;
 
 public class SingleVertexExplorer extends Explorer
 {
@@ -14,8 +12,10 @@ public class SingleVertexExplorer extends Explorer
 	}
 
 	@Override
-	protected Set<String> getRequiredVertices(String v, State s, SemanticGraph g)
+	protected BitSet getRequiredVertices(int v, State s, ExplorationGraph g)
 	{
-		return Collections.singleton(v);
+		final BitSet required = new BitSet(g.getNumVertices());
+		required.set(v);
+		return required;
 	}
 }
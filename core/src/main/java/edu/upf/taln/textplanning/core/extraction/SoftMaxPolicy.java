@@ -1,40 +1,65 @@
 package edu.upf.taln.textplanning.core.extraction;
 
-import java.util.Arrays;
+import java.util.SplittableRandom;
 
+/**
+ * Samples from the softmax distribution of weights divided by a temperature.
+ * The largest weight is subtracted before exponentiating (log-sum-exp), so that low temperatures do not overflow.
+ * NaN weights get no probability. Allocates nothing and draws a single number from the generator per selection.
+ */
 public class SoftMaxPolicy implements Policy
 {
-	private final static double temperature = 0.01;
+	private final double temperature;
+	public final static double default_temperature = 0.01; // set experimentally
+
+	public SoftMaxPolicy()
+	{
+		this(default_temperature);
+	}
 
 	/**
 	 * Softmax with low temperatures boosts probabilities of nodes with high weights and produces low probabilities
-	 * for nodes with low weights. Temperature set experimentally.
+	 * for nodes with low weights.
 	 */
-	public int select(double[] weights)
+	public SoftMaxPolicy(double temperature)
+	{
+		if (!(temperature > 0.0))
+			throw new IllegalArgumentException("Temperature must be positive");
+		this.temperature = temperature;
+	}
+
+	@Override
+	public int select(double[] weights, SplittableRandom random)
 	{
-		if (weights.length == 1)
-			return 0;
-
-		// Create distribution
-		double[] exps = Arrays.stream(weights)
-				.map(v -> v / temperature)
-				.map(Math::exp)
-				.toArray();
-		double sum_exps = Arrays.stream(exps).sum();
-		double[] softmax = Arrays.stream(exps)
-				.map(e -> e / sum_exps)
-				.toArray();
-
-		// Choose key
-		double p = Math.random();
-		double cumulativeProbability = 0.0;
-		for (int i=0; i < weights.length; ++i)
+		if (weights.length <= 1)
+			return weights.length - 1;
+
+		final int max = ArgMaxPolicy.argMax(weights);
+		final double max_weight = weights[max];
+		if (Double.isNaN(max_weight) || Double.isInfinite(max_weight))
+			return max; // no distribution, or all probability on the max
+
+		double sum = 0.0;
+		for (double w : weights)
+		{
+			if (!Double.isNaN(w))
+				sum += Math.exp((w - max_weight) / temperature);
+		}
+
+		// Choose key, the max is taken if rounding leaves p above the cumulative probability of all keys
+		final double p = random.nextDouble() * sum;
+		double cumulative = 0.0;
+		for (int i = 0; i < weights.length; ++i)
 		{
-			cumulativeProbability += softmax[i];
-			if (p <= cumulativeProbability)
+			if (Double.isNaN(weights[i]))
+				continue;
+			cumulative += Math.exp((weights[i] - max_weight) / temperature);
+			if (p < cumulative)
 				return i;
 		}
 
-		return -1; // only if w is empty
+		return max;
 	}
+
+	public double getTemperature() { return temperature; }
 }
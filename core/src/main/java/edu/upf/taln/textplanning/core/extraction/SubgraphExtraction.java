@@ -8,108 +8,200 @@ import edu.upf.taln.textplanning.core.utils.DebugUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jgrapht.alg.ConnectivityInspector;
-import org.jgrapht.graph.AsSubgraph;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 /**
  * Subgraph extraction strategy based on finding dense subgraphs in a semantic graph.
+ * Extractions are independent random walks run in parallel over a fork-join pool. Each walk draws from its own
+ * generator, split in order from a seeded one, and walks are merged in the same order, so that results depend on the
+ * seed only and not on the number of threads.
  */
 public class SubgraphExtraction
 {
 	private final Explorer explorer;
 	private final Policy policy;
 	private final double lambda;
+	private final ForkJoinPool pool;
+	private final long seed;
+	private final LongAdder total_extractions = new LongAdder();
+	private final LongAdder total_duplicates = new LongAdder();
 	private final static int max_num_extractions = 1000;
 	private final static Logger log = LogManager.getLogger();
 
 	public SubgraphExtraction(Explorer explorer, Policy policy, double lambda)
+	{
+		this(explorer, policy, lambda, ForkJoinPool.commonPool(), new SplittableRandom().nextLong());
+	}
+
+	public SubgraphExtraction(Explorer explorer, Policy policy, double lambda, ForkJoinPool pool, long seed)
 	{
 		this.explorer = explorer;
 		this.policy = policy;
 		this.lambda = lambda;
+		this.pool = pool;
+		this.seed = seed;
 	}
 
 	public List<SemanticSubgraph> multipleExtraction(SemanticGraph g, int num_subgraphs)
 	{
 		Stopwatch timer = Stopwatch.createStarted();
 		List<SemanticSubgraph> subgraphs = new ArrayList<>();
+		// Vertex sets of subgraphs in the list, indexed by their keys. A vertex set with the same key as a different
+		// one is not indexed, which may let through a duplicate of it but never discards a new subgraph.
+		final Map<Long, BitSet> extracted = new ConcurrentHashMap<>();
+
+		// Vertices as dense ints and exploration of the graph, shared by all extractions
+		final ExplorationGraph eg = new ExplorationGraph(g);
+		final ExplorationFrontier frontier = new ExplorationFrontier(explorer, eg);
 
 		// Work out average variable rank to be used as cost value
-		double avg_rank = g.getWeights().values().stream()
-				.collect(Collectors.averagingDouble(d -> d));
+		double avg_rank = IntStream.range(0, eg.getNumVertices())
+				.mapToDouble(eg::getWeight)
+				.average().orElse(0.0);
 
-		int num_extractions = 0;
+		// One generator per extraction, split in order so that extraction i always gets the same one
+		final SplittableRandom random = new SplittableRandom(seed);
+		final SplittableRandom[] generators = new SplittableRandom[max_num_extractions];
+		for (int i = 0; i < max_num_extractions; ++i)
+			generators[i] = random.split();
 
-		while (subgraphs.size() < num_subgraphs && num_extractions++ < max_num_extractions)
+		int num_extractions = 0;
+		int num_duplicates = 0;
+		int num_invalid = 0;
+		while (subgraphs.size() < num_subgraphs && num_extractions < max_num_extractions)
 		{
-			SemanticSubgraph s = extract(g, avg_rank);
-			if (isValid(s) && !isRedundant(s, subgraphs))
-				subgraphs.add(s);
+			// Run a batch of extractions in parallel. Workers skip subgraphs found in previous batches.
+			final int first = num_extractions;
+			final int batch_size = Math.min(max_num_extractions - first,
+					Math.max(pool.getParallelism(), num_subgraphs - subgraphs.size()));
+			final Extraction[] extractions = new Extraction[batch_size];
+			final SemanticSubgraph[] batch = new SemanticSubgraph[batch_size];
+			pool.submit(() -> IntStream.range(0, batch_size).parallel()
+					.forEach(i ->
+					{
+						// Duplicates are detected from the final state, before creating the subgraph
+						final Extraction e = extract(frontier, avg_rank, generators[first + i]);
+						extractions[i] = e;
+						if (e == null || isExtracted(extracted, e.state))
+							return;
+						SemanticSubgraph s = new SemanticSubgraph(g, eg.getVertex(e.state.root),
+								eg.getVertices(e.state.vertices), e.value);
+						if (isValid(s))
+							batch[i] = s;
+					})).join();
+
+			// Merge in order of extraction
+			for (int i = 0; i < batch_size && subgraphs.size() < num_subgraphs; ++i)
+			{
+				++num_extractions;
+				final Extraction e = extractions[i];
+				if (e != null && isExtracted(extracted, e.state))
+					++num_duplicates;
+				else if (batch[i] == null)
+					++num_invalid;
+				else
+				{
+					extracted.putIfAbsent(e.state.key, e.state.vertices);
+					subgraphs.add(batch[i]);
+				}
+			}
 		}
+		total_extractions.add(num_extractions);
+		total_duplicates.add(num_duplicates);
 
-		log.info(subgraphs.size() + " subgraphs extracted after " + num_extractions + " iterations ");
+		log.info(subgraphs.size() + " subgraphs extracted after " + num_extractions + " iterations, " +
+				num_duplicates + " duplicate and " + num_invalid + " invalid subgraphs discarded");
+		log.info(frontier.getStartStates().size() + " start states and " + frontier.getNumMemoized() +
+				" required vertex sets shared by all iterations");
 		log.info("Subgraph extraction took " + timer.stop());
 		log.debug(DebugUtils.printSubgraphs(subgraphs));
 
 		return subgraphs;
 	}
 
+	private static boolean isExtracted(Map<Long, BitSet> extracted, State s)
+	{
+		return s.vertices.equals(extracted.get(s.key));
+	}
+
+	/**
+	 * @return ratio of extractions discarded because they produced an already extracted subgraph, over all calls to
+	 * multipleExtraction
+	 */
+	public double getDuplicateRate()
+	{
+		final long extractions = total_extractions.sum();
+		return extractions == 0 ? 0.0 : total_duplicates.doubleValue() / extractions;
+	}
+
+	public long getNumExtractions() { return total_extractions.sum(); }
+	public long getNumDuplicates() { return total_duplicates.sum(); }
+
 	private boolean isValid(SemanticSubgraph s)
 	{
 		// ignore unconnected graphs
 		return s != null && !s.edgeSet().isEmpty() && new ConnectivityInspector<>(s).isGraphConnected();
 	}
 
-	private boolean isRedundant(SemanticSubgraph s, List<SemanticSubgraph> subgraphs)
+	// Final state of an extraction and value of the subgraph
+	private static class Extraction
 	{
-		return subgraphs.stream()
-				.map(AsSubgraph::vertexSet)
-				.anyMatch(V -> V.equals(s.vertexSet()));
+		final State state;
+		final double value;
+		Extraction(State state, double value) { this.state = state; this.value = value; }
 	}
 
-	private SemanticSubgraph extract(SemanticGraph g, double cost)
+	private Extraction extract(ExplorationFrontier frontier, double cost, SplittableRandom random)
 	{
-		final Set<String> V = g.vertexSet();
-		if (V.isEmpty())
+		final ExplorationGraph g = frontier.getGraph();
+		final int num_vertices = g.getNumVertices();
+		if (num_vertices == 0)
 			return null;
 
-		State start_state;
 		State current_state;
+		double current_weight; // sum of weights of vertices in current state
 
 		// Select intitial nodes
 		{
-			final List<State> candidates = explorer.getStartStates(g);
+			final List<State> candidates = frontier.getStartStates();
 			if (candidates.isEmpty())
 				return null;
 
-			final double[] candidate_weights = candidates.stream()
-					.mapToDouble(c -> calculateWeight(V, c.vertices, g.getWeights(), cost))
+			final double[] start_weights = frontier.getStartWeights();
+			final double[] candidate_weights = IntStream.range(0, start_weights.length)
+					.mapToDouble(i -> calculateWeight(num_vertices, candidates.get(i).size, start_weights[i], cost))
 					.toArray();
-			int i = policy.select(candidate_weights);
-			start_state = candidates.get(i);
-			current_state = new State(start_state.root, start_state.source, start_state.vertices);
+			int i = policy.select(candidate_weights, random);
+			current_state = candidates.get(i);
+			current_weight = start_weights[i];
 		}
 
 		// Declare q and q'
-		double q = calculateWeight(V, current_state.vertices, g.getWeights(), cost);
+		double q = calculateWeight(num_vertices, current_state.size, current_weight, cost);
 		double q_old = q;
 
 		do
 		{
 			// candidate sets extending (and therefore including) current_state
-			List<State> candidate_states = explorer.getNextStates(current_state, g);
+			List<State> candidate_states = frontier.getNextStates(current_state);
 			if (candidate_states.isEmpty())
 				break;
 
-			final double[] candidate_weights = candidate_states.stream()
-					.mapToDouble(c -> calculateWeight(V, c.vertices, g.getWeights(), cost))
-					.toArray();
-			int i = policy.select(candidate_weights);
+			// Score candidates by the weight of the vertices they add to current_state
+			final double[] deltas = new double[candidate_states.size()];
+			final double[] candidate_weights = new double[candidate_states.size()];
+			for (int j = 0; j < deltas.length; ++j)
+			{
+				final State c = candidate_states.get(j);
+				deltas[j] = g.getWeight(c.added);
+				candidate_weights[j] = calculateWeight(num_vertices, c.size, current_weight + deltas[j], cost);
+			}
+			int i = policy.select(candidate_weights, random);
 			State next_state = candidate_states.get(i);
 
 			// Update function values
@@ -118,26 +210,26 @@ public class SubgraphExtraction
 
 			// Update current_state if function improved by selecting candidate c
 			if (q > q_old)
+			{
 				current_state = next_state;
+				current_weight += deltas[i];
+			}
 		}
 		while (q > q_old);
 
-		// return induced subgraph
-		return new SemanticSubgraph(g, current_state.root, current_state.vertices, q_old);
+		return new Extraction(current_state, q_old);
 	}
 
 	/**
 	 * Calculates the cost of a subgraph as a combination of node weights and edge distances
+	 * @param num_vertices number of vertices in the graph
+	 * @param size number of vertices in the subgraph
+	 * @param WS sum of weights of vertices in the subgraph
 	 */
-	private double calculateWeight(Set<String> V, Set<String> S, Map<String, Double> W, double C)
+	private double calculateWeight(int num_vertices, int size, double WS, double C)
 	{
-		double WS = S.stream()
-				.mapToDouble(W::get)
-				.sum(); // weight of S
-		double CS = S.size() * C; // cost of the graph induced by S
-		double CV = V.size() * C; // cost of V, used to keep weighting function non-negative
+		double CS = size * C; // cost of the graph induced by S
+		double CV = num_vertices * C; // cost of V, used to keep weighting function non-negative
 		return lambda*WS - CS + CV;
 	}
-
-
 }
@@ -1,10 +1,11 @@
 package edu.upf.taln.textplanning.core.ranking;
 
-import Jama.Matrix;
 import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import edu.upf.taln.textplanning.core.structures.Meaning;
 import edu.upf.taln.textplanning.core.structures.SemanticGraph;
 import edu.upf.taln.textplanning.core.utils.DebugUtils;
+import gnu.trove.list.array.TIntArrayList;
 
 import java.util.*;
 import java.util.function.BiFunction;
@@ -34,44 +35,53 @@ import static java.util.stream.Collectors.*;
  */
 public class GraphRanking
 {
-	public static void rankMeanings(Collection<Candidate> candidates,
+	/**
+	 * Ranks the meanings of candidates accepted by the filter, and sets the weights of these candidates to the ranks of
+	 * their meanings.
+	 */
+	public static void rankMeanings(CandidateTable table,
 	                                Predicate<Candidate> candidates_filter,
 	                                BiPredicate<String, String> meanings_filter,
 	                                Function<String, Double> weighting,
 	                                BiFunction<String, String, OptionalDouble> similarity,
 	                                double meaning_similarity_threshold, double damping_factor_meanings)
 	{
-		final List<Candidate> filtered_candidates = candidates.stream()
-				.filter(candidates_filter)
-				.collect(toList());
-		final List<String> references = filtered_candidates.stream()
-				.map(Candidate::getMeaning)
-				.map(Meaning::getReference)
-				.distinct()
-				.collect(Collectors.toList());
-		final List<String> labels = filtered_candidates.stream() // for debugging purposes
-				.map(Candidate::getMeaning)
-				.map(Meaning::toString)
-				.distinct()
-				.collect(toList());
+		// Meanings of accepted candidates, in order of first appearance
+		final BitSet selected_candidates = new BitSet(table.size());
+		final int[] positions = new int[table.getNumMeanings()]; // [meaning id] -> position in matrix, -1 if not ranked
+		Arrays.fill(positions, -1);
+		final TIntArrayList meaning_ids = new TIntArrayList();
+		for (int c = 0; c < table.size(); ++c)
+		{
+			if (!candidates_filter.test(table.getCandidate(c)))
+				continue;
+			selected_candidates.set(c);
+			final int m = table.getCandidateMeaning(c);
+			if (positions[m] == -1)
+			{
+				positions[m] = meaning_ids.size();
+				meaning_ids.add(m);
+			}
+		}
 
-		if (references.isEmpty())
+		if (meaning_ids.isEmpty())
 			return;
 
-		double[][] ranking_arrays = MatrixFactory.createMeaningRankingMatrix(references, weighting, similarity,
-				meanings_filter, meaning_similarity_threshold, damping_factor_meanings);
-		Matrix ranking_matrix = new Matrix(ranking_arrays);
+		final List<String> labels = Arrays.stream(meaning_ids.toArray()) // for debugging purposes
+				.mapToObj(table::getMeaning)
+				.map(Meaning::toString)
+				.collect(toList());
 
-		JamaPowerIteration alg = new JamaPowerIteration();
-		Matrix final_distribution = alg.run(ranking_matrix, labels);
-		double[] ranking = final_distribution.getColumnPackedCopy();
+		SparseRankingMatrix ranking_matrix = MatrixFactory.createSparseMeaningRankingMatrix(table,
+				meaning_ids.toArray(), weighting, similarity, meanings_filter, meaning_similarity_threshold,
+				damping_factor_meanings);
+
+		ParallelPowerIteration alg = new ParallelPowerIteration();
+		double[] ranking = alg.run(ranking_matrix, labels);
 
 		// Assign ranking values to meanings
-		filtered_candidates.forEach(m ->
-		{
-			int i = references.indexOf(m.getMeaning().getReference());
-			m.setWeight(ranking[i]);
-		});
+		for (int c = selected_candidates.nextSetBit(0); c >= 0; c = selected_candidates.nextSetBit(c + 1))
+			table.setWeight(c, ranking[positions[table.getCandidateMeaning(c)]]);
 	}
 
 	public static void rankVariables(SemanticGraph graph, double damping_factor_variables)
@@ -86,12 +96,11 @@ public class GraphRanking
 		if (variables.isEmpty())
 			return;
 
-		double[][] rankingArrays = MatrixFactory.createVariableRankingMatrix(variables, graph, damping_factor_variables);
-		Matrix rankingMatrix = new Matrix(rankingArrays);
+		SparseRankingMatrix rankingMatrix = MatrixFactory.createSparseVariableRankingMatrix(variables, graph,
+				damping_factor_variables);
 
-		JamaPowerIteration alg = new JamaPowerIteration();
-		Matrix finalDistribution = alg.run(rankingMatrix, labels);
-		double[] ranking = finalDistribution.getColumnPackedCopy();
+		ParallelPowerIteration alg = new ParallelPowerIteration();
+		double[] ranking = alg.run(rankingMatrix, labels);
 
 		IntStream.range(0, variables.size()).boxed()
 				.forEach(i -> graph.setWeight(variables.get(i),  ranking[i]));
@@ -1,20 +1,25 @@
 package edu.upf.taln.textplanning.core.ranking;
 
-import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.similarity.BatchSimilarity;
+import edu.upf.taln.textplanning.core.similarity.NeighbourSimilarity;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import edu.upf.taln.textplanning.core.structures.SemanticGraph;
 import edu.upf.taln.textplanning.core.utils.DebugUtils.ThreadReporter;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.OptionalDouble;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
 public class MatrixFactory
 {
 	private final static Logger log = LogManager.getLogger();
@@ -91,6 +96,89 @@ public class MatrixFactory
 		return R;
 	}
 
+	/**
+	 * Sparse version of createMeaningRankingMatrix. Only similarity values above the threshold are stored, while the
+	 * bias and the average value given to undefined similarities are kept as an implicit rank-one term.
+	 * @param meaning_ids ids in the candidate table of the meanings to rank, rows and columns follow their order
+	 */
+	public static SparseRankingMatrix createSparseMeaningRankingMatrix(CandidateTable table, int[] meaning_ids,
+	                                                                   Function<String, Double> weighting,
+	                                                                   BiFunction<String, String, OptionalDouble> sim,
+	                                                                   BiPredicate<String, String> filter,
+	                                                                   double sim_threshold, double d)
+	{
+		log.info("Creating sparse ranking matrix for " + meaning_ids.length + " meanings");
+		int n = meaning_ids.length;
+		final List<String> references = table.getReferences();
+		final List<String> meanings = Arrays.stream(meaning_ids)
+				.mapToObj(references::get)
+				.collect(toList());
+
+		// Create *strictly positive* bias row vector for the set of meanings
+		double[] L = createMeaningsBiasVector(meanings, weighting, true);
+
+		// Create *symmetric non-negative* similarity matrix as adjacency lists
+		int[][] columns = new int[n][];
+		double[][] weights = new double[n][];
+		createMeaningsSimilarityLists(meanings, sim, filter, sim_threshold, columns, weights);
+
+		// Undefined similarities are set to the average of all similarity values, as in createMeaningsSimilarityMatrix.
+		// Explicit entries are shifted by the average so that it can be added to all entries as a constant fill.
+		final double sum = Arrays.stream(weights).flatMapToDouble(Arrays::stream).sum();
+		final double avg = sum / ((double) n * n);
+		IntStream.range(0, n).parallel().forEach(u ->
+		{
+			for (int k = 0; k < weights[u].length; ++k)
+				weights[u][k] -= avg;
+		});
+
+		final SparseRankingMatrix R = SparseRankingMatrix.create(columns, weights, avg, L, d);
+		log.info("Meanings matrix created");
+
+		return R;
+	}
+
+	/**
+	 * Sparse version of createVariableRankingMatrix, built from the edges of the graph.
+	 */
+	public static SparseRankingMatrix createSparseVariableRankingMatrix(List<String> variables, SemanticGraph graph,
+	                                                                    double d)
+	{
+		log.info("Creating sparse ranking matrix for " + variables.size() + " variables");
+		int n = variables.size();
+
+		// Get normalized *strictly positive* bias row vector for the set of variables
+		double[] T = createVariablesBiasVector(variables, graph);
+
+		// Get *symmetric non-negative* adjacency matrix as adjacency lists
+		final Map<String, Integer> index = IntStream.range(0, n).boxed()
+				.collect(toMap(variables::get, i -> i));
+		final int[][] columns = variables.stream()
+				.parallel()
+				.map(v -> graph.edgesOf(v).stream()
+						.map(e -> graph.getEdgeSource(e).equals(v) ? graph.getEdgeTarget(e) : graph.getEdgeSource(e))
+						.filter(v2 -> !v2.equals(v))
+						.map(index::get)
+						.filter(Objects::nonNull)
+						.mapToInt(i -> i)
+						.distinct()
+						.sorted()
+						.toArray())
+				.toArray(int[][]::new);
+		final double[][] weights = Arrays.stream(columns)
+				.map(c -> { double[] w = new double[c.length]; Arrays.fill(w, 1.0); return w; })
+				.toArray(double[][]::new);
+
+		// All vertices must be touched by at least one edge -> all rows must have at least one non-zero value
+		if (Arrays.stream(columns).anyMatch(row -> row.length == 0))
+			log.error("Adjacency matrix has all-zero row");
+
+		final SparseRankingMatrix R = SparseRankingMatrix.create(columns, weights, 0.0, T, d);
+		log.info("Variables matrix created");
+
+		return R;
+	}
+
 	// Creates normalized *strictly positive* bias row vector by applying the weighting function to a set of meanings
 	public static double[] createMeaningsBiasVector(List<String> meanings, Function<String, Double> weighting,
 	                                                boolean normalize)
@@ -153,45 +241,24 @@ public class MatrixFactory
 		AtomicLong num_defined = new AtomicLong(0);
 		AtomicLong num_negative = new AtomicLong(0);
 		ThreadReporter reporter = new ThreadReporter(log);
+		final int[][] neighbours = getNeighbours(meanings, sim, sim_threshold);
 
 		// Calculate similarity values
 		IntStream.range(0, n)
 				.parallel()
 				.peek(i -> reporter.report())
-				.forEach(i -> IntStream.range(i, n).forEach(j ->
+				.forEach(i ->
 				{
-					double simij = 0.0;
-					if (i == j)
-						simij = 1.0;
-					else
+					final double[] row = getSimilarities(meanings, i, neighbours, sim, filter, sim_threshold, num_filtered,
+							num_defined, num_negative);
+					for (int j = i; j < n; ++j)
 					{
-						String e1 = meanings.get(i);
-						String e2 = meanings.get(j);
-
-						if (filter.test(e1, e2))
-						{
-							num_filtered.incrementAndGet();
-							final OptionalDouble osim = sim.apply(e1, e2);
-							if (osim.isPresent())
-								num_defined.incrementAndGet();
-
-							double sim_value = osim.orElse(0.0);
-							if (sim_value < 0.0)
-								num_negative.incrementAndGet();
-							else
-								simij = sim_value;
-						}
+						m[i][j] = row[j - i];
+						m[j][i] = row[j - i]; // symmetric matrix
 					}
 
-					if (simij < sim_threshold)
-						simij = 0.0;
-
-					m[i][j] = simij;
-					m[j][i] = simij; // symmetric matrix
-
-					if (counter_pairs.incrementAndGet() % 100000 == 0)
-						log.info(counter_pairs.get() + " out of " + total_pairs);
-				}));
+					logProgress(counter_pairs, row.length, total_pairs);
+				});
 
 		if (set_undefined_to_avg)
 		{
@@ -225,6 +292,165 @@ public class MatrixFactory
 		return m;
 	}
 
+	// Fills adjacency lists with the non-zero values of the symmetric non-negative similarity matrix
+	private static void createMeaningsSimilarityLists(List<String> meanings,
+	                                                  BiFunction<String, String, OptionalDouble> sim,
+	                                                  BiPredicate<String, String> filter,
+	                                                  double sim_threshold, int[][] columns, double[][] weights)
+	{
+		int n = meanings.size();
+		long total_pairs = (((long) n * n) / 2);
+		AtomicLong counter_pairs = new AtomicLong(0);
+		AtomicLong num_filtered = new AtomicLong(0);
+		AtomicLong num_defined = new AtomicLong(0);
+		AtomicLong num_negative = new AtomicLong(0);
+		ThreadReporter reporter = new ThreadReporter(log);
+		final int[][] neighbours = getNeighbours(meanings, sim, sim_threshold);
+
+		// Calculate similarity values for the upper triangle, keeping non-zero values only
+		final TIntArrayList[] upper_columns = new TIntArrayList[n];
+		final TDoubleArrayList[] upper_weights = new TDoubleArrayList[n];
+		IntStream.range(0, n)
+				.parallel()
+				.peek(i -> reporter.report())
+				.forEach(i ->
+				{
+					upper_columns[i] = new TIntArrayList();
+					upper_weights[i] = new TDoubleArrayList();
+					final double[] row = getSimilarities(meanings, i, neighbours, sim, filter, sim_threshold, num_filtered,
+							num_defined, num_negative);
+					for (int j = i; j < n; ++j)
+					{
+						if (row[j - i] != 0.0)
+						{
+							upper_columns[i].add(j);
+							upper_weights[i].add(row[j - i]);
+						}
+					}
+
+					logProgress(counter_pairs, row.length, total_pairs);
+				});
+
+		// Mirror upper triangle into full rows, which remain sorted by column
+		final int[] sizes = new int[n];
+		for (int i = 0; i < n; ++i)
+		{
+			sizes[i] += upper_columns[i].size();
+			for (int k = 0; k < upper_columns[i].size(); ++k)
+			{
+				final int j = upper_columns[i].getQuick(k);
+				if (j != i)
+					++sizes[j];
+			}
+		}
+		final int[] next = new int[n];
+		for (int i = 0; i < n; ++i)
+		{
+			columns[i] = new int[sizes[i]];
+			weights[i] = new double[sizes[i]];
+		}
+		for (int i = 0; i < n; ++i)
+		{
+			for (int k = 0; k < upper_columns[i].size(); ++k)
+			{
+				final int j = upper_columns[i].getQuick(k);
+				final double w = upper_weights[i].getQuick(k);
+				columns[i][next[i]] = j;
+				weights[i][next[i]++] = w;
+				if (j != i)
+				{
+					columns[j][next[j]] = i;
+					weights[j][next[j]++] = w;
+				}
+			}
+		}
+
+		log.info("Similarity function invoked for " + num_filtered + " out of " + total_pairs);
+		log.info("Similarity function defined for " + num_defined + " out of " + num_filtered);
+		log.info("Similarity values are negative for " + num_negative.get() + " out of " + num_defined);
+		log.info("Similarity matrix has " + Arrays.stream(sizes).asLongStream().sum() + " non-zero values out of " +
+				(long) n * n);
+	}
+
+	// Candidate neighbours of each meaning, null if all pairs of meanings must be compared
+	private static int[][] getNeighbours(List<String> meanings, BiFunction<String, String, OptionalDouble> sim,
+	                                     double sim_threshold)
+	{
+		if (sim instanceof NeighbourSimilarity)
+			return ((NeighbourSimilarity) sim).getNeighbours(meanings, sim_threshold);
+		return null;
+	}
+
+	// Similarities between the i-th meaning and meanings i..n-1, set to 0 if negative, filtered out or below the threshold.
+	// Only candidate neighbours are compared if given, and batch similarity functions are invoked once for the whole row.
+	private static double[] getSimilarities(List<String> meanings, int i, int[][] neighbours,
+	                                        BiFunction<String, String, OptionalDouble> sim,
+	                                        BiPredicate<String, String> filter, double sim_threshold,
+	                                        AtomicLong num_filtered, AtomicLong num_defined, AtomicLong num_negative)
+	{
+		final int n = meanings.size();
+		final String e1 = meanings.get(i);
+		final double[] row = new double[n - i];
+		row[0] = 1.0 < sim_threshold ? 0.0 : 1.0;
+
+		final List<String> targets = new ArrayList<>();
+		final TIntArrayList positions = new TIntArrayList();
+		final int num_targets = neighbours == null ? n - i - 1 : neighbours[i].length;
+		for (int k = 0; k < num_targets; ++k)
+		{
+			final int j = neighbours == null ? i + 1 + k : neighbours[i][k];
+			final String e2 = meanings.get(j);
+			if (filter.test(e1, e2))
+			{
+				targets.add(e2);
+				positions.add(j - i);
+			}
+		}
+		num_filtered.addAndGet(targets.size());
+
+		if (sim instanceof BatchSimilarity)
+		{
+			final double[] values = ((BatchSimilarity) sim).similarities(e1, targets);
+			for (int k = 0; k < values.length; ++k)
+				row[positions.getQuick(k)] = getSimilarity(values[k], sim_threshold, num_defined, num_negative);
+		}
+		else
+		{
+			for (int k = 0; k < targets.size(); ++k)
+			{
+				final OptionalDouble osim = sim.apply(e1, targets.get(k));
+				row[positions.getQuick(k)] = getSimilarity(osim.orElse(Double.NaN), sim_threshold, num_defined,
+						num_negative);
+			}
+		}
+
+		return row;
+	}
+
+	// Similarity value set to 0 if undefined (NaN), negative or below the threshold
+	private static double getSimilarity(double value, double sim_threshold, AtomicLong num_defined,
+	                                    AtomicLong num_negative)
+	{
+		if (Double.isNaN(value))
+			return 0.0;
+
+		num_defined.incrementAndGet();
+		if (value < 0.0)
+		{
+			num_negative.incrementAndGet();
+			return 0.0;
+		}
+
+		return value < sim_threshold ? 0.0 : value;
+	}
+
+	private static void logProgress(AtomicLong counter_pairs, int num_pairs, long total_pairs)
+	{
+		final long count = counter_pairs.addAndGet(num_pairs);
+		if ((count - num_pairs) / 100000 != count / 100000)
+			log.info(count + " out of " + total_pairs);
+	}
+
 	// Creates row-normalized symmetric non-negative adjacency matrix
 	private static double[][] createVariablesAdjacencyMatrix(List<String> variables, SemanticGraph graph)
 	{
@@ -260,13 +486,14 @@ public class MatrixFactory
 	}
 
 	// Creates normalized *strictly positive* type row vector for the candidate set
-	public static double[] createTypeVector(List<Candidate> candidates, boolean smooth, boolean normalize)
+	public static double[] createTypeVector(CandidateTable candidates, boolean smooth, boolean normalize)
 	{
 		ThreadReporter reporter = new ThreadReporter(log);
 
-		double[] v = candidates.stream()
+		double[] v = IntStream.range(0, candidates.size())
 				.parallel()
-				.peek(c -> reporter.report())
+				.peek(i -> reporter.report())
+				.mapToObj(candidates::getCandidate)
 				.mapToDouble(c -> {
 					String mtype = c.getMention().getType();
 					String etype = c.getMeaning().getType();
@@ -0,0 +1,31 @@
+package edu.upf.taln.textplanning.core.ranking;
+
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Signatures of the sets of mentions meanings are candidates of, indexed by the meaning ids of a candidate table.
+ * Meanings which are candidates of exactly the same set of mentions share a signature. Memory is linear in the number
+ * of candidates, and comparing the mentions of two meanings takes constant time.
+ */
+public class MentionSignatures
+{
+	private final int[] signatures; // [meaning] -> signature
+
+	public MentionSignatures(CandidateTable table)
+	{
+		signatures = new int[table.getNumMeanings()];
+		final Map<TIntArrayList, Integer> signature_ids = new HashMap<>();
+		for (int m = 0; m < signatures.length; ++m)
+			signatures[m] = signature_ids.computeIfAbsent(TIntArrayList.wrap(table.getMeaningMentions(m)),
+					s -> signature_ids.size());
+	}
+
+	/**
+	 * @return signature of the set of mentions of a meaning
+	 */
+	public int getSignature(int meaning) { return signatures[meaning]; }
+}
@@ -0,0 +1,236 @@
+package edu.upf.taln.textplanning.core.ranking;
+
+import Jama.Matrix;
+import edu.upf.taln.textplanning.core.utils.DebugUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Power iteration method to obtain a final stationary distribution of a Markov chain, computing each step as a
+ * row-blocked parallel matrix-vector product over a fork-join pool.
+ * Works on dense Jama matrices, which are read in place without being transposed, and on sparse ranking matrices.
+ *
+ * Distribution vectors are double-buffered and all tasks are allocated once per run, so that iterations produce no
+ * garbage. Stopping criterion is the same as in JamaPowerIteration.
+ * Instances keep statistics of their last run and are not meant to be shared by concurrent threads.
+ */
+public class ParallelPowerIteration implements PowerIterationRanking
+{
+	private final ForkJoinPool pool;
+	private final int min_block_size;
+	private int num_iterations = 0;
+	private double residual = Double.NaN;
+	private final static Logger log = LogManager.getLogger();
+
+	public ParallelPowerIteration()
+	{
+		this(ForkJoinPool.commonPool(), 256);
+	}
+
+	public ParallelPowerIteration(ForkJoinPool pool, int min_block_size)
+	{
+		this.pool = pool;
+		this.min_block_size = Math.max(1, min_block_size);
+	}
+
+	/**
+	 * @param a a transition stochastic matrix of a Markov chain
+	 * @param labels labels identifying items in matrix, used for debugging purposes
+	 * @return the stationary distribution of the chain, as a column vector
+	 */
+	@Override
+	public Matrix run(Matrix a, List<String> labels)
+	{
+		assert a.getColumnDimension() == a.getRowDimension(); // Is it square?
+		final double[][] m = a.getArray();
+		final int n = m.length;
+
+		// (aᵀv)j = Σu a[u][j]*v[u], accumulated row by row over a block of columns so that rows are read sequentially
+		final Operator op = new Operator()
+		{
+			@Override
+			public double prepare(double[] v) { return 0.0; }
+
+			@Override
+			public void multiply(double[] v, double[] out, int from, int to, double c)
+			{
+				Arrays.fill(out, from, to, c);
+				for (int u = 0; u < n; ++u)
+				{
+					final double vu = v[u];
+					final double[] row = m[u];
+					for (int j = from; j < to; ++j)
+						out[j] += row[j] * vu;
+				}
+			}
+		};
+
+		final double[] v = iterate(op, n, labels);
+		return new Matrix(v, n);
+	}
+
+	/**
+	 * @param r a ranking matrix, row-stochastic once its teleport term is added
+	 * @param labels labels identifying items in matrix, used for debugging purposes
+	 * @return the stationary distribution of the chain
+	 */
+	public double[] run(SparseRankingMatrix r, List<String> labels)
+	{
+		final Operator op = new Operator()
+		{
+			@Override
+			public double prepare(double[] v) { return r.teleport(v); }
+
+			@Override
+			public void multiply(double[] v, double[] out, int from, int to, double c)
+			{
+				r.multiplyTransposed(v, out, from, to, c);
+			}
+		};
+
+		log.info("Ranking matrix has " + r.getNumNonZero() + " non-zero entries out of " + (long) r.size() * r.size());
+		return iterate(op, r.size(), labels);
+	}
+
+	public int getNumIterations() { return num_iterations; }
+	public double getResidual() { return residual; }
+
+	private double[] iterate(Operator op, int n, List<String> labels)
+	{
+		final double e = 1.0/(n*1000); // set stopping threshold
+		final int num_blocks = Math.max(1, Math.min(pool.getParallelism() * 4, n / min_block_size));
+		final Iteration iteration = new Iteration(op, n, num_blocks, e);
+
+		log.info("Starting power iteration with " + num_blocks + " blocks");
+		final double[] v = pool.invoke(iteration);
+		num_iterations = iteration.num_iterations;
+		residual = iteration.delta;
+
+		log.info("Power iteration completed after " + num_iterations + " iterations, residual " + residual);
+		if (log.isDebugEnabled())
+			log.debug("Ranking:\n" + DebugUtils.printRank(v, labels));
+		return v;
+	}
+
+	/**
+	 * Computes out = Mᵀv + c for rows [from, to) of Mᵀ, where c = prepare(v) is shared by all rows
+	 */
+	private interface Operator
+	{
+		double prepare(double[] v);
+		void multiply(double[] v, double[] out, int from, int to, double c);
+	}
+
+	/**
+	 * Main loop, running inside the pool so that block tasks are forked into it
+	 */
+	private static class Iteration extends RecursiveTask<double[]>
+	{
+		private final static long serialVersionUID = 1L;
+		private final Operator op;
+		private final double e;
+		private final int n;
+		private final int[] bounds; // block b covers [bounds[b], bounds[b+1])
+		private final double[] partials; // per-block norm or delta
+		private final RecursiveAction[] multiply_tasks;
+		private final RecursiveAction[] normalize_tasks;
+		private double[] v; // current distribution
+		private double[] tmp; // next distribution
+		private double c; // shared term for current step
+		private double norm;
+		private int num_iterations = 0;
+		private double delta = Double.NaN;
+
+		Iteration(Operator op, int n, int num_blocks, double e)
+		{
+			this.op = op;
+			this.n = n;
+			this.e = e;
+			this.bounds = new int[num_blocks + 1];
+			for (int b = 0; b <= num_blocks; ++b)
+				bounds[b] = (int) ((long) n * b / num_blocks);
+			this.partials = new double[num_blocks];
+			this.multiply_tasks = new RecursiveAction[num_blocks];
+			this.normalize_tasks = new RecursiveAction[num_blocks];
+			for (int b = 0; b < num_blocks; ++b)
+			{
+				final int block = b;
+				multiply_tasks[b] = new RecursiveAction()
+				{
+					@Override
+					protected void compute()
+					{
+						// Core operation: transform distribution according to stochastic matrix
+						op.multiply(v, tmp, bounds[block], bounds[block + 1], c);
+						double accum = 0.0;
+						for (int i = bounds[block]; i < bounds[block + 1]; ++i)
+							accum += Math.abs(tmp[i]);
+						partials[block] = accum;
+					}
+				};
+				normalize_tasks[b] = new RecursiveAction()
+				{
+					@Override
+					protected void compute()
+					{
+						// Normalize distribution and find out magnitude of change in distribution vector
+						double max = 0.0;
+						for (int i = bounds[block]; i < bounds[block + 1]; ++i)
+						{
+							tmp[i] /= norm;
+							max = Math.max(max, Math.abs(tmp[i] - v[i]));
+						}
+						partials[block] = max;
+					}
+				};
+			}
+		}
+
+		@Override
+		protected double[] compute()
+		{
+			v = new double[n];
+			tmp = new double[n];
+			Arrays.fill(v, 1.0 / n);
+
+			do
+			{
+				c = op.prepare(v);
+				run(multiply_tasks);
+				norm = 0.0;
+				for (double p : partials)
+					norm += p;
+
+				run(normalize_tasks);
+				delta = 0.0;
+				for (double p : partials)
+					delta = Math.max(delta, p);
+
+				final double[] swap = v;
+				v = tmp;
+				tmp = swap;
+				if (++num_iterations % 100 == 0)
+				{
+					log.info("..." + num_iterations + " iterations, residual " + delta);
+				}
+			}
+			while (delta >= e); // stopping criterion: delta falls below a certain threshold
+
+			return v;
+		}
+
+		private static void run(RecursiveAction[] tasks)
+		{
+			for (RecursiveAction t : tasks)
+				t.reinitialize();
+			ForkJoinTask.invokeAll(tasks);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package edu.upf.taln.textplanning.core.ranking;
+
+import Jama.Matrix;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Ranking matrix R = T·1ᵀ + S, where S is a sparse matrix and T·1ᵀ a rank-one teleport term that is never expanded.
+ *
+ * S is stored transposed in compressed sparse row (CSR) format, so that a power iteration step Rᵀv reduces to a
+ * gather over the non-zero entries of each row of Sᵀ plus a single scalar T·v added to every component.
+ * Memory and time per iteration are O(n + nnz) instead of O(n²).
+ *
+ * Immutable class.
+ */
+public final class SparseRankingMatrix
+{
+	private final int n;
+	private final int[] row_ptr; // offsets into col_idx/values for each row of Sᵀ, length n+1
+	private final int[] col_idx;
+	private final double[] values;
+	private final double[] teleport;
+
+	SparseRankingMatrix(int[] row_ptr, int[] col_idx, double[] values, double[] teleport)
+	{
+		assert row_ptr.length == teleport.length + 1;
+		assert col_idx.length == values.length && row_ptr[teleport.length] == values.length;
+
+		this.n = teleport.length;
+		this.row_ptr = row_ptr;
+		this.col_idx = col_idx;
+		this.values = values;
+		this.teleport = teleport;
+	}
+
+	/**
+	 * Creates a ranking matrix R = d·L·1ᵀ + (1-d)·X, where X is given row-wise as adjacency lists with row weights
+	 * and fill values. Row u of X is defined as Xuv = (Wuv + fill) / Zu, with Wuv the explicit weights in the row,
+	 * fill a constant value for all entries of the row and Zu the sum of the row, so that X is row-stochastic without
+	 * ever materializing the fill values.
+	 *
+	 * @param columns for each row u, column indexes of explicit entries (no duplicates)
+	 * @param weights for each row u, explicit weights Wuv (already reduced by fill if fill replaces them)
+	 * @param fill    constant value added to all n entries of each row
+	 * @param L       bias vector
+	 * @param d       damping factor
+	 */
+	static SparseRankingMatrix create(int[][] columns, double[][] weights, double fill, double[] L, double d)
+	{
+		final int n = columns.length;
+
+		// Row sums of X before normalization
+		final double[] Z = IntStream.range(0, n)
+				.parallel()
+				.mapToDouble(u -> Arrays.stream(weights[u]).sum() + n * fill)
+				.toArray();
+
+		// Scale rows of X so that they sum to 1-d once the fill is added
+		final double[][] scaled = IntStream.range(0, n)
+				.parallel()
+				.mapToObj(u -> Z[u] == 0.0 ? new double[columns[u].length] : // all-zero row, contributes nothing
+						Arrays.stream(weights[u]).map(w -> (1.0 - d) * w / Z[u]).toArray())
+				.toArray(double[][]::new);
+
+		// Teleport: bias plus uniform fill of each row, both rank-one
+		final double[] T = IntStream.range(0, n)
+				.mapToDouble(u -> d * L[u] + (Z[u] == 0.0 ? 0.0 : (1.0 - d) * fill / Z[u]))
+				.toArray();
+
+		return transpose(columns, scaled, T);
+	}
+
+	/**
+	 * Wraps a dense matrix, keeping only its non-zero entries. Values are not rescaled.
+	 */
+	public static SparseRankingMatrix fromDense(Matrix a)
+	{
+		final double[][] m = a.getArray();
+		final int n = m.length;
+		final int[][] columns = new int[n][];
+		final double[][] weights = new double[n][];
+		IntStream.range(0, n).parallel().forEach(u ->
+		{
+			columns[u] = IntStream.range(0, n).filter(v -> m[u][v] != 0.0).toArray();
+			weights[u] = Arrays.stream(columns[u]).mapToDouble(v -> m[u][v]).toArray();
+		});
+
+		return transpose(columns, weights, new double[n]);
+	}
+
+	// Scatters rows of S into rows of Sᵀ. Rows are visited in order, so column indexes of each row of Sᵀ end up sorted.
+	private static SparseRankingMatrix transpose(int[][] columns, double[][] weights, double[] T)
+	{
+		final int n = columns.length;
+
+		// Count entries per row of Sᵀ, i.e. per column of S
+		final int[] row_ptr = new int[n + 1];
+		for (int[] row : columns)
+			for (int v : row)
+				++row_ptr[v + 1];
+		for (int i = 0; i < n; ++i)
+			row_ptr[i + 1] += row_ptr[i];
+
+		final int nnz = row_ptr[n];
+		final int[] col_idx = new int[nnz];
+		final double[] values = new double[nnz];
+		final int[] next = Arrays.copyOf(row_ptr, n);
+
+		for (int u = 0; u < n; ++u)
+		{
+			for (int k = 0; k < columns[u].length; ++k)
+			{
+				final int pos = next[columns[u][k]]++;
+				col_idx[pos] = u;
+				values[pos] = weights[u][k];
+			}
+		}
+
+		return new SparseRankingMatrix(row_ptr, col_idx, values, T);
+	}
+
+	public int size() { return n; }
+	public int getNumNonZero() { return values.length; }
+
+	/**
+	 * Computes out = Rᵀv for rows [from, to) of Rᵀ
+	 */
+	void multiplyTransposed(double[] v, double[] out, int from, int to, double teleport_v)
+	{
+		for (int j = from; j < to; ++j)
+		{
+			double accum = teleport_v;
+			for (int k = row_ptr[j]; k < row_ptr[j + 1]; ++k)
+				accum += values[k] * v[col_idx[k]];
+			out[j] = accum;
+		}
+	}
+
+	/**
+	 * @return T·v, the teleport contribution shared by all components of Rᵀv
+	 */
+	double teleport(double[] v)
+	{
+		double accum = 0.0;
+		for (int i = 0; i < n; ++i)
+			accum += teleport[i] * v[i];
+		return accum;
+	}
+}
@@ -1,15 +1,13 @@
 package edu.upf.taln.textplanning.core.ranking;
 
 import edu.upf.taln.textplanning.core.structures.Candidate;
-import edu.upf.taln.textplanning.core.structures.Mention;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.lang.Math.min;
 
@@ -18,25 +16,31 @@ import static java.lang.Math.min;
  */
 public class TopCandidatesFilter implements Predicate<Candidate>
 {
-	private final List<Candidate> selected_candidates;
+	private final CandidateTable table;
+	private final BitSet selected_candidates; // indexed by candidate id in table
 
-	public TopCandidatesFilter(Map<Mention, List<Candidate>> candidate_sets, Function<String, Double> eval, int top_k, double threshold)
+	public TopCandidatesFilter(CandidateTable table, Function<String, Double> eval, int top_k, double threshold)
 	{
-		selected_candidates = filter(candidate_sets, eval, top_k, threshold);
+		this.table = table;
+		selected_candidates = new BitSet(table.size());
+		filter(table, eval, top_k, threshold).forEach(c -> selected_candidates.set(table.indexOf(c)));
 	}
 
 	@Override
 	public boolean test(Candidate candidate)
 	{
-		return selected_candidates.contains(candidate);
+		final int c = table.indexOf(candidate);
+		return c != -1 && selected_candidates.get(c);
 	}
 
 
-	private static List<Candidate> filter(Map<Mention, List<Candidate>> candidate_sets, Function<String, Double> eval, int top_k, double threshold)
+	private static List<Candidate> filter(CandidateTable table, Function<String, Double> eval, int top_k, double threshold)
 	{
-		return candidate_sets.keySet().stream()
-				.sorted()
-				.map(candidate_sets::get)
+		return IntStream.range(0, table.getNumMentions()).boxed()
+				.sorted(Comparator.comparing(table::getMention))
+				.map(n -> Arrays.stream(table.getMentionCandidates(n))
+						.mapToObj(table::getCandidate)
+						.collect(Collectors.toList()))
 				.map(l -> limit(l, eval, top_k, threshold))
 				.flatMap(List::stream)
 				.collect(Collectors.toList());
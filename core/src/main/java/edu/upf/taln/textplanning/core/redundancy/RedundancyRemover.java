@@ -1,6 +1,7 @@
 package edu.upf.taln.textplanning.core.redundancy;
 
 import edu.upf.taln.textplanning.core.similarity.SemanticTreeSimilarity;
+import edu.upf.taln.textplanning.core.similarity.TreeSimilarityMatrix;
 import edu.upf.taln.textplanning.core.structures.SemanticSubgraph;
 import edu.upf.taln.textplanning.core.structures.SemanticTree;
 import edu.upf.taln.textplanning.core.utils.DebugUtils;
@@ -35,61 +36,53 @@ public class RedundancyRemover
 
 	public Collection<SemanticSubgraph> filter(Collection<SemanticSubgraph> G, int num_graphs)
 	{
-		// Convert graphs to lists
-		List<SemanticTree> trees = G.stream()
-				.map(SemanticTree::new)
-				.collect(toList());
-		List<SemanticTree> pruned = new ArrayList<>();
-
-		// Calculate similarities between pairs of trees
 		log.info("Calculating similarities between pairs of trees");
-		List<SimilarityPair> sim_pairs = IntStream.range(0, G.size())
-				.mapToObj(i -> IntStream.range(i, G.size())
-						.filter(j -> i != j)
-						.mapToObj(j ->
-						{
-							double sij = sim.getSimilarity(trees.get(i), trees.get(j));
-							return new SimilarityPair(i, j, sij);
-						}))
+		return filter(new TreeSimilarityMatrix(G, sim), num_graphs);
+	}
+
+	/**
+	 * @param similarities similarities between pairs of the subgraphs to filter
+	 */
+	public static Collection<SemanticSubgraph> filter(TreeSimilarityMatrix similarities, int num_graphs)
+	{
+		final int n = similarities.size();
+
+		// Sort pairs by decreasing similarity. Sort is stable, so ties are broken in favour of the first pair.
+		List<SimilarityPair> sim_pairs = IntStream.range(0, n)
+				.mapToObj(i -> IntStream.range(i + 1, n)
+						.mapToObj(j -> new SimilarityPair(i, j, similarities.getSimilarity(i, j))))
 				.flatMap(s -> s)
-				.sorted(Comparator.comparingDouble(SimilarityPair::getW))
+				.sorted(Comparator.comparingDouble(SimilarityPair::getW).reversed())
 				.collect(toList());
 
 		// Prune G by choosing pair of most similar graphs and keeping the one with highest average weight
 		log.info("Pruning trees");
-		while (trees.size() - pruned.size() > num_graphs)
+		final boolean[] pruned = new boolean[n];
+		int num_pruned = 0;
+		for (Iterator<SimilarityPair> it = sim_pairs.iterator(); it.hasNext() && n - num_pruned > num_graphs; )
 		{
-			sim_pairs.stream()
-					.max(Comparator.comparingDouble(SimilarityPair::getW))
-					.map(p ->
-					{
-
-						SemanticTree t1 = trees.get(p.t1);
-						SemanticTree t2 = trees.get(p.t2);
-
-						double avg1 = t1.getAverageWeight();
-						double avg2 = t2.getAverageWeight();
-						int pruned_tree = avg1 >= avg2 ? p.t2 : p.t1;
-
-						log.debug("Pruned tree " + pruned_tree + " from pair " + p.t1 + "-" + p.t2 + " with sim=" + DebugUtils.printDouble(p.w));
-								//+ ":\n" + DebugUtils.printTree(p.t1, t1) + "\n" + DebugUtils.printTree(p.t2, t2));
-
-						// return tree with lowest score
-						return pruned_tree;
-					})
-					.ifPresent(t ->
-					{
-						pruned.add(trees.get(t));
-						sim_pairs.removeIf(p -> p.t1 == t || p.t2 == t);
-					});
+			final SimilarityPair p = it.next();
+			if (pruned[p.t1] || pruned[p.t2])
+				continue; // pairs with pruned trees are no longer considered
+
+			SemanticTree t1 = similarities.getTree(p.t1);
+			SemanticTree t2 = similarities.getTree(p.t2);
+
+			double avg1 = t1.getAverageWeight();
+			double avg2 = t2.getAverageWeight();
+			int pruned_tree = avg1 >= avg2 ? p.t2 : p.t1; // prune tree with lowest score
+
+			log.debug("Pruned tree " + pruned_tree + " from pair " + p.t1 + "-" + p.t2 + " with sim=" + DebugUtils.printDouble(p.w));
+			pruned[pruned_tree] = true;
+			++num_pruned;
 		}
 
-		trees.removeAll(pruned);
-		Set<SemanticSubgraph> selected = trees.stream()
-				.map(SemanticTree::asGraph)
+		Set<SemanticSubgraph> selected = IntStream.range(0, n)
+				.filter(i -> !pruned[i])
+				.mapToObj(similarities::getSubgraph)
 				.collect(toSet());
 
-		log.info("Selected " + num_graphs + " subgraphs out of " + G.size());
+		log.info("Selected " + selected.size() + " subgraphs out of " + n);
 		log.debug("Selected subgraphs:\n" + DebugUtils.printSubgraphs(new ArrayList<>(selected)));
 		return selected;
 	}
@@ -0,0 +1,17 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.function.BiFunction;
+
+/**
+ * Similarity function which can also compare an item against many others in a single call, as done when filling a row
+ * of a similarity matrix.
+ */
+public interface BatchSimilarity extends BiFunction<String, String, OptionalDouble>
+{
+	/**
+	 * @return similarity values between item and each of the given items, NaN where similarity is undefined
+	 */
+	double[] similarities(String item, List<String> items);
+}
@@ -0,0 +1,124 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import edu.upf.taln.textplanning.core.similarity.vectors.Vectors;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Approximate nearest-neighbour index for cosine similarity based on random hyperplanes (Charikar 2002).
+ * Each table hashes vectors to the signs of their projections onto a few random hyperplanes, so that two vectors
+ * with angle θ fall in the same bucket of a table with probability (1 - θ/π)^bits. Items sharing a bucket in any of
+ * the tables are candidate neighbours.
+ *
+ * More bits per table give fewer candidates, more tables give higher recall.
+ */
+public class HyperplaneLSH
+{
+	private final int num_items;
+	private final List<TIntObjectHashMap<TIntArrayList>> tables;
+	private final int[][] signatures; // [table][item], -1 if item has no vector
+
+	public HyperplaneLSH(List<String> items, Vectors vectors, int num_tables, int num_bits, long seed)
+	{
+		if (num_bits < 1 || num_bits > 30)
+			throw new IllegalArgumentException("Number of bits must be between 1 and 30");
+
+		num_items = items.size();
+		final int num_dimensions = vectors.getNumDimensions();
+		final SplittableRandom random = new SplittableRandom(seed);
+		final double[][][] hyperplanes = new double[num_tables][num_bits][num_dimensions];
+		for (double[][] table : hyperplanes)
+			for (double[] h : table)
+				for (int d = 0; d < num_dimensions; ++d)
+					h[d] = gaussian(random);
+
+		signatures = new int[num_tables][num_items];
+		IntStream.range(0, num_items)
+				.parallel()
+				.forEach(i ->
+				{
+					final Optional<double[]> ov = vectors.getVector(items.get(i));
+					for (int t = 0; t < num_tables; ++t)
+						signatures[t][i] = ov.isPresent() && ov.get().length == num_dimensions ?
+								getSignature(ov.get(), hyperplanes[t]) : -1;
+				});
+
+		tables = new ArrayList<>(num_tables);
+		for (int t = 0; t < num_tables; ++t)
+		{
+			final TIntObjectHashMap<TIntArrayList> table = new TIntObjectHashMap<>();
+			tables.add(table);
+			for (int i = 0; i < num_items; ++i)
+			{
+				final int s = signatures[t][i];
+				if (s == -1)
+					continue;
+				TIntArrayList bucket = table.get(s);
+				if (bucket == null)
+				{
+					bucket = new TIntArrayList();
+					table.put(s, bucket);
+				}
+				bucket.add(i);
+			}
+		}
+	}
+
+	private static int getSignature(double[] v, double[][] hyperplanes)
+	{
+		int s = 0;
+		for (int b = 0; b < hyperplanes.length; ++b)
+		{
+			final double[] h = hyperplanes[b];
+			double p = 0.0;
+			for (int d = 0; d < v.length; ++d)
+				p += v[d] * h[d];
+			if (p >= 0.0)
+				s |= 1 << b;
+		}
+		return s;
+	}
+
+	// Box-Muller, SplittableRandom has no nextGaussian
+	private static double gaussian(SplittableRandom random)
+	{
+		final double u1 = 1.0 - random.nextDouble(); // (0, 1]
+		final double u2 = random.nextDouble();
+		return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+	}
+
+	/**
+	 * @return sorted positions of the items after the i-th item which share a bucket with it in some table
+	 */
+	public int[] getCandidates(int i)
+	{
+		final TIntHashSet candidates = new TIntHashSet();
+		for (int t = 0; t < tables.size(); ++t)
+		{
+			final int s = signatures[t][i];
+			if (s == -1)
+				continue;
+			final TIntArrayList bucket = tables.get(t).get(s);
+			for (int k = 0; k < bucket.size(); ++k)
+			{
+				final int j = bucket.getQuick(k);
+				if (j > i)
+					candidates.add(j);
+			}
+		}
+
+		final int[] sorted = candidates.toArray();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	public int size() { return num_items; }
+}
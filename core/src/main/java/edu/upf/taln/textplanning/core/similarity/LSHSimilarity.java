@@ -0,0 +1,129 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import com.google.common.base.Stopwatch;
+import edu.upf.taln.textplanning.core.similarity.vectors.Vectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Wraps a cosine similarity function between meanings with a {@link HyperplaneLSH} index built over the vectors of the
+ * meanings being compared, so that only pairs sharing a bucket are compared. Similarity values are those of the
+ * wrapped function, and are only missed for pairs the index fails to find.
+ *
+ * If recall is reported, all pairs are also compared exactly to count how many of those above the threshold are found
+ * by the index. Recall is logged for each set of meanings and accumulated over all of them.
+ */
+public class LSHSimilarity implements NeighbourSimilarity, BatchSimilarity
+{
+	private final BiFunction<String, String, OptionalDouble> sim;
+	private final Vectors vectors;
+	private final int num_tables;
+	private final int num_bits;
+	private final long seed;
+	private final boolean report_recall;
+	private final LongAdder num_relevant = new LongAdder();
+	private final LongAdder num_found = new LongAdder();
+	private final static Logger log = LogManager.getLogger();
+
+	/**
+	 * @param sim cosine similarity between the vectors of meanings
+	 * @param vectors vectors of meanings
+	 */
+	public LSHSimilarity(BiFunction<String, String, OptionalDouble> sim, Vectors vectors, int num_tables, int num_bits,
+	                     long seed, boolean report_recall)
+	{
+		this.sim = sim;
+		this.vectors = vectors;
+		this.num_tables = num_tables;
+		this.num_bits = num_bits;
+		this.seed = seed;
+		this.report_recall = report_recall;
+	}
+
+	@Override
+	public OptionalDouble apply(String e1, String e2)
+	{
+		return sim.apply(e1, e2);
+	}
+
+	@Override
+	public double[] similarities(String item, List<String> items)
+	{
+		if (sim instanceof BatchSimilarity)
+			return ((BatchSimilarity) sim).similarities(item, items);
+
+		return items.stream()
+				.map(i -> sim.apply(item, i))
+				.mapToDouble(o -> o.orElse(Double.NaN))
+				.toArray();
+	}
+
+	@Override
+	public int[][] getNeighbours(List<String> items, double threshold)
+	{
+		// With no positive threshold all pairs count
+		if (threshold <= 0.0)
+			return null;
+
+		final Stopwatch timer = Stopwatch.createStarted();
+		final HyperplaneLSH index = new HyperplaneLSH(items, vectors, num_tables, num_bits, seed);
+		final int[][] neighbours = IntStream.range(0, items.size())
+				.parallel()
+				.mapToObj(index::getCandidates)
+				.toArray(int[][]::new);
+		final long num_candidates = Arrays.stream(neighbours).mapToLong(n -> n.length).sum();
+		final long num_pairs = (long) items.size() * (items.size() - 1) / 2;
+		log.info(String.format("LSH index found %d candidate pairs out of %d (%.3f) in %s", num_candidates, num_pairs,
+				num_pairs == 0 ? 0.0 : (double) num_candidates / num_pairs, timer.stop()));
+
+		if (report_recall)
+			reportRecall(items, neighbours, threshold);
+
+		return neighbours;
+	}
+
+	private void reportRecall(List<String> items, int[][] neighbours, double threshold)
+	{
+		final LongAdder relevant = new LongAdder();
+		final LongAdder found = new LongAdder();
+		IntStream.range(0, items.size())
+				.parallel()
+				.forEach(i ->
+				{
+					final List<String> others = items.subList(i + 1, items.size());
+					final double[] values = similarities(items.get(i), others);
+					for (int k = 0; k < values.length; ++k)
+					{
+						if (values[k] >= threshold)
+						{
+							relevant.increment();
+							if (Arrays.binarySearch(neighbours[i], i + 1 + k) >= 0)
+								found.increment();
+						}
+					}
+				});
+
+		num_relevant.add(relevant.sum());
+		num_found.add(found.sum());
+		log.info(String.format("LSH recall %.3f (%d out of %d pairs above threshold), overall recall %.3f",
+				relevant.sum() == 0 ? 1.0 : found.doubleValue() / relevant.sum(), found.sum(), relevant.sum(),
+				getRecall()));
+	}
+
+	/**
+	 * @return ratio of pairs above the threshold found by the index, over all sets of meanings for which recall was
+	 * reported
+	 */
+	public double getRecall()
+	{
+		final long relevant = num_relevant.sum();
+		return relevant == 0 ? 1.0 : num_found.doubleValue() / relevant;
+	}
+}
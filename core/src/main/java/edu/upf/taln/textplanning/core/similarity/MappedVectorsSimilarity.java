@@ -0,0 +1,53 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import edu.upf.taln.textplanning.core.similarity.vectors.MappedVectors;
+
+import java.util.List;
+import java.util.OptionalDouble;
+
+/**
+ * Cosine similarity between items according to vectors in a {@link MappedVectors} file, calculated directly on the
+ * encoded vectors so that no vectors are decoded or copied to the heap.
+ */
+public class MappedVectorsSimilarity implements BatchSimilarity
+{
+	private final MappedVectors vectors;
+
+	public MappedVectorsSimilarity(MappedVectors vectors)
+	{
+		this.vectors = vectors;
+	}
+
+	@Override
+	public OptionalDouble apply(String e1, String e2)
+	{
+		if (e1.equals(e2))
+			return OptionalDouble.of(1.0);
+
+		final int i1 = vectors.indexOf(e1);
+		final int i2 = vectors.indexOf(e2);
+		if (i1 < 0 || i2 < 0)
+			return OptionalDouble.empty();
+
+		final double sim = vectors.cosine(i1, i2);
+		return Double.isNaN(sim) ? OptionalDouble.empty() : OptionalDouble.of(sim);
+	}
+
+	@Override
+	public double[] similarities(String item, List<String> items)
+	{
+		final double[] values = new double[items.size()];
+		final int i1 = vectors.indexOf(item);
+		for (int k = 0; k < values.length; ++k)
+		{
+			final String other = items.get(k);
+			final int i2 = i1 < 0 ? -1 : vectors.indexOf(other);
+			if (i2 < 0)
+				values[k] = Double.NaN;
+			else
+				values[k] = other.equals(item) ? 1.0 : vectors.cosine(i1, i2);
+		}
+
+		return values;
+	}
+}
@@ -0,0 +1,18 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.function.BiFunction;
+
+/**
+ * Similarity function which can tell in advance which pairs of items may be similar, so that similarity matrices are
+ * built without comparing all pairs.
+ */
+public interface NeighbourSimilarity extends BiFunction<String, String, OptionalDouble>
+{
+	/**
+	 * @return for each item, sorted positions of the items after it whose similarity may be above the threshold, or
+	 * null if all pairs must be compared
+	 */
+	int[][] getNeighbours(List<String> items, double threshold);
+}
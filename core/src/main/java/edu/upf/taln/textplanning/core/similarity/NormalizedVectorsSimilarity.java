@@ -0,0 +1,184 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import edu.upf.taln.textplanning.core.similarity.vectors.Vectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cosine similarity between items according to their distributional vectors. Vectors are fetched and L2-normalized
+ * the first time an item is looked up, and copied into blocks of contiguous storage, so that cosine is reduced to a
+ * dot product between rows of a block. Items without a vector, or with a zero vector, have undefined similarity.
+ *
+ * Memory is bounded: once max_vectors items have been looked up, the stored vectors are dropped and filled again
+ * from scratch. Each call works with the vectors stored when it started, so dropping them is safe while other calls
+ * are in progress. Stored vectors take max_vectors * num_dimensions * 8 bytes, e.g. 300MB for the default maximum
+ * and 300 dimensions.
+ *
+ * Thread-safe.
+ */
+public class NormalizedVectorsSimilarity implements BatchSimilarity
+{
+	private static final int block_size = 1024; // vectors per block
+	private static final int default_max_vectors = 128 * block_size;
+	private static final int undefined = -1;
+
+	private final Vectors vectors;
+	private final int num_dimensions;
+	private final int max_vectors;
+	private volatile Store store = new Store();
+	private final static Logger log = LogManager.getLogger();
+
+	// Positions of looked up items and their normalized vectors
+	private static final class Store
+	{
+		private final Map<String, Integer> index = new ConcurrentHashMap<>();
+		private volatile double[][] blocks = new double[0][];
+		private int num_vectors = 0;
+	}
+
+	public NormalizedVectorsSimilarity(Vectors vectors)
+	{
+		this(vectors, default_max_vectors);
+	}
+
+	public NormalizedVectorsSimilarity(Vectors vectors, int max_vectors)
+	{
+		this.vectors = vectors;
+		this.num_dimensions = vectors.getNumDimensions();
+		this.max_vectors = max_vectors;
+	}
+
+	@Override
+	public OptionalDouble apply(String e1, String e2)
+	{
+		if (e1.equals(e2))
+			return OptionalDouble.of(1.0);
+
+		final Store s = getStore();
+		final int i1 = getIndex(s, e1);
+		final int i2 = getIndex(s, e2);
+		if (i1 == undefined || i2 == undefined)
+			return OptionalDouble.empty();
+
+		final double[][] blocks = s.blocks;
+		return OptionalDouble.of(dot(blocks[i1 / block_size], (i1 % block_size) * num_dimensions,
+				blocks[i2 / block_size], (i2 % block_size) * num_dimensions));
+	}
+
+	@Override
+	public double[] similarities(String item, List<String> items)
+	{
+		final double[] values = new double[items.size()];
+		final Store s = getStore();
+		final int i1 = getIndex(s, item);
+		if (i1 == undefined)
+		{
+			Arrays.fill(values, Double.NaN);
+			return values;
+		}
+
+		// Look up all items before reading blocks, which may be reallocated by lookups
+		final int[] indexes = items.stream()
+				.mapToInt(i -> getIndex(s, i))
+				.toArray();
+		final double[][] blocks = s.blocks;
+		final double[] block1 = blocks[i1 / block_size];
+		final int offset1 = (i1 % block_size) * num_dimensions;
+
+		for (int k = 0; k < values.length; ++k)
+		{
+			final int i2 = indexes[k];
+			if (i2 == undefined)
+				values[k] = Double.NaN;
+			else if (i2 == i1)
+				values[k] = 1.0;
+			else
+				values[k] = dot(block1, offset1, blocks[i2 / block_size], (i2 % block_size) * num_dimensions);
+		}
+
+		return values;
+	}
+
+	// Current store, replaced with an empty one if full
+	private Store getStore()
+	{
+		final Store s = store;
+		if (s.index.size() < max_vectors)
+			return s;
+
+		synchronized (this)
+		{
+			if (store == s)
+			{
+				log.debug("Dropping " + s.index.size() + " normalized vectors");
+				store = new Store();
+			}
+			return store;
+		}
+	}
+
+	private int getIndex(Store s, String item)
+	{
+		return s.index.computeIfAbsent(item, i -> add(s, i));
+	}
+
+	// Normalizes the vector of an item and stores it, returning its position
+	private int add(Store s, String item)
+	{
+		final Optional<double[]> ov = vectors.getVector(item);
+		if (!ov.isPresent() || ov.get().length != num_dimensions)
+			return undefined;
+
+		final double[] v = ov.get();
+		double norm = 0.0;
+		for (double x : v)
+			norm += x * x;
+		norm = Math.sqrt(norm);
+		if (norm == 0.0 || Double.isNaN(norm))
+			return undefined;
+
+		synchronized (s)
+		{
+			final int i = s.num_vectors++;
+			final int b = i / block_size;
+			if (b == s.blocks.length)
+			{
+				final double[][] new_blocks = Arrays.copyOf(s.blocks, b + 1);
+				new_blocks[b] = new double[block_size * num_dimensions];
+				s.blocks = new_blocks;
+			}
+
+			final double[] block = s.blocks[b];
+			final int offset = (i % block_size) * num_dimensions;
+			for (int d = 0; d < num_dimensions; ++d)
+				block[offset + d] = v[d] / norm;
+			return i;
+		}
+	}
+
+	// Dot product of two normalized vectors, unrolled with independent accumulators
+	private double dot(double[] a, int offset_a, double[] b, int offset_b)
+	{
+		double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+		int d = 0;
+		for (; d + 3 < num_dimensions; d += 4)
+		{
+			s0 += a[offset_a + d] * b[offset_b + d];
+			s1 += a[offset_a + d + 1] * b[offset_b + d + 1];
+			s2 += a[offset_a + d + 2] * b[offset_b + d + 2];
+			s3 += a[offset_a + d + 3] * b[offset_b + d + 3];
+		}
+		for (; d < num_dimensions; ++d)
+			s0 += a[offset_a + d] * b[offset_b + d];
+
+		// correct for floating-point rounding errors
+		return Math.max(-1.0, Math.min(1.0, (s0 + s1) + (s2 + s3)));
+	}
+}
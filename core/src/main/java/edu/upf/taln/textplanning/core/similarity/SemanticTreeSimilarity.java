@@ -30,8 +30,11 @@ public final class SemanticTreeSimilarity
 	 */
 	public double getSimilarity(SemanticTree t1, SemanticTree t2)
 	{
-		SemanticTreeProxy p1 = new SemanticTreeProxy(t1);
-		SemanticTreeProxy p2 = new SemanticTreeProxy(t2);
+		return getSimilarity(new SemanticTreeProxy(t1), new SemanticTreeProxy(t2));
+	}
+
+	double getSimilarity(SemanticTreeProxy p1, SemanticTreeProxy p2)
+	{
 		EditScore scorer = new SemanticTreeEditScorer(this, delta, p1, p2);
 //		Mapping mapping = new Mapping(p1, p2);
 		double distance = new TreeEditDistance(scorer).calc(p1, p2);//, mapping);
@@ -0,0 +1,356 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Wraps a similarity function between meanings with a cache of similarity values for unordered pairs of meanings.
+ * Values are kept off-heap, in a direct buffer or in a memory-mapped file which persists them between runs, so the
+ * same cache can be reused across all documents of a corpus.
+ *
+ * The cache is a set-associative table of fixed size: each pair is hashed to a 128-bit key which selects a bucket of
+ * a few slots, and when a bucket is full the least recently used slot is evicted. Keys are not checked against the
+ * original meanings, the probability of two pairs sharing the same 128-bit key being negligible. Keys are made of two
+ * 64-bit hashes with different seeds, calculated without allocating.
+ * A cache stored in a file keeps a fingerprint of the wrapped function, and is only reused with the same function.
+ * Similarity values are stored as floats, and the values returned on misses are rounded the same way so that results
+ * do not depend on the contents of the cache. Undefined similarities are cached as well.
+ *
+ * Thread-safe, buckets are protected by striped locks and the wrapped function is called outside of them.
+ */
+public class SimilarityCache implements BatchSimilarity
+{
+	private static final int magic = 0x54505343;
+	private static final int version = 2;
+	private static final int header_size = 64;
+	private static final int slot_size = 24; // key (2 longs), value (float), last access (int)
+	private static final int slots_per_bucket = 8;
+	private static final int bucket_size = slot_size * slots_per_bucket;
+	private static final int num_locks = 1024;
+	private static final long seed1 = 0x9E3779B97F4A7C15L;
+	private static final long seed2 = 0xC2B2AE3D27D4EB4FL;
+	private static final int missing_bits = 0x7fc00001; // a NaN other than Float.NaN, stored for undefined similarities
+	private static final float missing_value = Float.intBitsToFloat(missing_bits);
+
+	private final BiFunction<String, String, OptionalDouble> sim;
+	private final ByteBuffer table;
+	private final int num_buckets;
+	private final int fingerprint;
+	private final Object[] locks = new Object[num_locks];
+	private final AtomicInteger clock;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final static Logger log = LogManager.getLogger();
+
+	/**
+	 * Creates a cache held in memory, off-heap
+	 * @param max_bytes maximum size of the cache
+	 */
+	public SimilarityCache(BiFunction<String, String, OptionalDouble> sim, long max_bytes)
+	{
+		this.sim = sim;
+		fingerprint = 0;
+		num_buckets = getNumBuckets(max_bytes);
+		table = ByteBuffer.allocateDirect(header_size + num_buckets * bucket_size);
+		clock = new AtomicInteger();
+		writeHeader();
+		for (int i = 0; i < num_locks; ++i)
+			locks[i] = new Object();
+		log.info("Created similarity cache with " + num_buckets * slots_per_bucket + " slots");
+	}
+
+	/**
+	 * Creates a cache stored in a memory-mapped file. If the file is a cache created in a previous run for the same
+	 * function, its contents and size are kept, otherwise a new cache is created in the file.
+	 * @param max_bytes maximum size of a new cache
+	 * @param fingerprint identifies the wrapped function, e.g. a hash of the vectors it compares
+	 */
+	public SimilarityCache(BiFunction<String, String, OptionalDouble> sim, long max_bytes, Path file, int fingerprint)
+			throws IOException
+	{
+		this.sim = sim;
+		this.fingerprint = fingerprint;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE))
+		{
+			final boolean reuse = isCache(channel, fingerprint);
+			if (!reuse && channel.size() > 0)
+				log.info("Similarity cache in " + file + " was created for another function, discarding it");
+			if (reuse)
+			{
+				final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, header_size);
+				num_buckets = header.getInt(8);
+			}
+			else
+			{
+				num_buckets = getNumBuckets(max_bytes);
+				channel.truncate(0);
+			}
+
+			// Mapping past the end of the file grows it, filled with zeroes
+			table = channel.map(FileChannel.MapMode.READ_WRITE, 0, header_size + (long) num_buckets * bucket_size);
+			clock = new AtomicInteger(reuse ? table.getInt(16) : 0);
+			if (!reuse)
+				writeHeader();
+			log.info((reuse ? "Opened" : "Created") + " similarity cache with " + num_buckets * slots_per_bucket +
+					" slots in " + file);
+		}
+		for (int i = 0; i < num_locks; ++i)
+			locks[i] = new Object();
+	}
+
+	private static int getNumBuckets(long max_bytes)
+	{
+		final long num_buckets = (Math.min(max_bytes, Integer.MAX_VALUE) - header_size) / bucket_size;
+		if (num_buckets < 1)
+			throw new IllegalArgumentException("Cache size of " + max_bytes + " bytes is too small");
+		return (int) num_buckets;
+	}
+
+	private static boolean isCache(FileChannel channel, int fingerprint) throws IOException
+	{
+		if (channel.size() < header_size)
+			return false;
+		final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, header_size);
+		return header.getInt(0) == magic && header.getInt(4) == version && header.getInt(20) == fingerprint &&
+				channel.size() == header_size + (long) header.getInt(8) * header.getInt(12);
+	}
+
+	private void writeHeader()
+	{
+		table.putInt(0, magic);
+		table.putInt(4, version);
+		table.putInt(8, num_buckets);
+		table.putInt(12, bucket_size);
+		table.putInt(16, clock.get());
+		table.putInt(20, fingerprint);
+	}
+
+	@Override
+	public OptionalDouble apply(String m1, String m2)
+	{
+		if (m1.equals(m2))
+			return sim.apply(m1, m2);
+
+		final long k1 = hash(m1, m2, seed1);
+		final long k2 = hash(m1, m2, seed2) | 1L; // never 0, which marks empty slots
+		final float cached = get(k1, k2);
+		if (!isMissing(cached))
+			return toOptional(cached);
+
+		final OptionalDouble o = sim.apply(m1, m2);
+		final float value = o.isPresent() ? toFloat(o.getAsDouble()) : Float.NaN;
+		put(k1, k2, value);
+		return toOptional(value);
+	}
+
+	/**
+	 * Looks up all pairs in the cache first, and calculates missing values with a single call to the wrapped function
+	 * if it is a {@link BatchSimilarity}
+	 */
+	@Override
+	public double[] similarities(String item, List<String> items)
+	{
+		final double[] values = new double[items.size()];
+		final long[] keys1 = new long[items.size()];
+		final long[] keys2 = new long[items.size()];
+		final TIntArrayList missing = new TIntArrayList();
+		for (int i = 0; i < items.size(); ++i)
+		{
+			final String other = items.get(i);
+			if (item.equals(other))
+			{
+				missing.add(i);
+				continue;
+			}
+
+			keys1[i] = hash(item, other, seed1);
+			keys2[i] = hash(item, other, seed2) | 1L;
+			final float cached = get(keys1[i], keys2[i]);
+			if (isMissing(cached))
+				missing.add(i);
+			else
+				values[i] = cached;
+		}
+
+		if (missing.isEmpty())
+			return values;
+
+		final List<String> missing_items = new ArrayList<>(missing.size());
+		missing.forEach(i -> missing_items.add(items.get(i)));
+		final double[] calculated = sim instanceof BatchSimilarity ?
+				((BatchSimilarity) sim).similarities(item, missing_items) :
+				missing_items.stream()
+						.map(i -> sim.apply(item, i))
+						.mapToDouble(o -> o.orElse(Double.NaN))
+						.toArray();
+
+		for (int j = 0; j < missing.size(); ++j)
+		{
+			final int i = missing.getQuick(j);
+			if (item.equals(items.get(i)))
+				values[i] = calculated[j];
+			else
+			{
+				final float value = toFloat(calculated[j]);
+				put(keys1[i], keys2[i], value);
+				values[i] = value;
+			}
+		}
+
+		return values;
+	}
+
+	// Value of a key, or a missing value marker if the key is not in the cache
+	private float get(long k1, long k2)
+	{
+		final int bucket = getBucket(k1);
+		final int start = header_size + bucket * bucket_size;
+		synchronized (locks[bucket % num_locks])
+		{
+			for (int s = start; s < start + bucket_size; s += slot_size)
+			{
+				if (table.getLong(s + 8) == k2 && table.getLong(s) == k1)
+				{
+					hits.increment();
+					table.putInt(s + 20, clock.get());
+					return table.getFloat(s + 16);
+				}
+			}
+		}
+
+		misses.increment();
+		return missing_value;
+	}
+
+	private void put(long k1, long k2, float value)
+	{
+		final int bucket = getBucket(k1);
+		final int start = header_size + bucket * bucket_size;
+		synchronized (locks[bucket % num_locks])
+		{
+			// Use an empty slot, the slot of the same key if another thread stored it meanwhile, or evict the LRU slot
+			final int now = clock.incrementAndGet();
+			int selected = -1;
+			int max_age = Integer.MIN_VALUE;
+			for (int s = start; s < start + bucket_size; s += slot_size)
+			{
+				final long s2 = table.getLong(s + 8);
+				if (s2 == 0L || (s2 == k2 && table.getLong(s) == k1))
+				{
+					selected = s;
+					max_age = -1;
+					break;
+				}
+
+				final int age = now - table.getInt(s + 20); // subtraction keeps working when clock overflows
+				if (age > max_age)
+				{
+					max_age = age;
+					selected = s;
+				}
+			}
+			if (max_age >= 0)
+				evictions.increment();
+
+			table.putLong(selected, k1);
+			table.putLong(selected + 8, k2);
+			table.putFloat(selected + 16, value);
+			table.putInt(selected + 20, now);
+			table.putInt(16, now);
+		}
+	}
+
+	private int getBucket(long k1)
+	{
+		return (int) Math.floorMod(k1, (long) num_buckets);
+	}
+
+	private static boolean isMissing(float value)
+	{
+		return Float.floatToRawIntBits(value) == missing_bits;
+	}
+
+	/**
+	 * 64-bit hash of the chars of an unordered pair of meanings, in the style of MurmurHash3. The length of the first
+	 * meaning is mixed in as a value out of the range of chars, so that pairs cannot be confused by splitting them at
+	 * different positions.
+	 */
+	private static long hash(String m1, String m2, long seed)
+	{
+		final boolean ordered = m1.compareTo(m2) < 0;
+		final String first = ordered ? m1 : m2;
+		final String second = ordered ? m2 : m1;
+
+		long h = seed;
+		for (int i = 0; i < first.length(); ++i)
+			h = mix(h, first.charAt(i));
+		h = mix(h, 0x10000L + first.length());
+		for (int i = 0; i < second.length(); ++i)
+			h = mix(h, second.charAt(i));
+
+		// fmix64
+		h ^= first.length() + second.length();
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static long mix(long h, long value)
+	{
+		long k = value * 0x87c37b91114253d5L;
+		k = Long.rotateLeft(k, 31) * 0x4cf5ad432745937fL;
+		h ^= k;
+		return Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+	}
+
+	private static float toFloat(double value)
+	{
+		return Double.isNaN(value) ? Float.NaN : (float) value;
+	}
+
+	private static OptionalDouble toOptional(float value)
+	{
+		return Float.isNaN(value) ? OptionalDouble.empty() : OptionalDouble.of(value);
+	}
+
+	public long getHits() { return hits.sum(); }
+	public long getMisses() { return misses.sum(); }
+	public long getEvictions() { return evictions.sum(); }
+
+	public double getHitRate()
+	{
+		final long h = hits.sum();
+		final long total = h + misses.sum();
+		return total == 0 ? 0.0 : (double) h / total;
+	}
+
+	/**
+	 * Writes the contents of a cache stored in a file to disk, and logs usage stats
+	 */
+	public void flush()
+	{
+		if (table instanceof MappedByteBuffer)
+			((MappedByteBuffer) table).force();
+		log.info(String.format("Similarity cache: %d hits, %d misses (hit rate %.2f), %d evictions",
+				getHits(), getMisses(), getHitRate(), getEvictions()));
+	}
+}
@@ -0,0 +1,117 @@
+package edu.upf.taln.textplanning.core.similarity;
+
+import com.google.common.base.Stopwatch;
+import edu.upf.taln.textplanning.core.structures.SemanticSubgraph;
+import edu.upf.taln.textplanning.core.structures.SemanticTree;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Symmetric matrix of similarity values between all pairs of trees built from a collection of subgraphs.
+ * Similarities are calculated once, in parallel, and can then be shared by all stages of planning working on the
+ * same subgraphs or on subsets of them.
+ *
+ * Tree edit distance costs grow with the product of the sizes of the two trees, so pairs are handed out to workers
+ * from a shared queue sorted by decreasing cost, to avoid long pairs being left for the end of the calculation.
+ * Immutable class.
+ */
+public final class TreeSimilarityMatrix
+{
+	private final List<SemanticSubgraph> subgraphs;
+	private final List<SemanticTree> trees;
+	private final Map<SemanticSubgraph, Integer> index = new IdentityHashMap<>();
+	private final double[][] similarities;
+	private final static Logger log = LogManager.getLogger();
+
+	public TreeSimilarityMatrix(Collection<SemanticSubgraph> subgraphs, SemanticTreeSimilarity sim)
+	{
+		this(subgraphs, sim, ForkJoinPool.commonPool());
+	}
+
+	public TreeSimilarityMatrix(Collection<SemanticSubgraph> subgraphs, SemanticTreeSimilarity sim, ForkJoinPool pool)
+	{
+		Stopwatch timer = Stopwatch.createStarted();
+		this.subgraphs = new ArrayList<>(subgraphs);
+		this.trees = subgraphs.parallelStream()
+				.map(SemanticTree::new)
+				.collect(toList());
+		for (int i = 0; i < this.subgraphs.size(); ++i)
+			index.put(this.subgraphs.get(i), i);
+
+		final int n = trees.size();
+		similarities = new double[n][n];
+		for (int i = 0; i < n; ++i)
+			similarities[i][i] = 1.0;
+
+		// Proxies are immutable, build them once and share them between pairs
+		final SemanticTreeProxy[] proxies = trees.stream()
+				.map(SemanticTreeProxy::new)
+				.toArray(SemanticTreeProxy[]::new);
+
+		// Sort pairs by cost, encoded in the high bits of each key. Pair (i, j) with i < j is encoded as i * n + j.
+		final long[] pairs = new long[n * (n - 1) / 2];
+		int k = 0;
+		for (int i = 0; i < n; ++i)
+			for (int j = i + 1; j < n; ++j)
+			{
+				final long cost = Math.min(Integer.MAX_VALUE, (long) proxies[i].size() * proxies[j].size());
+				pairs[k++] = (cost << 32) | (i * n + j);
+			}
+		Arrays.sort(pairs);
+
+		// Workers take pairs from the end of the array, i.e. in decreasing order of cost
+		final AtomicInteger next = new AtomicInteger(pairs.length);
+		final List<RecursiveAction> workers = new ArrayList<>();
+		for (int w = 0; w < pool.getParallelism(); ++w)
+			workers.add(new RecursiveAction()
+			{
+				@Override
+				protected void compute()
+				{
+					int p;
+					while ((p = next.decrementAndGet()) >= 0)
+					{
+						final int pair = (int) pairs[p];
+						final int i = pair / n;
+						final int j = pair % n;
+						final double s = sim.getSimilarity(proxies[i], proxies[j]);
+						similarities[i][j] = s;
+						similarities[j][i] = s;
+					}
+				}
+			});
+		pool.invoke(new RecursiveAction()
+		{
+			@Override
+			protected void compute() { ForkJoinTask.invokeAll(workers); }
+		});
+
+		log.info("Calculated similarities between " + pairs.length + " pairs of trees in " + timer.stop());
+	}
+
+	public int size() { return trees.size(); }
+	public List<SemanticSubgraph> getSubgraphs() { return Collections.unmodifiableList(subgraphs); }
+	public SemanticSubgraph getSubgraph(int i) { return subgraphs.get(i); }
+	public SemanticTree getTree(int i) { return trees.get(i); }
+
+	/**
+	 * @return position of the subgraph in the matrix, or -1 if the matrix was not created for that same instance
+	 */
+	public int indexOf(SemanticSubgraph s)
+	{
+		return index.getOrDefault(s, -1);
+	}
+
+	public double getSimilarity(int i, int j)
+	{
+		return similarities[i][j];
+	}
+}
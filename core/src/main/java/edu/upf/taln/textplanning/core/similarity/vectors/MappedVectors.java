@@ -0,0 +1,534 @@
+package edu.upf.taln.textplanning.core.similarity.vectors;
+
+import com.google.common.base.Stopwatch;
+import edu.upf.taln.textplanning.core.utils.MappedStringIndex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Vectors stored in an indexed binary file which is memory-mapped and read with absolute gets only, so lookups are
+ * thread-safe, need no parsing and several processes can share the same page-cached copy of the file.
+ *
+ * File layout (big-endian):
+ *  - header: magic, version, number of vectors, number of dimensions, offset of keys and encoding of vectors
+ *  - slab with all vectors, one after another
+ *  - keys, as a {@link MappedStringIndex}
+ *
+ * Vectors are encoded as floats, half-precision floats, or bytes with a per-vector scale, the latter two taking half
+ * and a quarter of the space. Cosine similarity between encoded vectors is calculated with {@link #cosine(int, int)},
+ * without decoding them.
+ *
+ * Files are created from text or binary word2vec files with {@link #convert(Path, VectorType, Path, Encoding)}.
+ */
+public class MappedVectors extends Vectors
+{
+	public enum Encoding {Float32, Float16, Int8}
+
+	private static final int magic = 0x54505643;
+	private static final int version = 3; // version 2 files have no encoding and hold floats
+	private static final int first_version = 2; // version 1 files have a hash table of keys and are no longer read
+	private static final int header_size = 64;
+	private static final int accuracy_sample_size = 1000; // vectors compared with their encoded versions
+	private static final float[] half_to_float = new float[1 << 16];
+	static
+	{
+		for (int h = 0; h < half_to_float.length; ++h)
+			half_to_float[h] = toFloat((short) h);
+	}
+
+	private final int num_vectors;
+	private final int num_dimensions;
+	private final Encoding encoding;
+	private final int vector_bytes;
+	private final int vectors_per_segment;
+	private final ByteBuffer[] slab; // segments holding whole vectors, each within the 2GB limit of a mapped buffer
+	private final MappedStringIndex keys;
+	private final int unknown_index;
+	private final static Logger log = LogManager.getLogger();
+
+	public MappedVectors(Path vectors_path) throws IOException
+	{
+		log.info("Mapping vectors from " + vectors_path);
+		Stopwatch timer = Stopwatch.createStarted();
+
+		try (FileChannel channel = FileChannel.open(vectors_path, StandardOpenOption.READ))
+		{
+			final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, header_size);
+			final int file_version = header.getInt(4);
+			if (header.getInt(0) != magic || file_version > version)
+				throw new IOException("Not a mapped vectors file: " + vectors_path);
+			if (file_version < first_version)
+				throw new IOException("Mapped vectors file " + vectors_path + " has the old version " + file_version +
+						" layout, convert the original vectors again");
+
+			num_vectors = header.getInt(8);
+			num_dimensions = header.getInt(12);
+			final long keys_offset = header.getLong(16);
+			encoding = file_version == 2 ? Encoding.Float32 : Encoding.values()[header.getInt(24)];
+			vector_bytes = getVectorBytes(num_dimensions, encoding);
+
+			vectors_per_segment = Math.max(1, Integer.MAX_VALUE / Math.max(1, vector_bytes));
+			final int num_segments = (num_vectors + vectors_per_segment - 1) / vectors_per_segment;
+			slab = new ByteBuffer[num_segments];
+			for (int s = 0; s < num_segments; ++s)
+			{
+				final long start = header_size + (long) s * vectors_per_segment * vector_bytes;
+				final long size = Math.min(vectors_per_segment, num_vectors - (long) s * vectors_per_segment) * vector_bytes;
+				slab[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			}
+
+			keys = new MappedStringIndex(channel.map(FileChannel.MapMode.READ_ONLY, keys_offset,
+					channel.size() - keys_offset));
+		}
+
+		unknown_index = unknown_keys.stream()
+				.mapToInt(keys::find)
+				.filter(i -> i >= 0)
+				.findFirst().orElse(-1);
+
+		log.info("Mapped " + num_vectors + " " + encoding + " vectors with " + num_dimensions + " dimensions in " +
+				timer.stop());
+	}
+
+	/**
+	 * @return true if file is a mapped vectors file that can be read by this version of the class
+	 */
+	public static boolean isMappedVectors(Path file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file.toFile())))
+		{
+			final int file_version = in.readInt() == magic ? in.readInt() : -1;
+			return file_version >= first_version && file_version <= version;
+		}
+		catch (EOFException e)
+		{
+			return false;
+		}
+	}
+
+	private static int getVectorBytes(int num_dimensions, Encoding encoding)
+	{
+		switch (encoding)
+		{
+			case Float16:
+				return num_dimensions * Short.BYTES;
+			case Int8:
+				return Float.BYTES + num_dimensions; // scale followed by values
+			case Float32:
+			default:
+				return num_dimensions * Float.BYTES;
+		}
+	}
+
+	@Override
+	public boolean isDefinedFor(String item)
+	{
+		return keys.find(item) >= 0;
+	}
+
+	@Override
+	public Optional<double[]> getVector(String item)
+	{
+		final Optional<double[]> v = get(item);
+		if (v.isPresent())
+			return v;
+		else
+			return getUnknownVector(this::get);
+	}
+
+	@Override
+	public int getNumDimensions()
+	{
+		return num_dimensions;
+	}
+
+	public int getNumVectors() { return num_vectors; }
+	public Encoding getEncoding() { return encoding; }
+
+	/**
+	 * @return position of the vector of an item, or of the unknown vector if the item has none, or -1
+	 */
+	public int indexOf(String item)
+	{
+		final int index = keys.find(item);
+		return index >= 0 ? index : unknown_index;
+	}
+
+	private Optional<double[]> get(String item)
+	{
+		final int index = keys.find(item);
+		if (index < 0)
+			return Optional.empty();
+
+		final ByteBuffer segment = slab[index / vectors_per_segment];
+		final int offset = (index % vectors_per_segment) * vector_bytes;
+		final double[] vector = new double[num_dimensions];
+		switch (encoding)
+		{
+			case Float16:
+				for (int i = 0; i < num_dimensions; ++i)
+					vector[i] = half_to_float[segment.getShort(offset + i * Short.BYTES) & 0xFFFF];
+				break;
+			case Int8:
+			{
+				final float scale = segment.getFloat(offset);
+				for (int i = 0; i < num_dimensions; ++i)
+					vector[i] = segment.get(offset + Float.BYTES + i) * scale;
+				break;
+			}
+			case Float32:
+			default:
+				for (int i = 0; i < num_dimensions; ++i)
+					vector[i] = segment.getFloat(offset + i * Float.BYTES);
+		}
+
+		return Optional.of(vector);
+	}
+
+	/**
+	 * Cosine similarity between the vectors at two positions, calculated on encoded values. Bytes are multiplied as
+	 * integers, and their scales cancel out.
+	 * @return NaN if any of the vectors is zero
+	 */
+	public double cosine(int i, int j)
+	{
+		final ByteBuffer s1 = slab[i / vectors_per_segment];
+		final ByteBuffer s2 = slab[j / vectors_per_segment];
+		final int o1 = (i % vectors_per_segment) * vector_bytes;
+		final int o2 = (j % vectors_per_segment) * vector_bytes;
+
+		switch (encoding)
+		{
+			case Int8:
+			{
+				long dot = 0, norm1 = 0, norm2 = 0;
+				for (int d = Float.BYTES; d < vector_bytes; ++d)
+				{
+					final int x1 = s1.get(o1 + d);
+					final int x2 = s2.get(o2 + d);
+					dot += x1 * x2;
+					norm1 += x1 * x1;
+					norm2 += x2 * x2;
+				}
+				return cosine(dot, norm1, norm2);
+			}
+			case Float16:
+			{
+				double dot = 0.0, norm1 = 0.0, norm2 = 0.0;
+				for (int d = 0; d < vector_bytes; d += Short.BYTES)
+				{
+					final double x1 = half_to_float[s1.getShort(o1 + d) & 0xFFFF];
+					final double x2 = half_to_float[s2.getShort(o2 + d) & 0xFFFF];
+					dot += x1 * x2;
+					norm1 += x1 * x1;
+					norm2 += x2 * x2;
+				}
+				return cosine(dot, norm1, norm2);
+			}
+			case Float32:
+			default:
+			{
+				double dot = 0.0, norm1 = 0.0, norm2 = 0.0;
+				for (int d = 0; d < vector_bytes; d += Float.BYTES)
+				{
+					final double x1 = s1.getFloat(o1 + d);
+					final double x2 = s2.getFloat(o2 + d);
+					dot += x1 * x2;
+					norm1 += x1 * x1;
+					norm2 += x2 * x2;
+				}
+				return cosine(dot, norm1, norm2);
+			}
+		}
+	}
+
+	private static double cosine(double dot, double norm1, double norm2)
+	{
+		final double magnitude = Math.sqrt(norm1) * Math.sqrt(norm2);
+		if (magnitude == 0.0)
+			return Double.NaN;
+		return Math.max(-1.0, Math.min(1.0, dot / magnitude));
+	}
+
+	/**
+	 * Converts a file of vectors in text (GloVe or word2vec) or binary word2vec format into a mapped vectors file of
+	 * floats.
+	 */
+	public static void convert(Path input, VectorType type, Path output) throws IOException
+	{
+		convert(input, type, output, Encoding.Float32);
+	}
+
+	/**
+	 * Converts a file of vectors in text (GloVe or word2vec) or binary word2vec format into a mapped vectors file.
+	 * Vectors are streamed into the output file, only keys are kept in memory.
+	 * Unless vectors are stored as floats, the accuracy of the encoding is reported by comparing cosine similarities
+	 * between a sample of the original vectors with those between the encoded vectors.
+	 */
+	public static void convert(Path input, VectorType type, Path output, Encoding encoding) throws IOException
+	{
+		if (type != VectorType.Text_Glove && type != VectorType.Text_Word2vec && type != VectorType.Binary_Word2vec)
+			throw new IOException("VectorType " + type + " not supported");
+
+		log.info("Converting " + type + " vectors from " + input + " to " + encoding + " in " + output);
+		Stopwatch timer = Stopwatch.createStarted();
+
+		final List<String> keys = new ArrayList<>();
+		final Map<String, Integer> index = new HashMap<>();
+		final Encoder encoder = new Encoder(encoding);
+		int num_dimensions;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output.toFile()), 1 << 20)))
+		{
+			out.write(new byte[header_size]); // placeholder, header is written at the end
+
+			if (type == VectorType.Binary_Word2vec)
+				num_dimensions = convertBinary(input, out, encoder, keys, index);
+			else
+				num_dimensions = convertText(input, type, out, encoder, keys, index);
+
+			// Keys
+			MappedStringIndex.write(out, keys);
+			out.flush();
+
+			final long keys_offset = header_size + (long) keys.size() * getVectorBytes(num_dimensions, encoding);
+			try (RandomAccessFile file = new RandomAccessFile(output.toFile(), "rw"))
+			{
+				file.writeInt(magic);
+				file.writeInt(version);
+				file.writeInt(keys.size());
+				file.writeInt(num_dimensions);
+				file.writeLong(keys_offset);
+				file.writeInt(encoding.ordinal());
+			}
+		}
+
+		log.info("Converted " + index.size() + " vectors with " + num_dimensions + " dimensions in " + timer.stop());
+		if (encoding != Encoding.Float32)
+			encoder.reportAccuracy();
+	}
+
+	private static int convertText(Path input, VectorType type, DataOutputStream out, Encoder encoder,
+	                               List<String> keys, Map<String, Integer> index) throws IOException
+	{
+		int num_dimensions = -1;
+		int line_counter = 0;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(input.toFile()),
+				StandardCharsets.UTF_8), 1 << 20))
+		{
+			String line;
+			if (type == VectorType.Text_Glove && (line = br.readLine()) != null)
+				num_dimensions = Integer.parseInt(line.trim().split(" ")[1]);
+
+			while ((line = br.readLine()) != null)
+			{
+				++line_counter;
+				final String[] columns = line.trim().split(" ");
+				if (num_dimensions < 0)
+					num_dimensions = columns.length - 1;
+				if (columns.length != num_dimensions + 1)
+				{
+					log.error("Cannot parse line " + line_counter + ": \"" + line + "\"");
+					continue;
+				}
+
+				final double[] vector = new double[num_dimensions];
+				for (int i = 0; i < num_dimensions; ++i)
+					vector[i] = Double.parseDouble(columns[i + 1]);
+				encoder.write(vector, out);
+				addKey(columns[0], keys, index);
+
+				if (line_counter % 100000 == 0)
+					log.info(line_counter + " lines converted");
+			}
+		}
+
+		return Math.max(0, num_dimensions);
+	}
+
+	private static int convertBinary(Path input, DataOutputStream out, Encoder encoder, List<String> keys,
+	                                 Map<String, Integer> index) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input.toFile()), 1 << 20)))
+		{
+			final String[] header = readToken(in, '\n').trim().split(" ");
+			final int num_vectors = Integer.parseInt(header[0]);
+			final int num_dimensions = Integer.parseInt(header[1]);
+			final double[] vector = new double[num_dimensions];
+
+			for (int i = 0; i < num_vectors; ++i)
+			{
+				final String key = readToken(in, ' ').trim(); // trims newline left after previous vector, if any
+				for (int j = 0; j < num_dimensions; ++j)
+					vector[j] = Float.intBitsToFloat(Integer.reverseBytes(in.readInt())); // little-endian floats
+				encoder.write(vector, out);
+				addKey(key, keys, index);
+
+				if ((i + 1) % 100000 == 0)
+					log.info((i + 1) + " vectors converted out of " + num_vectors);
+			}
+
+			return num_dimensions;
+		}
+	}
+
+	/**
+	 * Writes encoded vectors, keeping the first ones and their decoded versions to report accuracy
+	 */
+	private static class Encoder
+	{
+		private final Encoding encoding;
+		private final List<double[]> originals = new ArrayList<>();
+		private final List<double[]> decoded = new ArrayList<>();
+
+		Encoder(Encoding encoding) { this.encoding = encoding; }
+
+		void write(double[] vector, DataOutputStream out) throws IOException
+		{
+			final boolean sample = originals.size() < accuracy_sample_size;
+			final double[] d = sample ? new double[vector.length] : null;
+			switch (encoding)
+			{
+				case Float16:
+					for (int i = 0; i < vector.length; ++i)
+					{
+						final short h = toHalf((float) vector[i]);
+						out.writeShort(h);
+						if (sample)
+							d[i] = half_to_float[h & 0xFFFF];
+					}
+					break;
+				case Int8:
+				{
+					double max = 0.0;
+					for (double x : vector)
+						max = Math.max(max, Math.abs(x));
+					final float scale = (float) (max / Byte.MAX_VALUE);
+					out.writeFloat(scale);
+					for (int i = 0; i < vector.length; ++i)
+					{
+						final byte b = scale == 0.0f ? 0 : (byte) Math.round(vector[i] / scale);
+						out.writeByte(b);
+						if (sample)
+							d[i] = b * scale;
+					}
+					break;
+				}
+				case Float32:
+				default:
+					for (int i = 0; i < vector.length; ++i)
+					{
+						out.writeFloat((float) vector[i]);
+						if (sample)
+							d[i] = (float) vector[i];
+					}
+			}
+
+			if (sample)
+			{
+				originals.add(vector.clone());
+				decoded.add(d);
+			}
+		}
+
+		// Compares similarities between all pairs of sampled vectors, before and after encoding
+		void reportAccuracy()
+		{
+			final int n = originals.size();
+			final double[] errors = IntStream.range(0, n)
+					.parallel()
+					.boxed()
+					.flatMapToDouble(i -> IntStream.range(i + 1, n)
+							.mapToDouble(j -> Math.abs(cosine(originals.get(i), originals.get(j)) -
+									cosine(decoded.get(i), decoded.get(j)))))
+					.filter(e -> !Double.isNaN(e))
+					.sorted()
+					.toArray();
+			if (errors.length == 0)
+				return;
+
+			log.info(String.format("%s encoding accuracy over %d pairs of vectors: mean cosine error %.2e, " +
+					"95th percentile %.2e, max %.2e", encoding, errors.length, Arrays.stream(errors).average().orElse(0.0),
+					errors[(int) (0.95 * (errors.length - 1))], errors[errors.length - 1]));
+		}
+
+		private static double cosine(double[] v1, double[] v2)
+		{
+			double dot = 0.0, norm1 = 0.0, norm2 = 0.0;
+			for (int i = 0; i < v1.length; ++i)
+			{
+				dot += v1[i] * v2[i];
+				norm1 += v1[i] * v1[i];
+				norm2 += v2[i] * v2[i];
+			}
+			return MappedVectors.cosine(dot, norm1, norm2);
+		}
+	}
+
+	// IEEE 754 half-precision, rounding to nearest even
+	private static short toHalf(float f)
+	{
+		final int bits = Float.floatToIntBits(f);
+		final int sign = (bits >>> 16) & 0x8000;
+		final int abs = bits & 0x7FFFFFFF;
+
+		if (abs >= 0x7F800000) // infinity or NaN
+			return (short) (sign | 0x7C00 | (abs > 0x7F800000 ? 0x200 : 0));
+		if (abs >= 0x477FF000) // rounds to infinity
+			return (short) (sign | 0x7C00);
+		if (abs < 0x38800000) // subnormal or zero
+			return (short) (sign | Math.round(Float.intBitsToFloat(abs) * 0x1p24f));
+
+		int h = (((abs >>> 23) - 112) << 10) | ((abs & 0x7FFFFF) >>> 13);
+		final int rest = abs & 0x1FFF;
+		if (rest > 0x1000 || (rest == 0x1000 && (h & 1) != 0))
+			++h; // may carry into the exponent, which is still correct
+		return (short) (sign | h);
+	}
+
+	private static float toFloat(short half)
+	{
+		final int h = half & 0xFFFF;
+		final int sign = (h & 0x8000) << 16;
+		final int exponent = (h >>> 10) & 0x1F;
+		final int mantissa = h & 0x3FF;
+
+		if (exponent == 0) // subnormal or zero
+			return (sign != 0 ? -1.0f : 1.0f) * mantissa * 0x1p-24f;
+		if (exponent == 0x1F) // infinity or NaN
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+	}
+
+	private static String readToken(DataInputStream in, char delimiter) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1 && b != delimiter)
+			bytes.write(b);
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static void addKey(String key, List<String> keys, Map<String, Integer> index)
+	{
+		if (index.containsKey(key))
+			log.warn("Duplicate key " + key);
+		index.put(key, keys.size());
+		keys.add(key);
+	}
+}
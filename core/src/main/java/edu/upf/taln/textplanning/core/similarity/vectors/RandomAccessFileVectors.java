@@ -1,64 +1,139 @@
 package edu.upf.taln.textplanning.core.similarity.vectors;
 
 import com.google.common.base.Stopwatch;
-import de.jungblut.glove.GloveRandomAccessReader;
-import de.jungblut.glove.impl.GloveBinaryRandomAccessReader;
-import de.jungblut.math.DoubleVector;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.jungblut.glove.impl.GloveBinaryWriter;
+import de.jungblut.glove.util.WritableUtils;
+import gnu.trove.map.hash.TObjectLongHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * Vectors in the binary folder format of the random access glove library
+ * (https://github.com/thomasjungblut/glove/blob/master/README.md): a dictionary file with the offset of each vector
+ * and a file with all vectors, as floats.
+ *
+ * Vectors are read with positional reads on a shared file channel, so lookups from parallel streams do not wait for
+ * each other, and the most recently used ones are kept in a bounded cache. The unknown vector is looked up once, and
+ * returned for all items not in the dictionary without reading the file.
+ */
 public class RandomAccessFileVectors extends Vectors
 {
-	private final GloveRandomAccessReader db;
+	private static final int cache_size = 10000; // number of vectors
+
+	private final TObjectLongHashMap<String> offsets = new TObjectLongHashMap<>();
+	private final FileChannel channel;
 	private final int num_dimensions;
+	private final Cache<String, double[]> cache;
+	private final Optional<double[]> unknown;
 	private final static Logger log = LogManager.getLogger();
 
 	public RandomAccessFileVectors(Path vectors_path, int num_dimensions) throws IOException
 	{
-		this.num_dimensions = num_dimensions;
-
 		log.info("Loading vectors from " + vectors_path);
 		Stopwatch timer = Stopwatch.createStarted();
-		db = new GloveBinaryRandomAccessReader(vectors_path);
-		log.info("Loading took " + timer.stop());
+
+		final long block_size = readDictionary(vectors_path.resolve(GloveBinaryWriter.DICT_FILE));
+		this.num_dimensions = block_size > 0 ? (int) (block_size / Float.BYTES) : num_dimensions;
+		if (this.num_dimensions != num_dimensions)
+			log.warn("Vectors have " + this.num_dimensions + " dimensions, expected " + num_dimensions);
+
+		channel = FileChannel.open(vectors_path.resolve(GloveBinaryWriter.VECTORS_FILE), StandardOpenOption.READ);
+		cache = CacheBuilder.newBuilder()
+				.maximumSize(cache_size)
+				.concurrencyLevel(Runtime.getRuntime().availableProcessors())
+				.build();
+		unknown = getUnknownVector(this::read);
+
+		log.info("Loaded dictionary of " + offsets.size() + " vectors in " + timer.stop());
+	}
+
+	// Reads offsets of vectors, returns the size in bytes of each vector
+	private long readDictionary(Path dictionary) throws IOException
+	{
+		long previous = -1;
+		long block_size = -1;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dictionary.toFile()),
+				1 << 20)))
+		{
+			while (true)
+			{
+				final String item = in.readUTF();
+				final long offset = WritableUtils.readVLong(in);
+				if (previous >= 0)
+				{
+					if (block_size < 0)
+						block_size = offset - previous;
+					else if (offset - previous != block_size)
+						throw new IOException("Corrupted dictionary " + dictionary + ", vectors of different size");
+				}
+				previous = offset;
+				offsets.put(item, offset);
+			}
+		}
+		catch (EOFException e)
+		{
+			// end of dictionary
+		}
+
+		return block_size;
 	}
 
 	@Override
 	public boolean isDefinedFor(String item)
 	{
-		return db.contains(item);
+		return offsets.containsKey(item);
 	}
 
 	@Override
 	public Optional<double[]> getVector(String item)
 	{
+		if (!offsets.containsKey(item))
+			return unknown;
+		return read(item);
+	}
+
+	private Optional<double[]> read(String item)
+	{
+		if (!offsets.containsKey(item))
+			return Optional.empty();
+
 		try
 		{
-			final Optional<double[]> v = Optional.ofNullable(db.get(item)).map(DoubleVector::toArray);
-			if (v.isPresent())
-				return v;
-			return getUnknownVector((i) -> {
-				try
-				{
-					return Optional.ofNullable(db.get(item)).map(DoubleVector::toArray);
-				}
-				catch (IOException e)
-				{
-					return Optional.empty();
-				}
-			});
+			return Optional.of(cache.get(item, () -> readVector(offsets.get(item))));
 		}
-		catch (IOException e)
+		catch (ExecutionException e)
 		{
-			log.error("Error reading vector: " + e);
+			log.error("Error reading vector for " + item + ": " + e.getCause());
 			return Optional.empty();
 		}
 	}
 
+	private double[] readVector(long offset) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate(num_dimensions * Float.BYTES);
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, offset + buffer.position()) < 0)
+				throw new EOFException("Vector at offset " + offset + " goes past the end of file");
+		}
+		buffer.flip();
+
+		final double[] vector = new double[num_dimensions];
+		for (int i = 0; i < num_dimensions; ++i)
+			vector[i] = buffer.getFloat();
+		return vector;
+	}
+
 	@Override
 	public int getNumDimensions()
 	{
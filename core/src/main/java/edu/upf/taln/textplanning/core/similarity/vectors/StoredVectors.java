@@ -0,0 +1,36 @@
+package edu.upf.taln.textplanning.core.similarity.vectors;
+
+import java.util.Optional;
+
+/**
+ * Vectors looked up in a {@link VectorsStore}, and calculated with other vectors when missing from it.
+ */
+public class StoredVectors extends Vectors
+{
+	private final VectorsStore store;
+	private final Vectors source;
+
+	public StoredVectors(VectorsStore store, Vectors source)
+	{
+		this.store = store;
+		this.source = source;
+	}
+
+	@Override
+	public boolean isDefinedFor(String item)
+	{
+		return getVector(item).isPresent();
+	}
+
+	@Override
+	public int getNumDimensions()
+	{
+		return store.getNumDimensions();
+	}
+
+	@Override
+	public Optional<double[]> getVector(String item)
+	{
+		return store.get(item, source::getVector);
+	}
+}
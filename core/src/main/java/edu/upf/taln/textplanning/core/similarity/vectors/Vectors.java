@@ -12,10 +12,12 @@ public abstract class Vectors
 	public abstract int getNumDimensions();
 	public abstract Optional<double[]> getVector(String item);
 
+	// Keys used by vector files for unknown items
+	protected static final List<String> unknown_keys = Arrays.asList("UNKNOWN", "UUUNKKK", "UNK", "*UNKNOWN*", "<unk>");
+
 	protected static Optional<double[]> getUnknownVector(Function<String, Optional<double []>> f)
 	{
-		final List<String> unknown = Arrays.asList("UNKNOWN", "UUUNKKK", "UNK", "*UNKNOWN*", "<unk>");
-		return 	unknown.stream()
+		return 	unknown_keys.stream()
 				.map(f)
 				.filter(Optional::isPresent)
 				.map(Optional::get)
@@ -23,5 +25,6 @@ public abstract class Vectors
 	}
 
 	// Text_Glove -> with header containing num dimensions, Text_Word2Vec -> without header
-	public enum VectorType {Text_Glove, Text_Word2vec, Binary_Word2vec, Binary_RandomAccess, SenseGlosses, Random}
+	// Binary_Mapped -> indexed binary file created with MappedVectors.convert
+	public enum VectorType {Text_Glove, Text_Word2vec, Binary_Word2vec, Binary_RandomAccess, Binary_Mapped, SenseGlosses, Random}
 }
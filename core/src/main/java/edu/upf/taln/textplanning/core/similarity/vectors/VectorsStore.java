@@ -0,0 +1,265 @@
+package edu.upf.taln.textplanning.core.similarity.vectors;
+
+import com.google.common.base.Stopwatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Persistent store of precomputed vectors, e.g. of vectors calculated from the glosses of meanings, which never change
+ * from one document to another. Vectors missing from the store are calculated on demand and appended to its file,
+ * so the store fills up lazily as documents are processed, or in bulk by looking up a list of items.
+ *
+ * The file is an append-only sequence of records, each with an item, a flag telling if the item has a vector, and the
+ * vector as floats. Records in the file when the store is opened are memory-mapped, and can be shared by several
+ * processes through the page cache. Records appended afterwards are kept in memory until the store is opened again.
+ * Appends are done under a file lock, so several processes can fill the same store.
+ *
+ * Thread-safe.
+ */
+public class VectorsStore implements Closeable
+{
+	private static final int magic = 0x54505653;
+	private static final int version = 1;
+	private static final int header_size = 16;
+	private static final long max_segment_size = 1L << 30;
+
+	private final Path file;
+	private final FileChannel channel;
+	private final int num_dimensions;
+	private final int fingerprint;
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	private final List<Long> segment_starts = new ArrayList<>();
+	private final Map<String, Long> positions = new ConcurrentHashMap<>(); // position of vector in file, -1 if undefined
+	private final Map<String, Optional<double[]>> added = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final static Logger log = LogManager.getLogger();
+
+	/**
+	 * @param fingerprint identifies the vectors that fill the store, e.g. a hash of the files they are calculated from.
+	 *                    Opening a store filled with other vectors fails.
+	 */
+	public VectorsStore(Path file, int num_dimensions, int fingerprint) throws IOException
+	{
+		log.info("Opening vectors store " + file);
+		final Stopwatch timer = Stopwatch.createStarted();
+		this.file = file;
+		this.num_dimensions = num_dimensions;
+		this.fingerprint = fingerprint;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		// Lock while reading, so that records being appended by other processes are not mistaken for truncated ones
+		final FileLock lock = channel.lock();
+		try
+		{
+			if (channel.size() == 0)
+			{
+				final ByteBuffer header = ByteBuffer.allocate(header_size);
+				header.putInt(magic).putInt(version).putInt(num_dimensions).putInt(fingerprint).flip();
+				channel.write(header, 0);
+			}
+			else
+				checkHeader();
+
+			final long end = readIndex();
+			if (end < channel.size())
+			{
+				log.warn("Discarding truncated record at the end of " + file);
+				channel.truncate(end);
+			}
+		}
+		catch (IOException e)
+		{
+			channel.close(); // also releases the lock
+			throw e;
+		}
+		finally
+		{
+			if (lock.isValid())
+				lock.release();
+		}
+
+		log.info("Opened store with " + positions.size() + " items in " + timer.stop());
+	}
+
+	private void checkHeader() throws IOException
+	{
+		final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, header_size);
+		if (header.getInt(0) != magic || header.getInt(4) != version)
+			throw new IOException("Not a vectors store: " + file);
+		if (header.getInt(8) != num_dimensions)
+			throw new IOException("Vectors store " + file + " has " + header.getInt(8) + " dimensions, expected " +
+					num_dimensions);
+		if (header.getInt(12) != fingerprint)
+			throw new IOException("Vectors store " + file + " was filled with different vectors");
+	}
+
+	// Reads items and positions of records, maps them in segments and returns the end of the last complete record
+	private long readIndex() throws IOException
+	{
+		final long size = channel.size();
+		long position = header_size;
+		long segment_start = header_size;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file.toFile()), 1 << 20)))
+		{
+			in.skipBytes(header_size);
+			while (position < size)
+			{
+				final int key_length = in.readInt();
+				if (key_length < 0 || position + Integer.BYTES + key_length >= size)
+					break;
+				final byte[] key = new byte[key_length];
+				in.readFully(key);
+				final boolean defined = in.readBoolean();
+				final long vector_position = position + Integer.BYTES + key_length + 1;
+				final long record_end = vector_position + (defined ? (long) num_dimensions * Float.BYTES : 0);
+				if (record_end > size)
+					break;
+				if (defined)
+					in.skipBytes(num_dimensions * Float.BYTES);
+
+				if (record_end - segment_start > max_segment_size)
+				{
+					mapSegment(segment_start, position);
+					segment_start = position;
+				}
+				positions.put(new String(key, StandardCharsets.UTF_8), defined ? vector_position : -1L);
+				position = record_end;
+			}
+		}
+		catch (EOFException e)
+		{
+			// truncated record
+		}
+
+		if (position > segment_start)
+			mapSegment(segment_start, position);
+		return position;
+	}
+
+	private void mapSegment(long start, long end) throws IOException
+	{
+		segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+		segment_starts.add(start);
+	}
+
+	public int getNumDimensions() { return num_dimensions; }
+	public int getFingerprint() { return fingerprint; }
+
+	public boolean contains(String item)
+	{
+		return positions.containsKey(item) || added.containsKey(item);
+	}
+
+	/**
+	 * @param compute calculates the vector of an item missing from the store
+	 */
+	public Optional<double[]> get(String item, Function<String, Optional<double[]>> compute)
+	{
+		final Long position = positions.get(item);
+		if (position != null)
+		{
+			hits.increment();
+			return position < 0 ? Optional.empty() : Optional.of(read(position));
+		}
+
+		final Optional<double[]> stored = added.get(item);
+		if (stored != null)
+		{
+			hits.increment();
+			return stored;
+		}
+
+		misses.increment();
+		return added.computeIfAbsent(item, i -> append(i, compute.apply(i)));
+	}
+
+	private double[] read(long position)
+	{
+		int s = segments.size() - 1;
+		while (segment_starts.get(s) > position)
+			--s;
+		final MappedByteBuffer segment = segments.get(s);
+		final int offset = (int) (position - segment_starts.get(s));
+
+		final double[] vector = new double[num_dimensions];
+		for (int i = 0; i < num_dimensions; ++i)
+			vector[i] = segment.getFloat(offset + i * Float.BYTES);
+		return vector;
+	}
+
+	// Appends a vector to the file and returns it rounded to floats, as it will be read from the file in the future
+	private Optional<double[]> append(String item, Optional<double[]> vector)
+	{
+		final boolean defined = vector.isPresent() && vector.get().length == num_dimensions;
+		final byte[] key = item.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + key.length + 1 +
+				(defined ? num_dimensions * Float.BYTES : 0));
+		record.putInt(key.length).put(key).put((byte) (defined ? 1 : 0));
+
+		double[] rounded = null;
+		if (defined)
+		{
+			rounded = new double[num_dimensions];
+			for (int i = 0; i < num_dimensions; ++i)
+			{
+				final float f = (float) vector.get()[i];
+				record.putFloat(f);
+				rounded[i] = f;
+			}
+		}
+		record.flip();
+
+		synchronized (this)
+		{
+			try
+			{
+				final FileLock lock = channel.lock();
+				try
+				{
+					final long end = channel.size();
+					while (record.hasRemaining())
+						channel.write(record, end + record.position());
+				}
+				finally
+				{
+					lock.release();
+				}
+			}
+			catch (IOException e)
+			{
+				log.error("Cannot append vector for " + item + " to " + file + ": " + e);
+			}
+		}
+
+		return Optional.ofNullable(rounded);
+	}
+
+	public long getHits() { return hits.sum(); }
+	public long getMisses() { return misses.sum(); }
+
+	@Override
+	public void close() throws IOException
+	{
+		log.info("Vectors store " + file + ": " + hits.sum() + " hits, " + misses.sum() + " misses, " +
+				(positions.size() + added.size()) + " items");
+		channel.close();
+	}
+}
@@ -1,46 +1,64 @@
 package edu.upf.taln.textplanning.core.similarity.vectors;
 
-import com.google.common.base.Stopwatch;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 
-//import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
-//import org.deeplearning4j.models.word2vec.Word2Vec;
-
 /**
- *
+ * Binary word2vec vectors, served from a mapped vectors file created next to the original file the first time it
+ * is loaded, or whenever the original file is newer or the mapped file has a layout that can no longer be read.
+ * The mapped file is converted into a temporary file and then moved into place atomically, so that an interrupted
+ * conversion or several processes converting at once never leave an incomplete mapped file.
  */
 public class Word2VecVectors extends Vectors
 {
-//	private final Word2Vec vectors;
+	private final MappedVectors vectors;
+	private static final String mapped_suffix = ".mapped";
 	private final static Logger log = LogManager.getLogger();
 
-	public Word2VecVectors(Path vectors_file)
+	public Word2VecVectors(Path vectors_file) throws IOException
 	{
-		log.info("Loading vectors from " + vectors_file);
-		Stopwatch timer = Stopwatch.createStarted();
-//		vectors = WordVectorSerializer.readWord2VecModel(vectors_file.toFile());
-		log.info("Loading took " + timer.stop());
+		final Path mapped_file = vectors_file.resolveSibling(vectors_file.getFileName() + mapped_suffix);
+		if (!Files.exists(mapped_file) ||
+				Files.getLastModifiedTime(mapped_file).compareTo(Files.getLastModifiedTime(vectors_file)) < 0 ||
+				!MappedVectors.isMappedVectors(mapped_file))
+		{
+			log.info("Creating mapped vectors file " + mapped_file);
+			final Path temp_file = Files.createTempFile(mapped_file.toAbsolutePath().getParent(),
+					mapped_file.getFileName().toString(), ".tmp");
+			try
+			{
+				MappedVectors.convert(vectors_file, VectorType.Binary_Word2vec, temp_file);
+				Files.move(temp_file, mapped_file, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally
+			{
+				Files.deleteIfExists(temp_file);
+			}
+		}
+		vectors = new MappedVectors(mapped_file);
 	}
 
 	@Override
 	public boolean isDefinedFor(String e)
 	{
-		return false; //vectors.hasWord(e);
+		return vectors.isDefinedFor(e);
 	}
 
 	@Override
 	public Optional<double[]> getVector(String item)
 	{
-		return Optional.empty();
+		return vectors.getVector(item);
 	}
 
 	@Override
 	public int getNumDimensions()
 	{
-		return 0;
+		return vectors.getNumDimensions();
 	}
 }
@@ -0,0 +1,163 @@
+package edu.upf.taln.textplanning.core.structures;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table of candidates of a document with int ids for candidates, meanings and mentions. Candidate ids are positions in
+ * the collection the table is created from, meanings and mentions are numbered in order of first appearance.
+ * The meaning, mention and weight of each candidate are kept in parallel primitive arrays, and the candidates of each
+ * meaning and mention are precomputed, so lookups take constant time and no boxed collections are built.
+ * The table is created once per document and shared by ranking, filters, matrix construction and optimization, so that
+ * all of them use the same ids.
+ *
+ * Weights set through the table are also set to the candidate objects.
+ */
+public class CandidateTable
+{
+	private final List<Candidate> candidates;
+	private final List<Meaning> meanings = new ArrayList<>();
+	private final List<Mention> mentions = new ArrayList<>();
+	private final List<String> references = new ArrayList<>();
+	private final TObjectIntHashMap<Candidate> candidate_ids;
+	private final TObjectIntHashMap<String> meaning_ids = new TObjectIntHashMap<>(16, 0.5f, -1);
+	private final TObjectIntHashMap<Mention> mention_ids = new TObjectIntHashMap<>(16, 0.5f, -1);
+	private final int[] candidate_meanings; // [candidate] -> meaning id
+	private final int[] candidate_mentions; // [candidate] -> mention id
+	private final double[] weights; // [candidate] -> weight
+	private final int[][] meaning_candidates; // [meaning] -> candidate ids
+	private final int[][] mention_candidates; // [mention] -> candidate ids
+	private final int[][] meaning_mentions; // [meaning] -> sorted distinct mention ids
+
+	public CandidateTable(Collection<Candidate> candidates)
+	{
+		this.candidates = new ArrayList<>(candidates);
+		final int num_candidates = this.candidates.size();
+		candidate_ids = new TObjectIntHashMap<>(num_candidates, 0.5f, -1);
+		candidate_meanings = new int[num_candidates];
+		candidate_mentions = new int[num_candidates];
+		weights = new double[num_candidates];
+
+		final List<TIntArrayList> meaning_lists = new ArrayList<>();
+		final List<TIntArrayList> mention_lists = new ArrayList<>();
+		for (int c = 0; c < num_candidates; ++c)
+		{
+			final Candidate candidate = this.candidates.get(c);
+			candidate_ids.putIfAbsent(candidate, c);
+			weights[c] = candidate.getWeight();
+
+			final Meaning meaning = candidate.getMeaning();
+			int m = meaning_ids.get(meaning.getReference());
+			if (m == -1)
+			{
+				m = meanings.size();
+				meaning_ids.put(meaning.getReference(), m);
+				meanings.add(meaning);
+				references.add(meaning.getReference());
+				meaning_lists.add(new TIntArrayList(1));
+			}
+			candidate_meanings[c] = m;
+			meaning_lists.get(m).add(c);
+
+			final Mention mention = candidate.getMention();
+			int n = mention_ids.get(mention);
+			if (n == -1)
+			{
+				n = mentions.size();
+				mention_ids.put(mention, n);
+				mentions.add(mention);
+				mention_lists.add(new TIntArrayList());
+			}
+			candidate_mentions[c] = n;
+			mention_lists.get(n).add(c);
+		}
+
+		meaning_candidates = meaning_lists.stream()
+				.map(TIntArrayList::toArray)
+				.toArray(int[][]::new);
+		mention_candidates = mention_lists.stream()
+				.map(TIntArrayList::toArray)
+				.toArray(int[][]::new);
+		meaning_mentions = Arrays.stream(meaning_candidates)
+				.map(l -> Arrays.stream(l)
+						.map(c -> candidate_mentions[c])
+						.sorted()
+						.distinct()
+						.toArray())
+				.toArray(int[][]::new);
+	}
+
+	public int size() { return candidates.size(); }
+	public int getNumMeanings() { return meanings.size(); }
+	public int getNumMentions() { return mentions.size(); }
+
+	public Candidate getCandidate(int c) { return candidates.get(c); }
+	public List<Candidate> getCandidates() { return Collections.unmodifiableList(candidates); }
+
+	/**
+	 * @return id of the candidate, -1 if not in the table
+	 */
+	public int indexOf(Candidate candidate) { return candidate_ids.get(candidate); }
+
+	/**
+	 * @return id of the meaning with the given reference, -1 if not in the table
+	 */
+	public int indexOfMeaning(String reference) { return meaning_ids.get(reference); }
+
+	/**
+	 * @return id of the mention, -1 if not in the table
+	 */
+	public int indexOfMention(Mention mention) { return mention_ids.get(mention); }
+
+	public Meaning getMeaning(int m) { return meanings.get(m); }
+	public Mention getMention(int n) { return mentions.get(n); }
+
+	/**
+	 * @return references of all meanings, indexed by meaning id
+	 */
+	public List<String> getReferences() { return Collections.unmodifiableList(references); }
+
+	public int getCandidateMeaning(int c) { return candidate_meanings[c]; }
+	public int getCandidateMention(int c) { return candidate_mentions[c]; }
+	public int[] getMeaningCandidates(int m) { return meaning_candidates[m]; }
+	public int[] getMentionCandidates(int n) { return mention_candidates[n]; }
+
+	/**
+	 * @return sorted ids of the mentions a meaning is a candidate of
+	 */
+	public int[] getMeaningMentions(int m) { return meaning_mentions[m]; }
+
+	/**
+	 * @return true if both meanings are candidates of at least one common mention
+	 */
+	public boolean shareMention(int m1, int m2)
+	{
+		final int[] n1 = meaning_mentions[m1];
+		final int[] n2 = meaning_mentions[m2];
+		int i = 0, j = 0;
+		while (i < n1.length && j < n2.length)
+		{
+			if (n1[i] == n2[j])
+				return true;
+			if (n1[i] < n2[j])
+				++i;
+			else
+				++j;
+		}
+		return false;
+	}
+
+	public double getWeight(int c) { return weights[c]; }
+
+	public void setWeight(int c, double weight)
+	{
+		weights[c] = weight;
+		candidates.get(c).setWeight(weight);
+	}
+}
@@ -4,9 +4,9 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.Serializable;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A sequence of one or more consecutive tokens
@@ -21,7 +21,7 @@ public final class Mention implements Comparable<Mention>, Serializable
 	private final String pos; // POS tag
 	private final boolean isNE; // is NE
 	private final String type; // e.g. AMR concept label
-	private static final Map<String, Mention> mentions = new HashMap<>(); // to ensure unique Mention objects
+	private static final Map<String, Mention> mentions = new ConcurrentHashMap<>(); // to ensure unique Mention objects
 	private final static long serialVersionUID = 1L;
 
 	// Factory method
@@ -29,12 +29,7 @@ public final class Mention implements Comparable<Mention>, Serializable
 	                          String POS, boolean isNE, String type)
 	{
 		final String id = context_id + "_" + tokens_span.toString();
-		if (mentions.containsKey(id))
-			return mentions.get(id);
-
-		Mention m = new Mention(id, context_id, tokens_span, surface_form, lemma, POS, isNE, type);
-		mentions.put(id, m);
-		return m;
+		return mentions.computeIfAbsent(id, i -> new Mention(i, context_id, tokens_span, surface_form, lemma, POS, isNE, type));
 	}
 
 	private Mention(String id, String context_id, Pair<Integer, Integer> tokens_span, String surface_form, String lemma,
@@ -87,12 +87,17 @@ public class DebugUtils
 
 	public static String printRank(Matrix v, int n, List<String> labels)
 	{
+		return printRank(Arrays.copyOf(v.getColumnPackedCopy(), n), labels);
+	}
+
+	public static String printRank(double[] v, List<String> labels)
+	{
+		final int n = v.length;
 		final List<Pair<String, Double>> sorted_items = new ArrayList<>();
 		for (int i =0; i < n; ++i)
 		{
 			final String l = labels.get(i);
-			final double v_i = v.getColumnPackedCopy()[i];
-			sorted_items.add(Pair.of(l, v_i));
+			sorted_items.add(Pair.of(l, v[i]));
 		}
 		sorted_items.sort(Comparator.comparingDouble(Pair<String, Double>::getRight).reversed());
 		return 	sorted_items.subList(0, Math.min(n, 100)).stream()
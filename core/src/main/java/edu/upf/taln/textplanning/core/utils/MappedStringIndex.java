@@ -0,0 +1,134 @@
+package edu.upf.taln.textplanning.core.utils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only index of strings stored in a (memory-mapped) buffer, mapping each string to its position in the list
+ * it was written from. Uses absolute reads only, so instances can be shared by concurrent threads.
+ *
+ * Layout (big-endian): number of keys, hash table size, blob size, int offsets of each key into a blob of UTF-8
+ * bytes, the blob and an open-addressing hash table of key positions + 1, 0 for empty slots.
+ */
+public final class MappedStringIndex
+{
+	private final ByteBuffer buffer;
+	private final int num_keys;
+	private final int table_mask;
+	private final int blob_start;
+	private final int table_start;
+	private static final int header_size = 3 * Integer.BYTES;
+
+	/**
+	 * @param buffer a buffer whose contents start with an index written with {@link #write(DataOutputStream, List)}
+	 */
+	public MappedStringIndex(ByteBuffer buffer)
+	{
+		this.buffer = buffer.slice();
+		num_keys = this.buffer.getInt(0);
+		final int table_size = this.buffer.getInt(Integer.BYTES);
+		final int blob_size = this.buffer.getInt(2 * Integer.BYTES);
+		table_mask = table_size - 1;
+		blob_start = header_size + (num_keys + 1) * Integer.BYTES;
+		table_start = blob_start + blob_size;
+	}
+
+	public int size() { return num_keys; }
+
+	/**
+	 * @return position of key in the list the index was created from, or -1 if not indexed
+	 */
+	public int find(String key)
+	{
+		final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		for (int slot = hash(key) & table_mask; ; slot = (slot + 1) & table_mask)
+		{
+			final int entry = buffer.getInt(table_start + slot * Integer.BYTES);
+			if (entry == 0)
+				return -1;
+			if (equals(entry - 1, bytes))
+				return entry - 1;
+		}
+	}
+
+	public String get(int i)
+	{
+		final int start = buffer.getInt(header_size + i * Integer.BYTES);
+		final int end = buffer.getInt(header_size + (i + 1) * Integer.BYTES);
+		final byte[] bytes = new byte[end - start];
+		for (int j = 0; j < bytes.length; ++j)
+			bytes[j] = buffer.get(blob_start + start + j);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private boolean equals(int i, byte[] key)
+	{
+		final int start = buffer.getInt(header_size + i * Integer.BYTES);
+		final int end = buffer.getInt(header_size + (i + 1) * Integer.BYTES);
+		if (end - start != key.length)
+			return false;
+		for (int j = 0; j < key.length; ++j)
+		{
+			if (buffer.get(blob_start + start + j) != key[j])
+				return false;
+		}
+		return true;
+	}
+
+	private static int hash(String key)
+	{
+		final int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Writes an index for a list of keys. If a key appears more than once, its last position is indexed.
+	 * @return number of bytes written
+	 */
+	public static long write(DataOutputStream out, List<String> keys) throws IOException
+	{
+		final List<byte[]> encoded_keys = new ArrayList<>(keys.size());
+		int blob_size = 0;
+		for (String key : keys)
+		{
+			final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+			encoded_keys.add(bytes);
+			blob_size += bytes.length;
+		}
+
+		// Hash table with load factor <= 0.5
+		final int table_size = Integer.highestOneBit(Math.max(2, keys.size()) * 2 - 1) << 1;
+		final int mask = table_size - 1;
+		final int[] table = new int[table_size];
+		for (int i = 0; i < keys.size(); ++i)
+		{
+			final byte[] key = encoded_keys.get(i);
+			int slot = hash(keys.get(i)) & mask;
+			while (table[slot] != 0 && !Arrays.equals(encoded_keys.get(table[slot] - 1), key))
+				slot = (slot + 1) & mask;
+			table[slot] = i + 1;
+		}
+
+		out.writeInt(keys.size());
+		out.writeInt(table_size);
+		out.writeInt(blob_size);
+		int offset = 0;
+		out.writeInt(offset);
+		for (byte[] bytes : encoded_keys)
+		{
+			offset += bytes.length;
+			out.writeInt(offset);
+		}
+		for (byte[] bytes : encoded_keys)
+			out.write(bytes);
+		for (int entry : table)
+			out.writeInt(entry);
+
+		return header_size + (keys.size() + 1L) * Integer.BYTES + blob_size + (long) table_size * Integer.BYTES;
+	}
+}
@@ -14,6 +14,11 @@ import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Weights meanings according to the similarity between the vectors of their glosses and the vector of their context.
+ * Meanings sharing the same context, e.g. all meanings of a document when the context is the whole document, are
+ * grouped so that the vector of each context is calculated just once, and then scored against it in parallel.
+ */
 public class ContextWeighter implements Function<String, Double>, Serializable
 {
 	public final Map<String, Double> weights = new HashMap<>();
@@ -29,33 +34,44 @@ public class ContextWeighter implements Function<String, Double>, Serializable
 		log.info("Calculating meaning weights using gloss and context vectors");
 		final Stopwatch timer = Stopwatch.createStarted();
 
-		final Set<String> meanings = candidates.stream()
+		final Map<List<String>, List<String>> contexts = candidates.stream()
 				.map(Candidate::getMeaning)
 				.map(Meaning::getReference)
-				.collect(Collectors.toSet());
+				.distinct()
+				.collect(Collectors.groupingBy(context_function, LinkedHashMap::new, Collectors.toList()));
 
 		// Calculate context vectors just once per each context
-		meanings.forEach(m -> {
-					final Optional<double[]> glosses_vector = glosses_vectors.getVector(m);
-					final List<String> context = context_function.apply(m);
-					final Optional<double[]> context_vector =context_vectors.getVector(context);
-					if (glosses_vector.isPresent() && context_vector.isPresent())
-						weights.put(m, score_function.apply(glosses_vector.get(), context_vector.get()));
-					else
-						weights.put(m, 0.0);
-
-				});
+		contexts.forEach((context, meanings) ->
+		{
+			final Optional<double[]> context_vector = context_vectors.getVector(context);
+			final double[] scores = score(meanings, context_vector.orElse(null), glosses_vectors, score_function);
+			for (int i = 0; i < scores.length; ++i)
+				weights.put(meanings.get(i), scores[i]);
+		});
 
 		// Make sure all weights are normalized
 		assert weights.values().stream().map(Math::abs).allMatch(w -> w >= 0.0 && w <= 1.0);
 		if (weights.values().stream().anyMatch(w -> w < 0.0))
-			weights.keySet().forEach(i -> weights.replace(i, (weights.get(i) + 1.0)/2.0));
-
+			weights.replaceAll((m, w) -> (w + 1.0) / 2.0);
 
-		log.info(weights.size() + " meanings with weights out of " + candidates.size());
+		log.info(weights.size() + " meanings with weights out of " + candidates.size() + ", " + contexts.size() +
+				" context vectors calculated");
 		log.info("Weights calculated in " + timer.stop());
 	}
 
+	// Scores the gloss vectors of a list of meanings against a single context vector
+	private static double[] score(List<String> meanings, double[] context_vector, Vectors glosses_vectors,
+	                              BiFunction<double[], double[], Double> score_function)
+	{
+		if (context_vector == null)
+			return new double[meanings.size()];
+
+		return meanings.parallelStream()
+				.map(glosses_vectors::getVector)
+				.mapToDouble(v -> v.map(gv -> score_function.apply(gv, context_vector)).orElse(0.0))
+				.toArray();
+	}
+
 	@Override
 	public Double apply(String item)
 	{
@@ -33,14 +33,17 @@ public final class TFIDF
 				.collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
 
 		// Calculate tf*idf values of the collection relative to the corpus
+		final List<String> items = new ArrayList<>(freqs.keySet());
+		final List<OptionalInt> dfs = corpus.getMeaningDocumentCounts(items);
+		final int N = corpus.getNumDocs();
 		int num_defined = 0;
-		for (String item : freqs.keySet())
+		for (int i = 0; i < items.size(); ++i)
 		{
+			String item = items.get(i);
 			long f = freqs.get(item);
 			double tf = 1 + Math.log(f); // logarithmically scaled
 			//double tf = f; //0.5 + 0.5*(f/maxFreq); // augmented frequency
-			OptionalInt df = corpus.getMeaningDocumentCount(item);
-			int N = corpus.getNumDocs();
+			OptionalInt df = dfs.get(i);
 			double idf = Math.log((double)N / df.orElse(0) + 1); // smooth all df values by adding 1
 			tfidf.put(item, tf * idf);
 
@@ -26,6 +26,8 @@ import java.util.*;
  *  to store indexes to the byte buffer.
  *
  * Inspired by code in http://java-performance.info/use-case-optimizing-memory-footprint-of-read-only-csv-file-trove-unsafe-bytebuffer-data-compression/
+ *
+ * Lookups move the position of shared buffers and are not thread-safe. See MappedFrequencies for concurrent access.
  */
 public class CompactFrequencies implements Corpus, Serializable
 {
@@ -1,7 +1,10 @@
 package edu.upf.taln.textplanning.core.weighting.corpora;
 
+import java.util.List;
 import java.util.OptionalInt;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * Interface for classes implementing access to corpora semantically annotated with meanings.
  */
@@ -12,4 +15,25 @@ public interface Corpus
 	OptionalInt getFormMeaningCount(String form, String meaning);
 	OptionalInt getFormCount(String form);
 	int getNumDocs();
-}
\ No newline at end of file
+
+	// Batch lookups, returning one value for each item in the list
+	default List<OptionalInt> getMeaningCounts(List<String> meanings)
+	{
+		return meanings.stream().map(this::getMeaningCount).collect(toList());
+	}
+
+	default List<OptionalInt> getMeaningDocumentCounts(List<String> meanings)
+	{
+		return meanings.stream().map(this::getMeaningDocumentCount).collect(toList());
+	}
+
+	default List<OptionalInt> getFormCounts(List<String> forms)
+	{
+		return forms.stream().map(this::getFormCount).collect(toList());
+	}
+
+	default List<OptionalInt> getFormMeaningCounts(String form, List<String> meanings)
+	{
+		return meanings.stream().map(m -> getFormMeaningCount(form, m)).collect(toList());
+	}
+}
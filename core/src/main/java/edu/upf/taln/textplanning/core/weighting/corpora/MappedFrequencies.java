@@ -0,0 +1,305 @@
+package edu.upf.taln.textplanning.core.weighting.corpora;
+
+import com.google.common.base.Stopwatch;
+import edu.upf.taln.textplanning.core.utils.MappedStringIndex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Read-only frequencies stored in a binary file which is memory-mapped and accessed with absolute reads only.
+ * Lookups are lock-free and can be issued concurrently, loading is near-instant and heap usage does not depend on
+ * the size of the corpus. Files are written with {@link Builder}.
+ *
+ * File layout (big-endian):
+ *  - header: magic, version, number of docs, offsets of each of the following sections
+ *  - meanings index, as a {@link MappedStringIndex}
+ *  - forms index, as a {@link MappedStringIndex}
+ *  - meaning counts: (total count, document count) int pairs for each meaning, -1 if undefined
+ *  - form pointers: offset of the first (meaning, count) pair of each form, plus the total number of pairs
+ *  - form pairs: (meaning position, count) int pairs, sorted by meaning position within each form
+ */
+public class MappedFrequencies implements Corpus
+{
+	private static final int magic = 0x54504643;
+	private static final int version = 1;
+	private static final int header_size = 64;
+
+	private final int num_docs;
+	private final MappedStringIndex meanings;
+	private final MappedStringIndex forms;
+	private final ByteBuffer meaning_counts;
+	private final ByteBuffer form_pointers;
+	private final ByteBuffer form_pairs;
+	private final static Logger log = LogManager.getLogger();
+
+	public MappedFrequencies(Path file) throws IOException
+	{
+		log.info("Mapping frequencies from " + file);
+		Stopwatch timer = Stopwatch.createStarted();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, header_size);
+			if (header.getInt(0) != magic || header.getInt(4) != version)
+				throw new IOException("Not a mapped frequencies file: " + file);
+
+			num_docs = header.getInt(8);
+			final long[] offsets = new long[6];
+			for (int i = 0; i < offsets.length - 1; ++i)
+				offsets[i] = header.getLong(16 + i * Long.BYTES);
+			offsets[offsets.length - 1] = channel.size();
+
+			meanings = new MappedStringIndex(map(channel, offsets, 0));
+			forms = new MappedStringIndex(map(channel, offsets, 1));
+			meaning_counts = map(channel, offsets, 2);
+			form_pointers = map(channel, offsets, 3);
+			form_pairs = map(channel, offsets, 4);
+		}
+
+		log.info("Mapped " + meanings.size() + " meanings and " + forms.size() + " forms in " + timer.stop());
+	}
+
+	/**
+	 * @return true if the file starts like a mapped frequencies file
+	 */
+	public static boolean isMappedFrequencies(Path file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file.toFile())))
+		{
+			return in.readInt() == magic && in.readInt() == version;
+		}
+		catch (EOFException e)
+		{
+			return false;
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel, long[] offsets, int section) throws IOException
+	{
+		return channel.map(FileChannel.MapMode.READ_ONLY, offsets[section], offsets[section + 1] - offsets[section]);
+	}
+
+	@Override
+	public OptionalInt getMeaningCount(String meaning)
+	{
+		return getMeaningCount(meanings.find(meaning), 0);
+	}
+
+	@Override
+	public OptionalInt getMeaningDocumentCount(String meaning)
+	{
+		return getMeaningCount(meanings.find(meaning), 1);
+	}
+
+	private OptionalInt getMeaningCount(int meaning_pos, int field)
+	{
+		if (meaning_pos < 0)
+			return OptionalInt.empty();
+		final int count = meaning_counts.getInt((2 * meaning_pos + field) * Integer.BYTES);
+		return count < 0 ? OptionalInt.empty() : OptionalInt.of(count);
+	}
+
+	@Override
+	public OptionalInt getFormMeaningCount(String form, String meaning)
+	{
+		return getFormMeaningCount(forms.find(form), meanings.find(meaning));
+	}
+
+	// Binary search of the meaning among the pairs of the form
+	private OptionalInt getFormMeaningCount(int form_pos, int meaning_pos)
+	{
+		if (form_pos < 0 || meaning_pos < 0)
+			return OptionalInt.empty();
+
+		int low = form_pointers.getInt(form_pos * Integer.BYTES);
+		int high = form_pointers.getInt((form_pos + 1) * Integer.BYTES) - 1;
+		while (low <= high)
+		{
+			final int mid = (low + high) >>> 1;
+			final int mid_meaning = form_pairs.getInt(2 * mid * Integer.BYTES);
+			if (mid_meaning < meaning_pos)
+				low = mid + 1;
+			else if (mid_meaning > meaning_pos)
+				high = mid - 1;
+			else
+				return OptionalInt.of(form_pairs.getInt((2 * mid + 1) * Integer.BYTES));
+		}
+
+		return OptionalInt.empty();
+	}
+
+	@Override
+	public OptionalInt getFormCount(String form)
+	{
+		final int form_pos = forms.find(form);
+		if (form_pos < 0)
+			return OptionalInt.empty();
+
+		final int start = form_pointers.getInt(form_pos * Integer.BYTES);
+		final int end = form_pointers.getInt((form_pos + 1) * Integer.BYTES);
+		int count = 0;
+		for (int i = start; i < end; ++i)
+			count += form_pairs.getInt((2 * i + 1) * Integer.BYTES);
+		return OptionalInt.of(count);
+	}
+
+	@Override
+	public int getNumDocs()
+	{
+		return num_docs;
+	}
+
+	@Override
+	public List<OptionalInt> getMeaningCounts(List<String> meanings)
+	{
+		return meanings.parallelStream()
+				.map(this::getMeaningCount)
+				.collect(toList());
+	}
+
+	@Override
+	public List<OptionalInt> getMeaningDocumentCounts(List<String> meanings)
+	{
+		return meanings.parallelStream()
+				.map(this::getMeaningDocumentCount)
+				.collect(toList());
+	}
+
+	@Override
+	public List<OptionalInt> getFormCounts(List<String> forms)
+	{
+		return forms.parallelStream()
+				.map(this::getFormCount)
+				.collect(toList());
+	}
+
+	@Override
+	public List<OptionalInt> getFormMeaningCounts(String form, List<String> meanings)
+	{
+		final int form_pos = forms.find(form); // look up form only once
+		return meanings.stream()
+				.map(m -> getFormMeaningCount(form_pos, this.meanings.find(m)))
+				.collect(toList());
+	}
+
+	/**
+	 * Collects counts and writes them to a file that can be opened with MappedFrequencies.
+	 * Counts for the same meaning or (form, meaning) pair are added up.
+	 */
+	public static class Builder
+	{
+		private final int num_docs;
+		private final Map<String, int[]> meaning_counts = new HashMap<>();
+		private final Map<String, Map<String, Integer>> form_counts = new HashMap<>();
+
+		public Builder(int num_docs)
+		{
+			this.num_docs = num_docs;
+		}
+
+		public Builder addMeaning(String meaning, int count, int doc_count)
+		{
+			final int[] counts = meaning_counts.computeIfAbsent(meaning, m -> new int[2]);
+			counts[0] += count;
+			counts[1] += doc_count;
+			return this;
+		}
+
+		public Builder addForm(String form, String meaning, int count)
+		{
+			form_counts.computeIfAbsent(form, f -> new HashMap<>()).merge(meaning, count, Integer::sum);
+			return this;
+		}
+
+		public Builder addCounts(Map<String, Integer> total_counts, Map<String, Integer> doc_counts,
+		                         Map<String, Map<String, Integer>> form_counts)
+		{
+			total_counts.forEach((m, c) -> addMeaning(m, c, doc_counts.getOrDefault(m, 0)));
+			form_counts.forEach((f, counts) -> counts.forEach((m, c) -> addForm(f, m, c)));
+			return this;
+		}
+
+		public void write(Path file) throws IOException
+		{
+			log.info("Writing frequencies to " + file);
+			Stopwatch timer = Stopwatch.createStarted();
+
+			// Meanings referenced by forms only are also indexed, with undefined counts
+			final Set<String> all_meanings = new HashSet<>(meaning_counts.keySet());
+			form_counts.values().forEach(c -> all_meanings.addAll(c.keySet()));
+			final List<String> meaning_list = all_meanings.stream().sorted().collect(toList());
+			final Map<String, Integer> meaning_positions = new HashMap<>();
+			for (int i = 0; i < meaning_list.size(); ++i)
+				meaning_positions.put(meaning_list.get(i), i);
+			final List<String> form_list = form_counts.keySet().stream().sorted().collect(toList());
+
+			final long[] offsets = new long[5];
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 1 << 20)))
+			{
+				out.write(new byte[header_size]); // placeholder, header is written at the end
+				long position = header_size;
+
+				offsets[0] = position;
+				position += MappedStringIndex.write(out, meaning_list);
+
+				offsets[1] = position;
+				position += MappedStringIndex.write(out, form_list);
+
+				offsets[2] = position;
+				for (String meaning : meaning_list)
+				{
+					final int[] counts = meaning_counts.getOrDefault(meaning, new int[]{-1, -1});
+					out.writeInt(counts[0]);
+					out.writeInt(counts[1]);
+				}
+				position += 2L * meaning_list.size() * Integer.BYTES;
+
+				offsets[3] = position;
+				int num_pairs = 0;
+				out.writeInt(num_pairs);
+				for (String form : form_list)
+				{
+					num_pairs += form_counts.get(form).size();
+					out.writeInt(num_pairs);
+				}
+				position += (form_list.size() + 1L) * Integer.BYTES;
+
+				offsets[4] = position;
+				for (String form : form_list)
+				{
+					final List<int[]> pairs = form_counts.get(form).entrySet().stream()
+							.map(e -> new int[]{meaning_positions.get(e.getKey()), e.getValue()})
+							.sorted(Comparator.comparingInt(p -> p[0]))
+							.collect(toList());
+					for (int[] pair : pairs)
+					{
+						out.writeInt(pair[0]);
+						out.writeInt(pair[1]);
+					}
+				}
+			}
+
+			try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw"))
+			{
+				out.writeInt(magic);
+				out.writeInt(version);
+				out.writeInt(num_docs);
+				out.writeInt(0);
+				for (long offset : offsets)
+					out.writeLong(offset);
+			}
+
+			log.info("Wrote " + meaning_list.size() + " meanings and " + form_list.size() + " forms in " + timer.stop());
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package edu.upf.taln.textplanning.core.ranking;
+
+import Jama.Matrix;
+import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
+import edu.upf.taln.textplanning.core.structures.Meaning;
+import edu.upf.taln.textplanning.core.structures.Mention;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ranking meanings from a candidate table gives the same weights as the original ranking, which created a
+ * dense matrix for the distinct references of the filtered candidates
+ */
+public class GraphRankingTest
+{
+	private static final int num_meanings = 60;
+	private static final int num_mentions = 80;
+	private static final int num_dimensions = 20;
+	private static final long seed = 42L;
+
+	// Candidates of a synthetic document, some meanings are candidates of several mentions
+	private static List<Candidate> createCandidates()
+	{
+		final Random random = new Random(seed);
+		final List<Candidate> candidates = new ArrayList<>();
+		for (int n = 0; n < num_mentions; ++n)
+		{
+			final Mention mention = Mention.get("ranking_test", Pair.of(n, n + 1), "w" + n, "w" + n, "NN", false, "");
+			final int num_candidates = 1 + random.nextInt(4);
+			for (int i = 0; i < num_candidates; ++i)
+			{
+				final String reference = "bn:ranking_test_" + random.nextInt(num_meanings);
+				candidates.add(new Candidate(mention, Meaning.get(reference, reference, false)));
+			}
+		}
+		return candidates;
+	}
+
+	// Cosine similarity between random vectors, undefined for some meanings
+	private static BiFunction<String, String, OptionalDouble> createSimilarity()
+	{
+		final Random random = new Random(seed);
+		final Map<String, double[]> vectors = new HashMap<>();
+		for (int m = 0; m < num_meanings; ++m)
+		{
+			if (m % 7 == 0)
+				continue;
+			final double[] v = new double[num_dimensions];
+			for (int d = 0; d < num_dimensions; ++d)
+				v[d] = random.nextGaussian();
+			vectors.put("bn:ranking_test_" + m, v);
+		}
+
+		return (r1, r2) ->
+		{
+			final double[] v1 = vectors.get(r1);
+			final double[] v2 = vectors.get(r2);
+			if (v1 == null || v2 == null)
+				return OptionalDouble.empty();
+			double dot = 0.0, norm1 = 0.0, norm2 = 0.0;
+			for (int d = 0; d < num_dimensions; ++d)
+			{
+				dot += v1[d] * v2[d];
+				norm1 += v1[d] * v1[d];
+				norm2 += v2[d] * v2[d];
+			}
+			return OptionalDouble.of(dot / Math.sqrt(norm1 * norm2));
+		};
+	}
+
+	@Test
+	public void testRankMeanings()
+	{
+		final List<Candidate> candidates = createCandidates();
+		final CandidateTable table = new CandidateTable(candidates);
+		final DifferentMentionsFilter meanings_filter = new DifferentMentionsFilter(table);
+		final Predicate<Candidate> candidates_filter = c -> c.getMention().getSpan().getLeft() % 5 != 0;
+		final Function<String, Double> weighting = r -> 0.1 + (Math.abs(r.hashCode()) % 10) / 10.0;
+		final BiFunction<String, String, OptionalDouble> similarity = createSimilarity();
+		final double threshold = 0.1;
+		final double d = 0.3;
+
+		// Original ranking
+		final List<Candidate> filtered_candidates = candidates.stream()
+				.filter(candidates_filter)
+				.collect(toList());
+		final List<String> references = filtered_candidates.stream()
+				.map(c -> c.getMeaning().getReference())
+				.distinct()
+				.collect(toList());
+		final double[][] ranking_arrays = MatrixFactory.createMeaningRankingMatrix(references, weighting, similarity,
+				meanings_filter, threshold, d);
+		final double[] expected = new JamaPowerIteration().run(new Matrix(ranking_arrays), references)
+				.getColumnPackedCopy();
+
+		GraphRanking.rankMeanings(table, candidates_filter, meanings_filter, weighting, similarity, threshold, d);
+
+		for (int c = 0; c < table.size(); ++c)
+		{
+			final Candidate candidate = table.getCandidate(c);
+			if (!candidates_filter.test(candidate))
+				continue;
+			final double weight = expected[references.indexOf(candidate.getMeaning().getReference())];
+			assertEquals(weight, table.getWeight(c), 1e-12);
+			assertEquals(table.getWeight(c), candidate.getWeight(), 0.0);
+		}
+	}
+
+	@Test
+	public void testMentionSignatures()
+	{
+		final CandidateTable table = new CandidateTable(createCandidates());
+		final DifferentMentionsFilter filter = new DifferentMentionsFilter(table);
+
+		for (int m1 = 0; m1 < table.getNumMeanings(); ++m1)
+		{
+			for (int m2 = 0; m2 < table.getNumMeanings(); ++m2)
+			{
+				final Set<Mention> mentions1 = getMentions(table, m1);
+				final Set<Mention> mentions2 = getMentions(table, m2);
+				assertEquals(!mentions1.equals(mentions2), filter.test(m1, m2));
+				assertEquals(!mentions1.equals(mentions2), filter.test(table.getReferences().get(m1),
+						table.getReferences().get(m2)));
+				assertEquals(!Collections.disjoint(mentions1, mentions2), table.shareMention(m1, m2));
+			}
+		}
+		assertFalse(filter.test("bn:ranking_test_unknown", table.getReferences().get(0)));
+	}
+
+	private static Set<Mention> getMentions(CandidateTable table, int m)
+	{
+		final Set<Mention> mentions = new HashSet<>();
+		for (int c : table.getMeaningCandidates(m))
+			mentions.add(table.getCandidate(c).getMention());
+		return mentions;
+	}
+}
@@ -3,7 +3,7 @@ package edu.upf.taln.textplanning.core.optimization;
 import cc.mallet.optimize.Optimizable;
 import edu.upf.taln.textplanning.core.weighting.corpora.Corpus;
 import edu.upf.taln.textplanning.core.structures.Candidate;
-import edu.upf.taln.textplanning.core.structures.Mention;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
@@ -19,18 +19,17 @@ import static java.util.stream.Collectors.*;
 public class CandidateOptimizable implements Optimizable.ByGradientValue
 {
 	private final Function f; // function to optimize
-	private final List<Candidate> candidates = new ArrayList<>(); // vector of candidates/parameters
+	private final CandidateTable candidates; // vector of candidates/parameters
 	private final double[] params; // vector of parameter values
-	private final Map<Mention, List<Integer>> mentionsToCandidates; // integer values are indexes in this.candidates
 
-	CandidateOptimizable(Function function, List<Candidate> candidates, Corpus corpus)
+	CandidateOptimizable(Function function, CandidateTable candidates, Corpus corpus)
 	{
 		this.f = function;
-		this.candidates.addAll(candidates);
+		this.candidates = candidates;
 
 		// Initialize parameter vector with corpus priors
 		// todo consider using a softmax for the prior distribution
-		params = candidates.stream()
+		params = candidates.getCandidates().stream()
 				.mapToDouble(c -> {
 					// mention form to consider is this one unless it has been marked to have a coreferent
 					String form = c.getMention().getSurface_form();
@@ -49,14 +48,6 @@ public class CandidateOptimizable implements Optimizable.ByGradientValue
 					return (double) meaning_count.getAsInt() / (double) total_count.getAsInt();
 				})
 				.toArray();
-
-		// Create a dictionary mapping mentions to all its candidates
-		Map<Mention, List<Candidate>> mention_dict = candidates.stream()
-				.collect(groupingBy(Candidate::getMention, toList()));
-		mentionsToCandidates = mention_dict.keySet().stream()
-				.collect(toMap(m -> m, m -> mention_dict.get(m).stream()
-						.map(candidates::indexOf)
-						.collect(toList())));
 	}
 
 	@Override
@@ -75,7 +66,7 @@ public class CandidateOptimizable implements Optimizable.ByGradientValue
 	Map<Candidate, Double> rankCandidates()
 	{
 		return IntStream.range(0, params.length)
-				.mapToObj(i -> Pair.of(candidates.get(i), params[i]))
+				.mapToObj(i -> Pair.of(candidates.getCandidate(i), params[i]))
 				.collect(toMap(Pair::getKey, Pair::getValue));
 	}
 
@@ -113,14 +104,15 @@ public class CandidateOptimizable implements Optimizable.ByGradientValue
 	private double[] getSoftMaxParameterValues()
 	{
 		double[] softmax_params = new double[params.length];
-		for (List<Integer> indexes : mentionsToCandidates.values())
+		for (int m = 0; m < candidates.getNumMentions(); ++m)
 		{
-			double[] candidate_values = indexes.stream()
+			final int[] indexes = candidates.getMentionCandidates(m);
+			double[] candidate_values = Arrays.stream(indexes)
 					.mapToDouble(i -> this.params[i])
 					.toArray();
 			double[] dist = getSoftMaxDistribution(candidate_values);
-			IntStream.range(0 , dist.length)
-					.forEach(i -> softmax_params[indexes.get(i)] = dist[i]);
+			for (int i = 0; i < dist.length; ++i)
+				softmax_params[indexes[i]] = dist[i];
 		}
 
 		return softmax_params;
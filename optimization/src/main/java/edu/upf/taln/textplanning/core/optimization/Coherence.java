@@ -2,20 +2,15 @@ package edu.upf.taln.textplanning.core.optimization;
 
 import com.google.common.base.Stopwatch;
 import edu.upf.taln.textplanning.core.ranking.MatrixFactory;
-import edu.upf.taln.textplanning.core.structures.Candidate;
-import edu.upf.taln.textplanning.core.structures.Meaning;
-import edu.upf.taln.textplanning.core.structures.Mention;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.OptionalDouble;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
@@ -25,31 +20,21 @@ import static java.util.stream.Collectors.toList;
  */
 public class Coherence implements Function
 {
-	private final List<Candidate> candidates;
+	private final CandidateTable candidates;
 	private final double[][] semantic_similarity;
 	private final static Logger log = LogManager.getLogger();
 
-	Coherence(List<Candidate> candidates, BiFunction<String, String, OptionalDouble> similarity, double lower_bound)
+	Coherence(CandidateTable candidates, BiFunction<String, String, OptionalDouble> similarity, double lower_bound)
 	{
 		this.candidates = candidates;
-		List<String> meanings = candidates.stream()
-				.map(Candidate::getMeaning)
-				.map(Meaning::getReference)
+		List<String> meanings = IntStream.range(0, candidates.size())
+				.map(candidates::getCandidateMeaning)
+				.mapToObj(candidates.getReferences()::get)
 				.collect(toList()); // with duplicates
 
 		// Similarity for pairs of references that appear in the same mentions should be 0
 		BiPredicate<String, String> filter = (r1, r2) ->
-		{
-			final Set<Mention> mentions_r1 = candidates.stream()
-					.filter(c -> c.getMeaning().getReference().equals(r1))
-					.map(Candidate::getMention)
-					.collect(Collectors.toSet());
-			final Set<Mention> mentions_r2 = candidates.stream()
-					.filter(c -> c.getMeaning().getReference().equals(r2))
-					.map(Candidate::getMention)
-					.collect(Collectors.toSet());
-			return Collections.disjoint(mentions_r1, mentions_r2);
-		};
+				!candidates.shareMention(candidates.indexOfMeaning(r1), candidates.indexOfMeaning(r2));
 
 		// Don't normalize matrix, normalization is part of the optimizable softmax function
 		semantic_similarity = MatrixFactory.createMeaningsSimilarityMatrix(meanings, similarity, filter, lower_bound,
@@ -62,7 +47,7 @@ public class Coherence implements Function
 		return IntStream.range(0, dist.length)
 				.mapToDouble(i -> IntStream.range(0, dist.length)
 						.filter(j -> i != j)
-						.filter(j -> candidates.get(i).getMention() != candidates.get(j).getMention()) // important!
+						.filter(j -> candidates.getCandidateMention(i) != candidates.getCandidateMention(j)) // important!
 						.mapToDouble(j -> dist[i] * dist[j] * semantic_similarity[i][j])
 						.sum())
 				.sum();
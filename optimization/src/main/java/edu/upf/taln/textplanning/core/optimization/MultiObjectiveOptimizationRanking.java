@@ -4,6 +4,7 @@ import cc.mallet.optimize.ConjugateGradient;
 import com.google.common.base.Stopwatch;
 import edu.upf.taln.textplanning.core.weighting.corpora.Corpus;
 import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
@@ -37,11 +38,12 @@ public class MultiObjectiveOptimizationRanking
 	{
 		// Set up functions to be optimized and parameters
 		log.info("Setting up objectives");
-		Coherence coherence = new Coherence(candidates, similarity, meaning_similarity_threshold);
-		SimpleType type = new SimpleType(candidates);
-		Salience salience = new Salience(candidates, weighting);
+		final CandidateTable table = new CandidateTable(candidates); // shared by all functions
+		Coherence coherence = new Coherence(table, similarity, meaning_similarity_threshold);
+		SimpleType type = new SimpleType(table);
+		Salience salience = new Salience(table, weighting);
 		MultiObjectiveFunction multi = new MultiObjectiveFunction(coherence, type, salience);
-		CandidateOptimizable optimizable = new CandidateOptimizable(multi, candidates, corpus);
+		CandidateOptimizable optimizable = new CandidateOptimizable(multi, table, corpus);
 
 		// Optimize functions
 		ConjugateGradient gradient = new ConjugateGradient(optimizable);
@@ -1,44 +1,29 @@
 package edu.upf.taln.textplanning.core.optimization;
 
 import edu.upf.taln.textplanning.core.ranking.MatrixFactory;
-import edu.upf.taln.textplanning.core.structures.Candidate;
-import edu.upf.taln.textplanning.core.structures.Meaning;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.stream.IntStream;
 
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
-
 /**
  * Salience function based on a relevance distribution over candidate senses.
  */
 public class Salience implements Function
 {
-	private final List<Candidate> candidates;
-	private final Map<Candidate, Integer> candidates2Indexes;
+	private final CandidateTable candidates;
 	private final double[] relevanceValues; // per entity, not candidate
 
 
-	Salience(List<Candidate> candidates, java.util.function.Function<String, Double> weighting)
+	Salience(CandidateTable candidates, java.util.function.Function<String, Double> weighting)
 	{
 		this.candidates = candidates;
 
-		List<String> meanings = candidates.stream()
-				.map(Candidate::getMeaning)
-				.map(Meaning::getReference)
-				.distinct()
-				.collect(toList());
-		candidates2Indexes = candidates.stream()
-				.collect(toMap(c -> c, c -> meanings.indexOf(c.getMeaning().getReference())));
-
 		// Don't normalize vector, normalization is part of the optimizable softmax function
 		// Store relevance values for each pair
 
-		relevanceValues = MatrixFactory.createMeaningsBiasVector(meanings, weighting, false);
+		relevanceValues = MatrixFactory.createMeaningsBiasVector(candidates.getReferences(), weighting, false);
 	}
 
 	@Override
@@ -46,7 +31,7 @@ public class Salience implements Function
 	{
 		return IntStream.range(0, candidates.size())
 				.mapToDouble(i -> {
-					Integer entity_index = candidates2Indexes.get(candidates.get(i));
+					int entity_index = candidates.getCandidateMeaning(i);
 					return dist[i] * relevanceValues[entity_index];
 				})
 				.sum();
@@ -63,7 +48,7 @@ public class Salience implements Function
 		{
 			for (int i = 0; i < dist.length; ++i)
 			{
-				Integer entity_index = candidates2Indexes.get(candidates.get(i));
+				int entity_index = candidates.getCandidateMeaning(i);
 				gradient[k] += relevanceValues[entity_index] * dist[i] * (d.apply(i,k) - dist[k]);
 			}
 		}
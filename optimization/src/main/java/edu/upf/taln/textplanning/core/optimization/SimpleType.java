@@ -2,9 +2,8 @@ package edu.upf.taln.textplanning.core.optimization;
 
 
 import edu.upf.taln.textplanning.core.ranking.MatrixFactory;
-import edu.upf.taln.textplanning.core.structures.Candidate;
+import edu.upf.taln.textplanning.core.structures.CandidateTable;
 
-import java.util.List;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.stream.IntStream;
@@ -14,10 +13,10 @@ import java.util.stream.IntStream;
  */
 public class SimpleType implements Function
 {
-	private final List<Candidate> candidates;
+	private final CandidateTable candidates;
 	private final double[] type_vector;
 
-	SimpleType(List<Candidate> candidates)
+	SimpleType(CandidateTable candidates)
 	{
 		this.candidates = candidates;
 		// Don't normalize vector, normalization is part of the optimizable softmax function
@@ -6,7 +6,9 @@ import edu.upf.taln.textplanning.common.FileUtils;
 import edu.upf.taln.textplanning.core.structures.MeaningDictionary.Info;
 import edu.upf.taln.textplanning.common.InitialResourcesFactory;
 import edu.upf.taln.textplanning.common.Serializer;
+import edu.upf.taln.textplanning.core.similarity.vectors.SenseGlossesVectors;
 import edu.upf.taln.textplanning.core.similarity.vectors.SentenceVectors;
+import edu.upf.taln.textplanning.core.similarity.vectors.VectorsStore;
 import edu.upf.taln.textplanning.core.utils.DebugUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -59,6 +61,34 @@ public class ContextVectorsProducer
 		log.info("Collection completed in " + gtimer.stop());
 	}
 
+	/**
+	 * Fills a store with the vectors calculated from the glosses of a list of meanings, the same vectors looked up
+	 * with SenseGlosses meaning context vectors.
+	 */
+	public static void storeGlossesVectors(Path meanings_path, Path store_path, InitialResourcesFactory resources)
+			throws Exception
+	{
+		log.info("Storing glosses vectors with " +  Runtime.getRuntime().availableProcessors() + " cores available");
+		final Stopwatch timer = Stopwatch.createStarted();
+
+		final List<Info> meanings = getMeanings(meanings_path);
+		final Map<String, List<String>> glosses = meanings.stream()
+				.collect(Collectors.toMap(i -> i.id, i -> i.glosses, (g1, g2) -> g1));
+		final SenseGlossesVectors vectors = new SenseGlossesVectors(resources.getLanguage(),
+				m -> glosses.getOrDefault(m, Collections.emptyList()), resources.getSentenceVectors());
+		AtomicLong counter = new AtomicLong(0);
+
+		resources.storeGlossesVectors(store_path);
+		final VectorsStore store = resources.getGlossesVectorsStore();
+		glosses.keySet().parallelStream()
+				.peek(m -> store.get(m, vectors::getVector))
+				.forEach(m -> {
+					long c = counter.incrementAndGet();
+					if (c % DebugUtils.LOGGING_STEP_SIZE == 0) log.info(c + " meanings stored");
+				});
+		log.info(store.getMisses() + " new vectors stored out of " + glosses.size() + " meanings");
+		log.info("Storing completed in " + timer.stop());
+	}
 
 	private static void getMeaningStats(List<Info> meanings, SentenceVectors sentence_vectors)
 	{
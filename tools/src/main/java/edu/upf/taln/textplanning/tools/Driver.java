@@ -4,19 +4,28 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.ibm.icu.util.ULocale;
+import edu.upf.taln.textplanning.common.BabelNetDictionary;
 import edu.upf.taln.textplanning.common.CMLCheckers;
 import edu.upf.taln.textplanning.common.InitialResourcesFactory;
+import edu.upf.taln.textplanning.common.SnapshotDictionary;
+import edu.upf.taln.textplanning.core.similarity.vectors.MappedVectors;
 import edu.upf.taln.textplanning.core.similarity.vectors.SentenceVectors.SentenceVectorType;
 import edu.upf.taln.textplanning.core.similarity.vectors.Vectors.VectorType;
 import edu.upf.taln.textplanning.tools.evaluation.RankingEvaluation;
 import edu.upf.taln.textplanning.tools.evaluation.SemEvalEvaluation;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
 
 public class Driver
 {
@@ -25,6 +34,9 @@ public class Driver
 	private static final String rank_eval_command = "rankeval";
 	private static final String collect_meanings_vectors = "meanings";
 	private static final String create_context_vectors = "context";
+	private static final String store_glosses_vectors = "glosses";
+	private static final String convert_vectors = "vectors";
+	private static final String create_dictionary_snapshot = "snapshot";
 	private final static Logger log = LogManager.getLogger();
 
 	@SuppressWarnings("unused")
@@ -37,8 +49,8 @@ public class Driver
 		@Parameter(names = {"-i", "-input"}, description = "Path to XML input file", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
 		private Path input_file;
-		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder", arity = 1, required = true,
-				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
+		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder or snapshot file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path dictionary;
 		@Parameter(names = {"-o", "-output"}, description = "Path to output folder where system files will be stored", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFolder.class)
@@ -64,6 +76,9 @@ public class Driver
 		@Parameter(names = {"-ct", "-context_vectors_type"}, description = "Type of sense context vectors", arity = 1, required = true,
 				converter = CMLCheckers.VectorTypeConverter.class, validateWith = CMLCheckers.VectorTypeValidator.class)
 		private VectorType context_vector_type = VectorType.Random;
+		@Parameter(names = {"-gs", "-glosses_store"}, description = "File where vectors calculated from glosses are kept between runs, used with SenseGlosses context vectors", arity = 1,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFile.class)
+		private Path glosses_store = null;
 		@Parameter(names = {"-sev", "-sense_vectors"}, description = "Path to sense vectors", arity = 1,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path sense_vectors_path;
@@ -82,8 +97,8 @@ public class Driver
 		@Parameter(names = {"-i", "-input"}, description = "Path to XML input file", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
 		private Path input_file;
-		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder", arity = 1, required = true,
-				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
+		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder or snapshot file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path dictionary;
 		@Parameter(names = {"-o", "-output"}, description = "Path to output folder where system files will be stored", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFolder.class)
@@ -109,6 +124,9 @@ public class Driver
 		@Parameter(names = {"-ct", "-context_vectors_type"}, description = "Type of sense context vectors", arity = 1, required = true,
 				converter = CMLCheckers.VectorTypeConverter.class, validateWith = CMLCheckers.VectorTypeValidator.class)
 		private VectorType context_vector_type = VectorType.Random;
+		@Parameter(names = {"-gs", "-glosses_store"}, description = "File where vectors calculated from glosses are kept between runs, used with SenseGlosses context vectors", arity = 1,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFile.class)
+		private Path glosses_store = null;
 		@Parameter(names = {"-sev", "-sense_vectors"}, description = "Path to sense vectors", arity = 1,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path sense_vectors_path;
@@ -123,8 +141,8 @@ public class Driver
 	@Parameters(commandDescription = "Collect meanings info from a dictionary and stores them into a binary file")
 	private static class CollectMeaningsCommand
 	{
-		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder", arity = 1, required = true,
-				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
+		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder or snapshot file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path dictionary;
 		@Parameter(names = {"-o", "-output"}, description = "Path to output file", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFile.class)
@@ -163,18 +181,80 @@ public class Driver
 		private int chunk_size = 0;
 	}
 
+	@SuppressWarnings("unused")
+	@Parameters(commandDescription = "Store vectors calculated from the glosses of a set of meanings")
+	private static class StoreGlossesVectorsCommand
+	{
+		@Parameter(names = {"-m", "-meanings"}, description = "Path to binary file containing meanings", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
+		private Path meanings;
+		@Parameter(names = {"-o", "-output"}, description = "Path to new or existing glosses vectors store", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFile.class)
+		private Path output;
+		@Parameter(names = {"-f", "-frequencies"}, description = "Path to frequencies file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
+		private Path freqsFile;
+		@Parameter(names = {"-svt", "-sentence_vectors_type"}, description = "Type of sentence vectors", arity = 1,  required = true,
+				converter = CMLCheckers.SentenceVectorTypeConverter.class, validateWith = CMLCheckers.SentenceVectorTypeValidator.class)
+		private SentenceVectorType sentence_vector_type = SentenceVectorType.Random;
+		@Parameter(names = {"-wv", "-word_vectors"}, description = "Path to word vectors", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
+		private Path word_vectors_path;
+		@Parameter(names = {"-wt", "-word_vectors_type"}, description = "Type of word vectors", arity = 1, required = true,
+				converter = CMLCheckers.VectorTypeConverter.class, validateWith = CMLCheckers.VectorTypeValidator.class)
+		private VectorType word_vector_type = VectorType.Random;
+	}
+
+	@SuppressWarnings("unused")
+	@Parameters(commandDescription = "Convert a text or binary word2vec vectors file into a mapped vectors file")
+	private static class ConvertVectorsCommand
+	{
+		@Parameter(names = {"-i", "-input"}, description = "Path to vectors file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
+		private Path input;
+		@Parameter(names = {"-t", "-type"}, description = "Type of input vectors", arity = 1, required = true,
+				converter = CMLCheckers.VectorTypeConverter.class, validateWith = CMLCheckers.VectorTypeValidator.class)
+		private VectorType type;
+		@Parameter(names = {"-o", "-output"}, description = "Path to output mapped vectors file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToNewFile.class)
+		private Path output;
+		@Parameter(names = {"-e", "-encoding"}, description = "Encoding of vectors: Float32, Float16 or Int8", arity = 1)
+		private MappedVectors.Encoding encoding = MappedVectors.Encoding.Float32;
+	}
+
+	@SuppressWarnings("unused")
+	@Parameters(commandDescription = "Export the meanings of a vocabulary from a dictionary into a snapshot file")
+	private static class CreateSnapshotCommand
+	{
+		@Parameter(names = {"-d", "-dictionary"}, description = "Dictionary folder", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFolder.class)
+		private Path dictionary;
+		@Parameter(names = {"-v", "-vocabulary"}, description = "Path to vocabulary file, with a form and an optional POS tag separated by a tab in each line", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFile.class)
+		private Path vocabulary;
+		@Parameter(names = {"-o", "-output"}, description = "Path to output snapshot file", arity = 1, required = true,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToNewFile.class)
+		private Path output;
+	}
+
 	public static void main(String[] args) throws Exception
 	{
 		RankEvaluationCommand rankEval = new RankEvaluationCommand();
 		SemEvalEvaluationCommand semEval = new SemEvalEvaluationCommand();
 		CollectMeaningsCommand meanings = new CollectMeaningsCommand();
 		CreateContextVectorsCommand context = new CreateContextVectorsCommand();
+		StoreGlossesVectorsCommand glosses = new StoreGlossesVectorsCommand();
+		ConvertVectorsCommand vectors = new ConvertVectorsCommand();
+		CreateSnapshotCommand snapshot = new CreateSnapshotCommand();
 
 		JCommander jc = new JCommander();
 		jc.addCommand(rank_eval_command, rankEval);
 		jc.addCommand(semeval_command, semEval);
 		jc.addCommand(collect_meanings_vectors, meanings);
 		jc.addCommand(create_context_vectors, context);
+		jc.addCommand(store_glosses_vectors, glosses);
+		jc.addCommand(convert_vectors, vectors);
+		jc.addCommand(create_dictionary_snapshot, snapshot);
 		jc.parse(args);
 
 		DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
@@ -191,10 +271,13 @@ public class Driver
 						semEval.word_vectors_path,  semEval.word_vector_type,
 						semEval.sentence_vectors_path, semEval.sentence_vector_type,
 						semEval.context_vectors_path,  semEval.context_vector_type);
+				if (semEval.glosses_store != null)
+					resources.storeGlossesVectors(semEval.glosses_store);
 				if (semEval.batch)
 					SemEvalEvaluation.run_batch(semEval.gold_file, semEval.input_file, semEval.output, resources);
 				else
 					SemEvalEvaluation.run(semEval.gold_file, semEval.input_file, semEval.output, resources);
+				resources.close();
 				break;
 			}
 			case rank_eval_command:
@@ -204,7 +287,10 @@ public class Driver
 						rankEval.word_vectors_path, rankEval.word_vector_type,
 						rankEval.sentence_vectors_path, rankEval.sentence_vector_type,
 						rankEval.context_vectors_path, rankEval.context_vector_type);
+				if (rankEval.glosses_store != null)
+					resources.storeGlossesVectors(rankEval.glosses_store);
 				RankingEvaluation.run(rankEval.gold_folder, rankEval.input_file, rankEval.output, resources);
+				resources.close();
 				break;
 			}
 			case collect_meanings_vectors:
@@ -223,6 +309,33 @@ public class Driver
 				ContextVectorsProducer.createVectors(context.meanings, context.chunk_size, context.output, resources, context.glosses_only);
 				break;
 			}
+			case store_glosses_vectors:
+			{
+				InitialResourcesFactory resources = new InitialResourcesFactory(language, null, glosses.freqsFile,
+						null, null,
+						glosses.word_vectors_path,  glosses.word_vector_type,
+						null, glosses.sentence_vector_type,
+						null,  null);
+				ContextVectorsProducer.storeGlossesVectors(glosses.meanings, glosses.output, resources);
+				resources.close();
+				break;
+			}
+			case convert_vectors:
+			{
+				MappedVectors.convert(vectors.input, vectors.type, vectors.output, vectors.encoding);
+				break;
+			}
+			case create_dictionary_snapshot:
+			{
+				final List<Pair<String, String>> vocabulary = Files.readAllLines(snapshot.vocabulary, StandardCharsets.UTF_8).stream()
+						.filter(l -> !l.trim().isEmpty())
+						.map(l -> l.split("\t"))
+						.map(l -> Pair.of(l[0], l.length > 1 ? l[1] : null))
+						.collect(toList());
+				BabelNetDictionary dictionary = new BabelNetDictionary(snapshot.dictionary);
+				SnapshotDictionary.create(dictionary, vocabulary, language, snapshot.output);
+				break;
+			}
 			default:
 				jc.usage();
 				break;
@@ -1,7 +1,7 @@
 package edu.upf.taln.textplanning.tools;
 
 import Jama.Matrix;
-import edu.upf.taln.textplanning.core.ranking.JamaPowerIteration;
+import edu.upf.taln.textplanning.core.ranking.ParallelPowerIteration;
 import edu.upf.taln.textplanning.core.ranking.MatrixFactory;
 import org.apache.commons.lang3.tuple.Triple;
 import org.ujmp.core.doublematrix.DoubleMatrix2D;
@@ -53,7 +53,7 @@ public class VisualizationUtils
 		final double[][] ranking_arrays = MatrixFactory.createMeaningRankingMatrix(synsets, w, sim, f, t, d);
 		Jama.Matrix ranking_matrix = new Jama.Matrix(ranking_arrays);
 
-		JamaPowerIteration alg = new JamaPowerIteration();
+		ParallelPowerIteration alg = new ParallelPowerIteration();
 		Matrix finalDistribution = alg.run(ranking_matrix, labels);
 		double[] ranking = finalDistribution.getColumnPackedCopy();
 		final List<Triple<String, String, Double>> sorted = IntStream.range(0, synsets.size())
@@ -281,7 +281,7 @@ public class EvaluationTools
 							num_meanings + " distinct meanings");
 
 					// Rank
-					TextPlanner.rankMeanings(text_candidates, candidates_filter, meanings_filter, weighter, sim, options);
+					TextPlanner.rankMeanings(process.getCandidateTable(), candidates_filter, meanings_filter, weighter, sim, options);
 				});
 	}
 
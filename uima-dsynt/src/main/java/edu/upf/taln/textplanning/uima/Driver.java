@@ -109,6 +109,9 @@ public class Driver
 		@Parameter(names = {"-ct", "-context_vectors_type"}, description = "Type of sense context vectors", arity = 1,
 				converter = CMLCheckers.VectorTypeConverter.class, validateWith = CMLCheckers.VectorTypeValidator.class)
 		private VectorType context_vector_type = VectorType.Random;
+		@Parameter(names = {"-gs", "-glosses_store"}, description = "File where vectors calculated from glosses are kept between runs, used with SenseGlosses context vectors", arity = 1,
+				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.ValidPathToFile.class)
+		private Path glosses_store = null;
 		@Parameter(names = {"-sv", "-sense_vectors"}, description = "Path to sense vectors", arity = 1, required = true,
 				converter = CMLCheckers.PathConverter.class, validateWith = CMLCheckers.PathToExistingFileOrFolder.class)
 		private Path sense_vectors_path;
@@ -221,7 +224,7 @@ public class Driver
 					final BiFunction<String, String, OptionalDouble> sim = resources.getMeaningsSimilarity();
 					final BiPredicate<String, String> meanings_filter = process.getMeaningsFilter();
 					final Predicate<Candidate> candidates_filter = process.getCandidatesFilter(context_weighter);
-					TextPlanner.rankMeanings(candidates, candidates_filter, meanings_filter, context_weighter, sim, options);
+					TextPlanner.rankMeanings(process.getCandidateTable(), candidates_filter, meanings_filter, context_weighter, sim, options);
 
 					candidates.forEach(c -> c.setWeight(context_weighter.apply(c.getMeaning().getReference())));
 
@@ -280,7 +283,10 @@ public class Driver
 						system.word_vectors_path,  system.word_vector_type,
 						null, system.sentence_vector_type,
 						system.context_vectors_path,  system.context_vector_type);
+				if (system.glosses_store != null)
+					resources.storeGlossesVectors(system.glosses_store);
 				getSystemMeanings(system.texts, system.candidates, system.output, resources);
+				resources.close();
 				break;
 			}
 			default: